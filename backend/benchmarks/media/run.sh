@@ -0,0 +1,98 @@
+#!/bin/bash
+# Throughput and CPU cost of serving uploads (LocalMediaController) with Tomcat sendfile and with
+# the transferTo copy fallback.
+#
+# Usage: ./run.sh   (run from anywhere; Linux only, needs curl and PostgreSQL reachable via SPRING_DATASOURCE_*)
+# Builds the backend, writes a random video into a scratch upload directory under its content-addressed
+# name, then for each mode starts the backend, downloads it CONCURRENCY x REQUESTS times (whole file,
+# then 1MB ranges as a seeking video player would) and stops it. Backend CPU time is read from
+# /proc/<pid>/stat before and after each run. Results are written to build/results/media/{sendfile,copy}.txt.
+#
+# Tunables: SIZE_MB (default 64), CONCURRENCY (default 16), REQUESTS (default 200 per client), PORT (default 8080)
+
+set -euo pipefail
+
+cd "$(dirname "$0")/../.."
+
+SIZE_MB=${SIZE_MB:-64}
+CONCURRENCY=${CONCURRENCY:-16}
+REQUESTS=${REQUESTS:-200}
+PORT=${PORT:-8080}
+RESULTS=build/results/media
+UPLOADS=build/benchmark-uploads
+
+./gradlew -q bootJar
+JAR=$(ls build/libs/*.jar | grep -v plain | head -1)
+mkdir -p "$RESULTS" "$UPLOADS"
+
+# Random content, stored the way UploadStorage would (sha256/ab/<hash>.mp4)
+head -c "$((SIZE_MB * 1024 * 1024))" /dev/urandom > "$UPLOADS/video.tmp"
+hash=$(sha256sum "$UPLOADS/video.tmp" | cut -d' ' -f1)
+mkdir -p "$UPLOADS/sha256/${hash:0:2}"
+mv "$UPLOADS/video.tmp" "$UPLOADS/sha256/${hash:0:2}/$hash.mp4"
+URL="http://localhost:$PORT/uploads/sha256/${hash:0:2}/$hash.mp4"
+SIZE=$((SIZE_MB * 1024 * 1024))
+
+cpu_ticks() { awk '{ print $14 + $15 }' "/proc/$1/stat"; }
+
+# Each client: REQUESTS downloads, alternating the whole file and a 1MB range at a random offset
+download() {
+    for ((i = 0; i < REQUESTS; i++)); do
+        if ((i % 2 == 0)); then
+            curl -s -o /dev/null "$URL"
+        else
+            offset=$(( (RANDOM * 32768 + RANDOM) % (SIZE - 1048576) ))
+            curl -s -o /dev/null -H "Range: bytes=$offset-$((offset + 1048575))" "$URL"
+        fi
+    done
+}
+export -f download
+export URL SIZE REQUESTS
+
+for mode in sendfile copy; do
+    enabled=false
+    [ "$mode" = sendfile ] && enabled=true
+
+    echo "== $mode"
+    java -jar "$JAR" --server.port="$PORT" --canvas.upload.directory="$UPLOADS" \
+        --canvas.media.sendfile=$enabled > "$RESULTS/$mode.log" 2>&1 &
+    backend=$!
+    trap 'kill $backend 2>/dev/null || true' EXIT
+
+    until curl -sf "http://localhost:$PORT/actuator/health" > /dev/null; do
+        kill -0 $backend 2>/dev/null || { echo "backend exited, see $RESULTS/$mode.log"; exit 1; }
+        sleep 1
+    done
+
+    # Sanity checks: 206 for a range, 304 for a cached copy
+    range_status=$(curl -s -o /dev/null -w '%{http_code}' -H 'Range: bytes=0-99' "$URL")
+    etag=$(curl -sI "$URL" | tr -d '\r' | awk -F': ' 'tolower($1) == "etag" { print $2 }')
+    cached_status=$(curl -s -o /dev/null -w '%{http_code}' -H "If-None-Match: $etag" "$URL")
+
+    download > /dev/null  # warm-up (JIT, page cache)
+    ticks_before=$(cpu_ticks $backend)
+    started=$(date +%s.%N)
+    seq "$CONCURRENCY" | xargs -P "$CONCURRENCY" -I{} bash -c download
+    elapsed=$(echo "$(date +%s.%N) - $started" | bc)
+    ticks=$(( $(cpu_ticks $backend) - ticks_before ))
+
+    # Half the requests are whole files, half 1MB ranges
+    gigabytes=$(echo "scale=3; $CONCURRENCY * $REQUESTS * ($SIZE + 1048576) / 2 / 1024^3" | bc)
+    {
+        echo "range_status=$range_status cached_status=$cached_status"
+        echo "gigabytes=$gigabytes"
+        echo "seconds=$elapsed"
+        echo "throughput_mb_s=$(echo "scale=1; $gigabytes * 1024 / $elapsed" | bc)"
+        echo "cpu_seconds_per_gb=$(echo "scale=3; $ticks / $(getconf CLK_TCK) / $gigabytes" | bc)"
+    } | tee "$RESULTS/$mode.txt"
+
+    kill $backend
+    wait $backend || true
+done
+
+printf "\n%-10s %14s %18s\n" "mode" "MB/s" "CPU s per GB"
+for mode in sendfile copy; do
+    printf "%-10s %14s %18s\n" "$mode" \
+        "$(grep throughput_mb_s "$RESULTS/$mode.txt" | cut -d= -f2)" \
+        "$(grep cpu_seconds_per_gb "$RESULTS/$mode.txt" | cut -d= -f2)"
+done
@@ -0,0 +1,66 @@
+#!/bin/bash
+# How many sessions with live cursors one backend node sustains.
+#
+# Usage: ./run.sh   (run from anywhere; needs PostgreSQL reachable via SPRING_DATASOURCE_*)
+# Starts the backend once, then runs the load generator with presence only (--mix=idle:1) for
+# each user count in STEPS. Every user sends RATE cursor frames per second and subscribes to
+# the presence topics of its viewport. Reports are written to build/results/presence/{users}.json.
+# The result is the largest user count whose presence lag p99 stays under MAX_P99_MS.
+#
+# Tunables: STEPS (default "250 500 1000 2000 4000"), RATE (default 30), DURATION (default PT1M),
+# AREA (default 20000, side of the square users spread over; smaller = more viewers per tile),
+# MAX_P99_MS (default 200), PORT (default 8080), JAVA_OPTS
+
+set -euo pipefail
+
+cd "$(dirname "$0")/../.."
+
+STEPS=${STEPS:-250 500 1000 2000 4000}
+RATE=${RATE:-30}
+DURATION=${DURATION:-PT1M}
+AREA=${AREA:-20000}
+MAX_P99_MS=${MAX_P99_MS:-200}
+PORT=${PORT:-8080}
+RESULTS=build/results/presence
+
+./gradlew -q bootJar :loadgen:installDist
+JAR=$(ls build/libs/*.jar | grep -v plain | head -1)
+mkdir -p "$RESULTS"
+
+# shellcheck disable=SC2086
+java ${JAVA_OPTS:-} -jar "$JAR" --server.port="$PORT" > "$RESULTS/backend.log" 2>&1 &
+backend=$!
+trap 'kill $backend 2>/dev/null || true' EXIT
+
+until curl -sf "http://localhost:$PORT/actuator/health" > /dev/null; do
+    kill -0 $backend 2>/dev/null || { echo "backend exited, see $RESULTS/backend.log"; exit 1; }
+    sleep 1
+done
+
+stat() { grep -A8 "\"$1\" : {" "$2" | grep "\"$3\"" | head -1 | sed 's/.*: \([0-9.E-]*\).*/\1/'; }
+metric() { curl -s "http://localhost:$PORT/actuator/prometheus" | grep "^$1" | awk '{ sum += $2 } END { print sum + 0 }'; }
+
+sustained=0
+printf "%8s %14s %14s %12s %12s %12s\n" "users" "frames sent/s" "frames recv/s" "lag p50" "lag p99" "dropped"
+for users in $STEPS; do
+    dropped_before=$(metric canvas_presence_dropped_total)
+    loadgen/build/install/loadgen/bin/loadgen --base-url="http://localhost:$PORT" \
+        --users="$users" --duration="$DURATION" --mix=idle:1 --think-time=PT10S \
+        --presence-rate="$RATE" --area-size="$AREA" --report="$RESULTS/$users.json" > "$RESULTS/$users.txt"
+    dropped=$(( $(metric canvas_presence_dropped_total | cut -d. -f1) - ${dropped_before%.*} ))
+
+    report="$RESULTS/$users.json"
+    seconds=$(grep '"durationSeconds"' "$report" | sed 's/.*: \([0-9.E-]*\).*/\1/')
+    received=$(grep '"presenceFramesReceived"' "$report" | sed 's/.*: \([0-9]*\).*/\1/')
+    p99=$(stat "presence lag" "$report" p99Ms)
+    printf "%8d %14.1f %14.1f %10.1fms %10.1fms %12d\n" "$users" \
+        "$(stat "presence send" "$report" perSecond)" "$(echo "$received / $seconds" | bc -l)" \
+        "$(stat "presence lag" "$report" p50Ms)" "$p99" "$dropped"
+
+    if (( $(echo "$p99 < $MAX_P99_MS" | bc -l) )); then
+        sustained=$users
+    fi
+done
+
+echo
+echo "Sustained with presence lag p99 < ${MAX_P99_MS}ms: $sustained users ($RATE frames/s each)"
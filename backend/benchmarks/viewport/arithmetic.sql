@@ -0,0 +1,9 @@
+-- pgbench script: current findObjectsInViewport query (1920x1080 viewport at a random position)
+\set minx random(-1000000, 998000)
+\set miny random(-1000000, 998900)
+SELECT * FROM bench_canvas_objects o
+WHERE o.position_x + o.width >= :minx
+  AND o.position_x <= :minx + 1920
+  AND o.position_y + o.height >= :miny
+  AND o.position_y <= :miny + 1080
+ORDER BY o.z_index ASC, o.created_at ASC;
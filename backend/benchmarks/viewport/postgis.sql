@@ -0,0 +1,6 @@
+-- pgbench script: findObjectsInViewportPostgis query (1920x1080 viewport at a random position)
+\set minx random(-1000000, 998000)
+\set miny random(-1000000, 998900)
+SELECT * FROM bench_canvas_objects o
+WHERE o.bbox && ST_MakeEnvelope(:minx, :miny, :minx + 1920, :miny + 1080, 0)
+ORDER BY o.z_index ASC, o.created_at ASC;
@@ -0,0 +1,34 @@
+#!/bin/bash
+# Compare the arithmetic viewport query against the PostGIS bbox query.
+#
+# Usage: ./run.sh [rows...]          (default: 10000 100000 1000000)
+# Connection comes from the standard libpq variables (PGHOST, PGPORT, PGUSER, PGDATABASE, PGPASSWORD).
+# The database must already contain canvas_objects (start the backend once) with PostGIS enabled.
+#
+# Tunables: DURATION (seconds per run, default 30), CLIENTS (default 4)
+
+set -euo pipefail
+
+cd "$(dirname "$0")"
+
+DURATION=${DURATION:-30}
+CLIENTS=${CLIENTS:-4}
+SIZES=("$@")
+if [ ${#SIZES[@]} -eq 0 ]; then
+    SIZES=(10000 100000 1000000)
+fi
+
+printf "%-10s %-12s %12s %12s\n" "rows" "query" "tps" "latency(ms)"
+
+for rows in "${SIZES[@]}"; do
+    psql -q -v ON_ERROR_STOP=1 -v rows="$rows" -f setup.sql > /dev/null
+
+    for query in arithmetic postgis; do
+        output=$(pgbench -n -f "$query.sql" -T "$DURATION" -c "$CLIENTS" -j "$CLIENTS" 2>&1)
+        tps=$(echo "$output" | awk '/^tps/ {print $3; exit}')
+        latency=$(echo "$output" | awk '/latency average/ {print $4; exit}')
+        printf "%-10s %-12s %12s %12s\n" "$rows" "$query" "$tps" "$latency"
+    done
+done
+
+psql -q -c "DROP TABLE IF EXISTS bench_canvas_objects" > /dev/null
@@ -0,0 +1,32 @@
+-- Synthetic canvas for viewport query benchmarks.
+-- Usage: psql -v rows=100000 -f setup.sql
+-- Builds bench_canvas_objects with the same columns and indexes as canvas_objects,
+-- so the production table is never touched.
+
+DROP TABLE IF EXISTS bench_canvas_objects;
+
+CREATE TABLE bench_canvas_objects (LIKE canvas_objects INCLUDING DEFAULTS);
+
+-- Objects spread over the full ±1,000,000 canvas, 50-500 units wide
+INSERT INTO bench_canvas_objects
+    (id, object_type, content_url, position_x, position_y, width, height, z_index, created_at)
+SELECT g,
+       'TEXT',
+       'bench ' || g,
+       random() * 2000000 - 1000000,
+       random() * 2000000 - 1000000,
+       50 + random() * 450,
+       50 + random() * 450,
+       (random() * 10)::int,
+       now() - (g || ' seconds')::interval
+FROM generate_series(1, :rows) AS g;
+
+UPDATE bench_canvas_objects
+SET bbox = ST_MakeEnvelope(position_x, position_y, position_x + width, position_y + height, 0);
+
+CREATE INDEX ON bench_canvas_objects (position_x);
+CREATE INDEX ON bench_canvas_objects (position_y);
+CREATE INDEX ON bench_canvas_objects (z_index, created_at);
+CREATE INDEX ON bench_canvas_objects USING GIST (bbox);
+
+ANALYZE bench_canvas_objects;
@@ -0,0 +1,57 @@
+#!/bin/bash
+# Compare throughput and latency with platform threads and virtual threads under the same load mix.
+#
+# Usage: ./run.sh   (run from anywhere; needs a JDK 21, and PostgreSQL reachable via SPRING_DATASOURCE_*)
+# Builds the backend for Java 21, then for each mode starts it, runs the load generator against it
+# and stops it. Reports are written to build/results/virtual-threads/{platform,virtual}.json.
+#
+# Tunables: USERS (default 1000), DURATION (default PT2M), MIX (default the production mix
+# pan:60,drag:30,create:8,upload:2), PORT (default 8080), JAVA_OPTS (e.g. -Djdk.tracePinnedThreads=short)
+
+set -euo pipefail
+
+cd "$(dirname "$0")/../.."
+
+USERS=${USERS:-1000}
+DURATION=${DURATION:-PT2M}
+MIX=${MIX:-pan:60,drag:30,create:8,upload:2}
+PORT=${PORT:-8080}
+RESULTS=build/results/virtual-threads
+
+./gradlew -q bootJar :loadgen:installDist -PjavaVersion=21
+JAR=$(ls build/libs/*.jar | grep -v plain | head -1)
+mkdir -p "$RESULTS"
+
+for mode in platform virtual; do
+    enabled=false
+    [ "$mode" = virtual ] && enabled=true
+
+    echo "== $mode threads"
+    # shellcheck disable=SC2086
+    VIRTUAL_THREADS_ENABLED=$enabled java ${JAVA_OPTS:-} -jar "$JAR" --server.port="$PORT" \
+        > "$RESULTS/$mode.log" 2>&1 &
+    backend=$!
+    trap 'kill $backend 2>/dev/null || true' EXIT
+
+    until curl -sf "http://localhost:$PORT/actuator/health" > /dev/null; do
+        kill -0 $backend 2>/dev/null || { echo "backend exited, see $RESULTS/$mode.log"; exit 1; }
+        sleep 1
+    done
+
+    loadgen/build/install/loadgen/bin/loadgen --base-url="http://localhost:$PORT" \
+        --users="$USERS" --duration="$DURATION" --mix="$MIX" --report="$RESULTS/$mode.json"
+
+    kill $backend
+    wait $backend || true
+done
+
+# Side-by-side summary (per operation: throughput and p99)
+stat() { grep -A8 "\"$1\" : {" "$RESULTS/$2.json" | grep "\"$3\"" | head -1 | sed 's/.*: \([0-9.E-]*\).*/\1/'; }
+
+printf "\n%-24s %14s %14s %12s %12s\n" "operation" "platform ops/s" "virtual ops/s" "platform p99" "virtual p99"
+grep -o '"[^"]*" : {' "$RESULTS/platform.json" | grep -v '"operations"\|"mix"' | cut -d'"' -f2 |
+while IFS= read -r op; do
+    printf "%-24s %14.1f %14.1f %10.1fms %10.1fms\n" "$op" \
+        "$(stat "$op" platform perSecond)" "$(stat "$op" virtual perSecond)" \
+        "$(stat "$op" platform p99Ms)" "$(stat "$op" virtual p99Ms)"
+done
@@ -0,0 +1,38 @@
+#!/bin/bash
+# Compare JSON and CBOR responses of GET /api/objects: payload size and response time.
+#
+# Usage: ./run.sh [viewport-size...]   (default: 1000 5000 20000, square viewports centred on 0,0)
+# The backend must be running with data loaded (e.g. backend/benchmarks/viewport/setup.sql
+# copied into canvas_objects, or a real canvas).
+#
+# Tunables: BASE_URL (default http://localhost:8080), REQUESTS (per format and size, default 50)
+# Run once with canvas.wire.cbor.string-refs=true to see the effect of string references.
+
+set -euo pipefail
+
+BASE_URL=${BASE_URL:-http://localhost:8080}
+REQUESTS=${REQUESTS:-50}
+SIZES=("$@")
+if [ ${#SIZES[@]} -eq 0 ]; then
+    SIZES=(1000 5000 20000)
+fi
+
+printf "%-10s %-6s %10s %12s %14s\n" "viewport" "format" "objects" "bytes" "avg time(ms)"
+
+for size in "${SIZES[@]}"; do
+    half=$((size / 2))
+    url="$BASE_URL/api/objects?minX=-$half&minY=-$half&maxX=$half&maxY=$half"
+    objects=$(curl -sf -H "Accept: application/json" "$url" | grep -o '"id":' | wc -l)
+
+    for format in json cbor; do
+        total=0
+        bytes=0
+        for _ in $(seq "$REQUESTS"); do
+            read -r bytes time < <(curl -sf -o /dev/null -H "Accept: application/$format" \
+                -w "%{size_download} %{time_total}\n" "$url")
+            total=$(echo "$total + $time" | bc -l)
+        done
+        avg=$(echo "$total * 1000 / $REQUESTS" | bc -l)
+        printf "%-10s %-6s %10s %12s %14.2f\n" "$size" "$format" "$objects" "$bytes" "$avg"
+    done
+done
@@ -0,0 +1,54 @@
+package com.canvasearth.loadgen;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures broadcast delivery lag: the time from sending an update over REST until a
+ * subscriber receives the resulting STOMP message. Updates are matched by object id and
+ * the position they set, which the load generator makes unique per update.
+ *
+ * Also used for presence lag (cursor frame sent until received by another user), with
+ * object id 0 and a shorter expiry: superseded frames are never delivered.
+ */
+public class BroadcastTracker {
+
+    private final Map<String, Long> sent = new ConcurrentHashMap<>();
+    private final Metrics metrics;
+    private final String operation;
+    private final long expiryNanos;
+
+    BroadcastTracker(Metrics metrics) {
+        this(metrics, Metrics.BROADCAST_LAG, TimeUnit.SECONDS.toNanos(30));
+    }
+
+    BroadcastTracker(Metrics metrics, String operation, long expiryNanos) {
+        this.metrics = metrics;
+        this.operation = operation;
+        this.expiryNanos = expiryNanos;
+    }
+
+    void sent(long objectId, double positionX, long sentNanos) {
+        sent.put(key(objectId, positionX), sentNanos);
+    }
+
+    void received(long objectId, double positionX) {
+        Long sentNanos = sent.get(key(objectId, positionX));
+        if (sentNanos != null) {
+            metrics.record(operation, sentNanos);
+        }
+    }
+
+    /**
+     * Forget updates old enough that no subscriber will still receive them
+     */
+    void expire() {
+        long cutoff = System.nanoTime() - expiryNanos;
+        sent.values().removeIf(sentNanos -> sentNanos < cutoff);
+    }
+
+    private static String key(long objectId, double positionX) {
+        return objectId + ":" + Double.doubleToLongBits(positionX);
+    }
+}
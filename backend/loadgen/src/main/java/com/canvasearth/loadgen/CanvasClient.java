@@ -0,0 +1,110 @@
+package com.canvasearth.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Blocking REST calls against CanvasObjectController. Each call records its latency
+ * (or an error) under the operation name.
+ */
+public class CanvasClient {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final String baseUrl;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Metrics metrics;
+
+    CanvasClient(String baseUrl, HttpClient httpClient, ObjectMapper objectMapper, Metrics metrics) {
+        this.baseUrl = baseUrl;
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+    }
+
+    /**
+     * GET /api/objects for a viewport; returns the number of objects
+     */
+    int readViewport(double minX, double minY, double maxX, double maxY) {
+        String query = String.format("?minX=%.0f&minY=%.0f&maxX=%.0f&maxY=%.0f", minX, minY, maxX, maxY);
+        JsonNode body = send("viewport read", HttpRequest.newBuilder(uri("/api/objects" + query)).GET());
+        return body != null ? body.size() : 0;
+    }
+
+    /**
+     * POST /api/objects with a text object; returns its id (null on error)
+     */
+    Long createText(double x, double y) {
+        JsonNode body = send("create", json(HttpRequest.newBuilder(uri("/api/objects")), "POST", Map.of(
+                "objectType", "TEXT",
+                "contentUrl", "load test",
+                "positionX", x,
+                "positionY", y,
+                "width", 200.0,
+                "height", 60.0)));
+        return body != null ? body.get("id").asLong() : null;
+    }
+
+    /**
+     * PUT /api/objects/{id} with a new position
+     */
+    boolean move(Long id, double x, double y, boolean deferred) {
+        String path = "/api/objects/" + id + (deferred ? "?deferred=true" : "");
+        JsonNode body = send(deferred ? "drag update" : "drag end",
+                json(HttpRequest.newBuilder(uri(path)), "PUT", Map.of("positionX", x, "positionY", y)));
+        return body != null;
+    }
+
+    /**
+     * POST /api/objects/upload with a PNG image as the raw request body
+     */
+    boolean upload(double x, double y, byte[] png) {
+        String query = "?objectType=IMAGE&positionX=" + x + "&positionY=" + y + "&width=200&height=200";
+        return send("upload", HttpRequest.newBuilder(uri("/api/objects/upload" + query))
+                .header("Content-Type", "image/png")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(png))) != null;
+    }
+
+    private HttpRequest.Builder json(HttpRequest.Builder builder, String method, Object body) {
+        try {
+            return builder.header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private JsonNode send(String operation, HttpRequest.Builder request) {
+        long started = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = httpClient.send(
+                    request.timeout(TIMEOUT).header("Accept", "application/json").build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() >= 400) {
+                metrics.error(operation);
+                return null;
+            }
+            metrics.record(operation, started);
+            return response.body().length > 0 ? objectMapper.readTree(response.body()) : objectMapper.nullNode();
+        } catch (IOException e) {
+            metrics.error(operation);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+}
@@ -0,0 +1,106 @@
+package com.canvasearth.loadgen;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Command line options of the load generator (--name=value).
+ */
+public class LoadConfig {
+
+    final String baseUrl;
+    final int users;
+    final Duration duration;
+    final Duration rampUp;
+    final Duration thinkTime;
+    final int workers;
+    final double areaSize;
+    final Map<Behavior, Integer> mix;
+    final int dragSteps;
+    final Duration dragInterval;
+    final double presenceRate;
+    final String reportFile;
+
+    private LoadConfig(Map<String, String> options) {
+        baseUrl = options.getOrDefault("base-url", "http://localhost:8080");
+        users = Integer.parseInt(options.getOrDefault("users", "100"));
+        duration = Duration.parse(options.getOrDefault("duration", "PT60S"));
+        rampUp = Duration.parse(options.getOrDefault("ramp-up", "PT10S"));
+        thinkTime = Duration.parse(options.getOrDefault("think-time", "PT1S"));
+        workers = Integer.parseInt(options.getOrDefault("workers", "200"));
+        areaSize = Double.parseDouble(options.getOrDefault("area-size", "20000"));
+        mix = parseMix(options.getOrDefault("mix", "pan:60,drag:30,create:8,upload:2"));
+        dragSteps = Integer.parseInt(options.getOrDefault("drag-steps", "20"));
+        dragInterval = Duration.parse(options.getOrDefault("drag-interval", "PT0.05S"));
+        presenceRate = Double.parseDouble(options.getOrDefault("presence-rate", "0"));
+        reportFile = options.get("report");
+    }
+
+    static LoadConfig parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return new LoadConfig(options);
+    }
+
+    static String usage() {
+        return String.join("\n",
+                "Options (all optional):",
+                "  --base-url=http://localhost:8080  backend to load",
+                "  --users=100                       simulated users, each with its own STOMP session",
+                "  --duration=PT60S                  measured run time after ramp-up",
+                "  --ramp-up=PT10S                   time over which users connect",
+                "  --think-time=PT1S                 mean pause between actions of one user",
+                "  --workers=200                     threads executing blocking HTTP calls",
+                "  --area-size=20000                 side of the square canvas area users work in",
+                "  --mix=pan:60,drag:30,create:8,upload:2  relative weights of behaviors (pan, drag, create, upload, idle)",
+                "  --drag-steps=20                   deferred updates per drag (plus a final update)",
+                "  --drag-interval=PT0.05S           pause between drag updates",
+                "  --presence-rate=0                 cursor frames per second per user over STOMP (0: off);",
+                "                                    users then also subscribe to presence of their viewport",
+                "  --report=results.json             also write the summary as JSON");
+    }
+
+    private static Map<Behavior, Integer> parseMix(String value) {
+        Map<Behavior, Integer> mix = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            String[] parts = entry.split(":");
+            mix.put(Behavior.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        return mix;
+    }
+
+    enum Behavior {
+        /**
+         * Move the viewport and read it (GET /api/objects), resubscribing to its tiles
+         */
+        PAN,
+
+        /**
+         * Drag an own object: deferred PUTs followed by a final PUT
+         */
+        DRAG,
+
+        /**
+         * Create a text object (POST /api/objects)
+         */
+        CREATE,
+
+        /**
+         * Upload a small image (POST /api/objects/upload)
+         */
+        UPLOAD,
+
+        /**
+         * Do nothing (with --mix=idle:1 only presence frames are sent)
+         */
+        IDLE
+    }
+}
@@ -0,0 +1,125 @@
+package com.canvasearth.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load generator for a locally started backend.
+ *
+ * Simulates users that keep a STOMP-over-SockJS session on /ws (subscribed to the tile
+ * topics of their viewport) while panning, dragging, creating and uploading through the
+ * REST API. After the ramp-up, reports per-operation throughput and p50/p95/p99 latency,
+ * broadcast delivery lag (REST update sent to STOMP message received) and the number of
+ * STOMP messages received. With --presence-rate, users also send cursor frames to
+ * /app/presence and the presence lag (frame sent to frame received by others) is reported.
+ *
+ * Usage: ./gradlew :loadgen:run --args="--users=1000 --duration=PT2M" (see LoadConfig.usage())
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 1 && (args[0].equals("--help") || args[0].equals("-h"))) {
+            System.out.println(LoadConfig.usage());
+            return;
+        }
+        LoadConfig config = LoadConfig.parse(args);
+
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        Metrics metrics = new Metrics();
+        BroadcastTracker tracker = new BroadcastTracker(metrics);
+        BroadcastTracker presenceTracker = new BroadcastTracker(metrics, Metrics.PRESENCE_LAG, TimeUnit.SECONDS.toNanos(5));
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        CanvasClient canvasClient = new CanvasClient(config.baseUrl, httpClient, objectMapper, metrics);
+
+        ThreadPoolTaskScheduler heartbeatScheduler = new ThreadPoolTaskScheduler();
+        heartbeatScheduler.setPoolSize(2);
+        heartbeatScheduler.setThreadNamePrefix("stomp-heartbeat-");
+        heartbeatScheduler.initialize();
+
+        WebSocketStompClient stompClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        stompClient.setMessageConverter(converter);
+        stompClient.setTaskScheduler(heartbeatScheduler);
+        stompClient.setDefaultHeartbeat(new long[]{10000, 10000});
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+        ExecutorService workers = Executors.newFixedThreadPool(config.workers);
+        byte[] uploadImage = createPng();
+
+        System.out.printf("Ramping up %d users against %s over %s...%n", config.users, config.baseUrl, config.rampUp);
+        List<SimulatedUser> users = new ArrayList<>();
+        long rampUpStepNanos = config.rampUp.toNanos() / Math.max(config.users, 1);
+        for (int i = 0; i < config.users; i++) {
+            SimulatedUser user = new SimulatedUser(i, config, canvasClient, stompClient, tracker,
+                    presenceTracker, metrics, scheduler, workers, uploadImage);
+            users.add(user);
+            scheduler.schedule(user::start, rampUpStepNanos * i, TimeUnit.NANOSECONDS);
+        }
+        scheduler.scheduleWithFixedDelay(tracker::expire, 10, 10, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(presenceTracker::expire, 1, 1, TimeUnit.SECONDS);
+
+        Thread.sleep(config.rampUp.toMillis());
+        System.out.printf("Measuring for %s...%n", config.duration);
+        metrics.start();
+        Thread.sleep(config.duration.toMillis());
+        metrics.stop();
+
+        users.forEach(SimulatedUser::stop);
+        scheduler.shutdownNow();
+        workers.shutdownNow();
+        heartbeatScheduler.shutdown();
+
+        metrics.print(System.out, config.users);
+        if (config.reportFile != null) {
+            metrics.writeJson(new File(config.reportFile), config);
+            System.out.println("Report written to " + config.reportFile);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * A small PNG for the upload behavior
+     */
+    private static byte[] createPng() throws IOException {
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillRect(0, 0, 64, 64);
+        graphics.dispose();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", output);
+        return output.toByteArray();
+    }
+}
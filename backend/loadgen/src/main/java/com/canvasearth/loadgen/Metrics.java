@@ -0,0 +1,126 @@
+package com.canvasearth.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Latency histograms (microseconds) and counters, recorded from many threads.
+ */
+public class Metrics {
+
+    static final String BROADCAST_LAG = "broadcast lag";
+    static final String PRESENCE_LAG = "presence lag";
+
+    private static final long MAX_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final Map<String, Histogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> errors = new ConcurrentHashMap<>();
+    private final AtomicLong messagesReceived = new AtomicLong();
+    private final AtomicLong presenceFramesReceived = new AtomicLong();
+
+    private volatile boolean recording;
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    /**
+     * Start counting; samples before this (ramp-up) are discarded
+     */
+    void start() {
+        latencies.values().forEach(Histogram::reset);
+        errors.values().forEach(counter -> counter.set(0));
+        messagesReceived.set(0);
+        presenceFramesReceived.set(0);
+        startNanos = System.nanoTime();
+        recording = true;
+    }
+
+    void stop() {
+        recording = false;
+        endNanos = System.nanoTime();
+    }
+
+    void record(String operation, long startedNanos) {
+        if (recording) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startedNanos);
+            latencies.computeIfAbsent(operation, key -> new ConcurrentHistogram(MAX_TRACKABLE_MICROS, 3))
+                    .recordValue(Math.min(micros, MAX_TRACKABLE_MICROS));
+        }
+    }
+
+    void error(String operation) {
+        if (recording) {
+            errors.computeIfAbsent(operation, key -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    void messageReceived() {
+        if (recording) {
+            messagesReceived.incrementAndGet();
+        }
+    }
+
+    void presenceFramesReceived(int frames) {
+        if (recording) {
+            presenceFramesReceived.addAndGet(frames);
+        }
+    }
+
+    void print(PrintStream out, int users) {
+        double seconds = (endNanos - startNanos) / 1e9;
+
+        out.printf("%n%d users, %.1f s measured%n%n", users, seconds);
+        out.printf("%-16s %10s %10s %10s %10s %10s %10s %8s%n",
+                "operation", "count", "per sec", "p50 ms", "p95 ms", "p99 ms", "max ms", "errors");
+        summary().forEach((operation, stats) -> out.printf("%-16s %10d %10.1f %10.2f %10.2f %10.2f %10.2f %8d%n",
+                operation, stats.get("count"), stats.get("perSecond"), stats.get("p50Ms"),
+                stats.get("p95Ms"), stats.get("p99Ms"), stats.get("maxMs"), stats.get("errors")));
+        out.printf("%nSTOMP messages received: %d (%.1f/s, %.1f/s per user)%n",
+                messagesReceived.get(), messagesReceived.get() / seconds, messagesReceived.get() / seconds / users);
+        if (presenceFramesReceived.get() > 0) {
+            out.printf("Presence frames received: %d (%.1f/s, %.1f/s per user)%n", presenceFramesReceived.get(),
+                    presenceFramesReceived.get() / seconds, presenceFramesReceived.get() / seconds / users);
+        }
+    }
+
+    void writeJson(File file, LoadConfig config) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("users", config.users);
+        report.put("durationSeconds", (endNanos - startNanos) / 1e9);
+        report.put("mix", config.mix);
+        report.put("operations", summary());
+        report.put("messagesReceived", messagesReceived.get());
+        report.put("presenceRate", config.presenceRate);
+        report.put("presenceFramesReceived", presenceFramesReceived.get());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+    }
+
+    private Map<String, Map<String, Number>> summary() {
+        double seconds = (endNanos - startNanos) / 1e9;
+        Map<String, Map<String, Number>> summary = new LinkedHashMap<>();
+        Stream.concat(latencies.keySet().stream(), errors.keySet().stream()).distinct().sorted().forEach(operation -> {
+            Histogram histogram = latencies.getOrDefault(operation, new Histogram(3));
+            Map<String, Number> stats = new LinkedHashMap<>();
+            stats.put("count", histogram.getTotalCount());
+            stats.put("perSecond", histogram.getTotalCount() / seconds);
+            stats.put("p50Ms", histogram.getValueAtPercentile(50) / 1000.0);
+            stats.put("p95Ms", histogram.getValueAtPercentile(95) / 1000.0);
+            stats.put("p99Ms", histogram.getValueAtPercentile(99) / 1000.0);
+            stats.put("maxMs", histogram.getMaxValue() / 1000.0);
+            stats.put("errors", errors.getOrDefault(operation, new AtomicLong()).get());
+            summary.put(operation, stats);
+        });
+        return summary;
+    }
+}
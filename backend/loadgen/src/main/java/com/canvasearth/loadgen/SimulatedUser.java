@@ -0,0 +1,349 @@
+package com.canvasearth.loadgen;
+
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One canvas user: a STOMP session subscribed to the tiles of its viewport, and a loop of
+ * actions picked from the configured mix with random think time in between.
+ * Actions run on the shared worker pool; waits are scheduled, never slept.
+ *
+ * With --presence-rate, the user also moves a cursor around its viewport and sends it to
+ * /app/presence at that rate, independently of the actions, and subscribes to the presence
+ * topics of its viewport tiles.
+ */
+public class SimulatedUser {
+
+    // Must match canvas.websocket.tile-size on the server
+    private static final double BROADCAST_TILE_SIZE = 2000;
+    private static final String TILE_TOPIC_PREFIX = "/topic/canvas.tile.";
+    private static final String LARGE_OBJECT_TOPIC = "/topic/canvas.large";
+    private static final String PRESENCE_TOPIC_PREFIX = "/topic/canvas.presence.";
+    private static final String PRESENCE_DESTINATION = "/app/presence";
+    private static final String PRESENCE_SESSION_QUEUE = "/user/queue/presence";
+    private static final double CURSOR_STEP = 20;
+    private static final double VIEWPORT_WIDTH = 1920;
+    private static final double VIEWPORT_HEIGHT = 1080;
+    private static final double PAN_DISTANCE = 600;
+
+    private final int index;
+    private final LoadConfig config;
+    private final CanvasClient client;
+    private final WebSocketStompClient stompClient;
+    private final BroadcastTracker tracker;
+    private final BroadcastTracker presenceTracker;
+    private final Metrics metrics;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService workers;
+    private final byte[] uploadImage;
+    private final Random random;
+    private final Random presenceRandom;
+
+    // WebSocket sessions take one send at a time: guards every use of the STOMP session
+    private final Object sessionLock = new Object();
+
+    private final Map<String, StompSession.Subscription> subscriptions = new HashMap<>();
+    private volatile StompSession session;
+    private volatile double viewportX;
+    private volatile double viewportY;
+    private double cursorX;
+    private double cursorY;
+    private Long ownObjectId;
+    private volatile ScheduledFuture<?> presenceTask;
+    private volatile boolean running = true;
+
+    SimulatedUser(int index, LoadConfig config, CanvasClient client, WebSocketStompClient stompClient,
+                  BroadcastTracker tracker, BroadcastTracker presenceTracker, Metrics metrics,
+                  ScheduledExecutorService scheduler, ExecutorService workers, byte[] uploadImage) {
+        this.index = index;
+        this.config = config;
+        this.client = client;
+        this.stompClient = stompClient;
+        this.tracker = tracker;
+        this.presenceTracker = presenceTracker;
+        this.metrics = metrics;
+        this.scheduler = scheduler;
+        this.workers = workers;
+        this.uploadImage = uploadImage;
+        this.random = new Random(index);
+        this.presenceRandom = new Random(~index);
+        this.viewportX = (random.nextDouble() - 0.5) * config.areaSize;
+        this.viewportY = (random.nextDouble() - 0.5) * config.areaSize;
+        this.cursorX = viewportX + VIEWPORT_WIDTH / 2;
+        this.cursorY = viewportY + VIEWPORT_HEIGHT / 2;
+    }
+
+    /**
+     * Connect, subscribe, create the object this user drags, then start acting
+     */
+    void start() {
+        workers.execute(() -> {
+            try {
+                long started = System.nanoTime();
+                session = stompClient.connectAsync(config.baseUrl + "/ws", new StompSessionHandlerAdapter() {
+                }).get(30, TimeUnit.SECONDS);
+                metrics.record("stomp connect", started);
+            } catch (Exception e) {
+                metrics.error("stomp connect");
+                System.err.printf("User %d failed to connect: %s%n", index, e.getMessage());
+                return;
+            }
+            synchronized (this) {
+                updateSubscriptions();
+            }
+            if (config.presenceRate > 0) {
+                // The reply carrying this session's presence id is not needed, but subscribing
+                // like the frontend lets a relay broker delete the reply queue with the session
+                synchronized (sessionLock) {
+                    session.subscribe(PRESENCE_SESSION_QUEUE, new IgnoredHandler());
+                }
+                long periodMicros = (long) (1_000_000 / config.presenceRate);
+                presenceTask = scheduler.scheduleAtFixedRate(() -> workers.execute(this::sendPresence),
+                        periodMicros, periodMicros, TimeUnit.MICROSECONDS);
+            }
+            ownObjectId = client.createText(viewportX + VIEWPORT_WIDTH / 2, viewportY + VIEWPORT_HEIGHT / 2);
+            scheduleNextAction();
+        });
+    }
+
+    void stop() {
+        running = false;
+        if (presenceTask != null) {
+            presenceTask.cancel(false);
+        }
+        synchronized (sessionLock) {
+            if (session != null && session.isConnected()) {
+                session.disconnect();
+            }
+        }
+    }
+
+    private void scheduleNextAction() {
+        if (!running) {
+            return;
+        }
+        // Exponentially distributed think time around the configured mean
+        long delayMillis = (long) (-Math.log(1 - random.nextDouble()) * config.thinkTime.toMillis());
+        scheduler.schedule(() -> workers.execute(this::act), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void act() {
+        if (!running) {
+            return;
+        }
+        switch (pickBehavior()) {
+            case PAN -> {
+                pan();
+                scheduleNextAction();
+            }
+            case DRAG -> drag(0, viewportX + VIEWPORT_WIDTH / 2, viewportY + VIEWPORT_HEIGHT / 2);
+            case CREATE -> {
+                client.createText(viewportX + random.nextDouble() * VIEWPORT_WIDTH,
+                        viewportY + random.nextDouble() * VIEWPORT_HEIGHT);
+                scheduleNextAction();
+            }
+            case UPLOAD -> {
+                client.upload(viewportX + random.nextDouble() * VIEWPORT_WIDTH,
+                        viewportY + random.nextDouble() * VIEWPORT_HEIGHT, uploadImage);
+                scheduleNextAction();
+            }
+            case IDLE -> scheduleNextAction();
+        }
+    }
+
+    /**
+     * Move the cursor a step (random walk inside the viewport) and send it.
+     * The fraction makes every frame's x unique, to match it when received.
+     */
+    private void sendPresence() {
+        if (!running || session == null) {
+            return;
+        }
+
+        synchronized (sessionLock) {
+            if (!session.isConnected()) {
+                return;
+            }
+            cursorX = clamp(cursorX + presenceRandom.nextGaussian() * CURSOR_STEP, viewportX, viewportX + VIEWPORT_WIDTH);
+            cursorY = clamp(cursorY + presenceRandom.nextGaussian() * CURSOR_STEP, viewportY, viewportY + VIEWPORT_HEIGHT);
+            double x = Math.floor(cursorX) + presenceRandom.nextDouble();
+
+            long started = System.nanoTime();
+            presenceTracker.sent(0, x, started);
+            try {
+                session.send(PRESENCE_DESTINATION, Map.of("x", x, "y", cursorY));
+                metrics.record("presence send", started);
+            } catch (RuntimeException e) {
+                metrics.error("presence send");
+            }
+        }
+    }
+
+    private synchronized void pan() {
+        viewportX += (random.nextDouble() - 0.5) * 2 * PAN_DISTANCE;
+        viewportY += (random.nextDouble() - 0.5) * 2 * PAN_DISTANCE;
+        client.readViewport(viewportX, viewportY, viewportX + VIEWPORT_WIDTH, viewportY + VIEWPORT_HEIGHT);
+        updateSubscriptions();
+    }
+
+    /**
+     * One drag step; the last step is a regular (persisted) update
+     */
+    private void drag(int step, double x, double y) {
+        if (ownObjectId == null || !running) {
+            scheduleNextAction();
+            return;
+        }
+
+        // Sub-unit offset keeps every update's position unique for lag matching
+        double nextX = x + 5 + random.nextDouble();
+        boolean last = step >= config.dragSteps;
+        tracker.sent(ownObjectId, nextX, System.nanoTime());
+        client.move(ownObjectId, nextX, y, !last);
+
+        if (last) {
+            scheduleNextAction();
+        } else {
+            scheduler.schedule(() -> workers.execute(() -> drag(step + 1, nextX, y)),
+                    config.dragInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private LoadConfig.Behavior pickBehavior() {
+        int total = config.mix.values().stream().mapToInt(Integer::intValue).sum();
+        int pick = random.nextInt(total);
+        for (Map.Entry<LoadConfig.Behavior, Integer> entry : config.mix.entrySet()) {
+            pick -= entry.getValue();
+            if (pick < 0) {
+                return entry.getKey();
+            }
+        }
+        return LoadConfig.Behavior.PAN;
+    }
+
+    /**
+     * Subscribe to the tiles of the current viewport and drop the others (same as the frontend)
+     */
+    private void updateSubscriptions() {
+        Set<String> topics = new HashSet<>();
+        topics.add(LARGE_OBJECT_TOPIC);
+        for (long tx = tile(viewportX); tx <= tile(viewportX + VIEWPORT_WIDTH); tx++) {
+            for (long ty = tile(viewportY); ty <= tile(viewportY + VIEWPORT_HEIGHT); ty++) {
+                topics.add(TILE_TOPIC_PREFIX + tx + "." + ty);
+                if (config.presenceRate > 0) {
+                    topics.add(PRESENCE_TOPIC_PREFIX + tx + "." + ty);
+                }
+            }
+        }
+
+        synchronized (sessionLock) {
+            if (session == null || !session.isConnected()) {
+                return;
+            }
+            subscriptions.entrySet().removeIf(entry -> {
+                if (!topics.contains(entry.getKey())) {
+                    entry.getValue().unsubscribe();
+                    return true;
+                }
+                return false;
+            });
+            for (String topic : topics) {
+                if (!subscriptions.containsKey(topic)) {
+                    StompFrameHandler handler = topic.startsWith(PRESENCE_TOPIC_PREFIX)
+                            ? new PresenceHandler() : new MessageHandler();
+                    subscriptions.put(topic, session.subscribe(topic, handler));
+                }
+            }
+        }
+    }
+
+    private static long tile(double value) {
+        return (long) Math.floor(value / BROADCAST_TILE_SIZE);
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private class MessageHandler implements StompFrameHandler {
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return Map.class;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void handleFrame(StompHeaders headers, Object payload) {
+            metrics.messageReceived();
+
+            Map<String, Object> message = (Map<String, Object>) payload;
+            if ("UPDATE".equals(message.get("type"))) {
+                trackUpdate((Map<String, Object>) message.get("object"));
+            } else if ("BATCH".equals(message.get("type"))) {
+                ((List<Map<String, Object>>) message.get("updated")).forEach(this::trackUpdate);
+            }
+        }
+
+        private void trackUpdate(Map<String, Object> object) {
+            if (object != null) {
+                tracker.received(((Number) object.get("id")).longValue(),
+                        ((Number) object.get("positionX")).doubleValue());
+            }
+        }
+    }
+
+    private static class IgnoredHandler implements StompFrameHandler {
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return Map.class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+        }
+    }
+
+    /**
+     * Presence messages of the viewport tiles. Frames of this user count too: the lag is the
+     * same for every subscriber of the tile.
+     */
+    private class PresenceHandler implements StompFrameHandler {
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return Map.class;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void handleFrame(StompHeaders headers, Object payload) {
+            metrics.messageReceived();
+
+            List<Map<String, Object>> frames = (List<Map<String, Object>>) ((Map<String, Object>) payload).get("frames");
+            if (frames == null) {
+                return;
+            }
+            metrics.presenceFramesReceived(frames.size());
+            for (Map<String, Object> frame : frames) {
+                presenceTracker.received(0, ((Number) frame.get("x")).doubleValue());
+            }
+        }
+    }
+}
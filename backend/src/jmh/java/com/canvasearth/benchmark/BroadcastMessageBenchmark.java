@@ -0,0 +1,91 @@
+package com.canvasearth.benchmark;
+
+import com.canvasearth.dto.CanvasObjectResponse;
+import com.canvasearth.event.CanvasBatchAppliedEvent;
+import com.canvasearth.event.CanvasObjectChangedEvent;
+import com.canvasearth.service.CanvasBroadcastService;
+import com.canvasearth.spatial.Bounds;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Building and converting broadcast messages (CanvasBroadcastService): tile topic
+ * computation, message maps and JSON conversion. The channel discards the messages,
+ * so broker delivery is not included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastMessageBenchmark {
+
+    @Param({"100"})
+    public int batchSize;
+
+    private CanvasBroadcastService broadcastService;
+    private CanvasObjectChangedEvent update;
+    private CanvasBatchAppliedEvent batch;
+
+    // Keeps the converted messages observable so the conversion is not optimized away
+    private volatile Message<?> lastMessage;
+
+    @Setup
+    public void setUp() {
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> {
+            lastMessage = message;
+            return true;
+        });
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build());
+        template.setMessageConverter(converter);
+        broadcastService = new CanvasBroadcastService(template, new SimpleMeterRegistry(), 2000, 64);
+
+        List<CanvasObjectResponse> objects = SyntheticCanvas.responses(batchSize, 10_000, 42);
+        update = moved(objects.get(0));
+        batch = new CanvasBatchAppliedEvent(objects.stream()
+                .map(BroadcastMessageBenchmark::moved)
+                .collect(Collectors.toList()));
+    }
+
+    @Benchmark
+    public void singleUpdate() {
+        broadcastService.onObjectChanged(update);
+    }
+
+    @Benchmark
+    public void batchUpdate() {
+        broadcastService.onBatchApplied(batch);
+    }
+
+    /**
+     * An update that moved the object by 100 units, as when dragging
+     */
+    private static CanvasObjectChangedEvent moved(CanvasObjectResponse object) {
+        return CanvasObjectChangedEvent.updated(object, Bounds.of(
+                object.getPositionX() - 100, object.getPositionY(), object.getWidth(), object.getHeight()));
+    }
+}
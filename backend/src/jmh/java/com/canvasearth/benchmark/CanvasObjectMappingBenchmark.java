@@ -0,0 +1,70 @@
+package com.canvasearth.benchmark;
+
+import com.canvasearth.dto.CanvasObjectResponse;
+import com.canvasearth.entity.CanvasObject;
+import com.canvasearth.entity.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Entity to DTO mapping of a viewport result (CanvasObjectResponse.fromEntity).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CanvasObjectMappingBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int objects;
+
+    private List<CanvasObject> entities;
+    private Map<Long, String> usernames;
+
+    @Setup
+    public void setUp() {
+        entities = SyntheticCanvas.objects(objects, 50_000, 42);
+        usernames = entities.stream()
+                .map(CanvasObject::getUser)
+                .distinct()
+                .collect(Collectors.toMap(User::getId, User::getUsername, (a, b) -> a));
+    }
+
+    @Benchmark
+    public List<CanvasObjectResponse> fromEntity() {
+        List<CanvasObjectResponse> responses = new ArrayList<>(entities.size());
+        for (CanvasObject entity : entities) {
+            responses.add(CanvasObjectResponse.fromEntity(entity));
+        }
+        return responses;
+    }
+
+    /**
+     * Variant used for list reads, with owners resolved in bulk
+     */
+    @Benchmark
+    public List<CanvasObjectResponse> fromEntityWithUsernames() {
+        List<CanvasObjectResponse> responses = new ArrayList<>(entities.size());
+        for (CanvasObject entity : entities) {
+            responses.add(CanvasObjectResponse.fromEntity(entity, usernames));
+        }
+        return responses;
+    }
+}
@@ -0,0 +1,67 @@
+package com.canvasearth.benchmark;
+
+import com.canvasearth.entity.ObjectType;
+import com.canvasearth.exception.InvalidFileTypeException;
+import com.canvasearth.validator.FileValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload validation as done by UploadStorage (size check plus format sniffing of the
+ * first bytes) for an accepted and a rejected file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileValidatorBenchmark {
+
+    private static final long SIZE = 1024 * 1024;
+
+    private FileValidator fileValidator;
+    private byte[] pngHead;
+    private byte[] zipHead;
+
+    @Setup
+    public void setUp() {
+        // Same limits as application.yml
+        fileValidator = new FileValidator();
+        ReflectionTestUtils.setField(fileValidator, "imageMaxSize", 5_242_880L);
+        ReflectionTestUtils.setField(fileValidator, "imageAllowedTypes", "jpg,jpeg,png,gif,webp");
+        ReflectionTestUtils.setField(fileValidator, "videoMaxSize", 52_428_800L);
+        ReflectionTestUtils.setField(fileValidator, "videoAllowedTypes", "mp4,webm");
+
+        pngHead = new byte[]{(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0x0D};
+        zipHead = new byte[]{'P', 'K', 0x03, 0x04, 0x14, 0, 0, 0, 0x08, 0, 0, 0};
+    }
+
+    @Benchmark
+    public String validImage() {
+        fileValidator.checkSize(ObjectType.IMAGE, SIZE);
+        return fileValidator.detectExtension(ObjectType.IMAGE, pngHead, pngHead.length);
+    }
+
+    @Benchmark
+    public boolean rejectedImage() {
+        try {
+            fileValidator.checkSize(ObjectType.IMAGE, SIZE);
+            fileValidator.detectExtension(ObjectType.IMAGE, zipHead, zipHead.length);
+            return true;
+        } catch (InvalidFileTypeException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.canvasearth.benchmark;
+
+import com.canvasearth.dto.CanvasObjectResponse;
+import com.canvasearth.entity.CanvasObject;
+import com.canvasearth.entity.ObjectType;
+import com.canvasearth.entity.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Deterministic synthetic canvas content shared by the benchmarks.
+ */
+final class SyntheticCanvas {
+
+    static final int USER_COUNT = 20;
+
+    private static final ObjectType[] TYPES = ObjectType.values();
+    private static final String[] FONT_WEIGHTS = {"normal", "bold"};
+    private static final String[] TEXT_COLORS = {"#000000", "#ff0000", "#0000ff"};
+
+    private SyntheticCanvas() {
+    }
+
+    /**
+     * Objects scattered uniformly over an extent x extent square centred on the origin
+     */
+    static List<CanvasObject> objects(int count, double extent, long seed) {
+        Random random = new Random(seed);
+        List<User> users = new ArrayList<>();
+        for (long id = 1; id <= USER_COUNT; id++) {
+            users.add(User.builder()
+                    .id(id)
+                    .username("user" + id)
+                    .createdAt(LocalDateTime.of(2024, 1, 1, 0, 0))
+                    .build());
+        }
+
+        LocalDateTime createdAt = LocalDateTime.of(2024, 6, 1, 12, 0);
+        List<CanvasObject> objects = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ObjectType type = TYPES[random.nextInt(TYPES.length)];
+            boolean text = type == ObjectType.TEXT;
+            objects.add(CanvasObject.builder()
+                    .id((long) i + 1)
+                    .objectType(type)
+                    .contentUrl(text ? "Text " + i : "/uploads/" + (i % 500) + ".png")
+                    .positionX(random.nextDouble() * extent - extent / 2)
+                    .positionY(random.nextDouble() * extent - extent / 2)
+                    .width(50 + random.nextDouble() * 450)
+                    .height(50 + random.nextDouble() * 450)
+                    .zIndex(random.nextInt(10))
+                    .fontSize(text ? 16 + random.nextInt(32) : null)
+                    .fontWeight(text ? FONT_WEIGHTS[random.nextInt(FONT_WEIGHTS.length)] : null)
+                    .textColor(text ? TEXT_COLORS[random.nextInt(TEXT_COLORS.length)] : null)
+                    .user(users.get(random.nextInt(USER_COUNT)))
+                    .createdAt(createdAt.plusSeconds(i))
+                    .revision((long) i + 1)
+                    .build());
+        }
+        return objects;
+    }
+
+    static List<CanvasObjectResponse> responses(int count, double extent, long seed) {
+        return objects(count, extent, seed).stream()
+                .map(CanvasObjectResponse::fromEntity)
+                .collect(Collectors.toList());
+    }
+}
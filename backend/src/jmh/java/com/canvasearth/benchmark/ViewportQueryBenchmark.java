@@ -0,0 +1,132 @@
+package com.canvasearth.benchmark;
+
+import com.canvasearth.CanvasEarthApplication;
+import com.canvasearth.entity.CanvasObject;
+import com.canvasearth.repository.CanvasObjectRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Viewport queries (CanvasObjectRepository.findObjectsInViewport and the PostGIS variant)
+ * against a local PostgreSQL with PostGIS, without Testcontainers.
+ *
+ * The database is given by the system properties bench.datasource.url (default
+ * jdbc:postgresql://localhost:5432/canvasearth_bench), bench.datasource.username and
+ * bench.datasource.password (default postgres/postgres). It must exist and is overwritten:
+ * canvas_objects is truncated and filled with a synthetic canvas of the given density
+ * (objects per 1000x1000 units) over an extent x extent square.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ViewportQueryBenchmark {
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+    private static final double VIEWPORT_WIDTH = 1920;
+    private static final double VIEWPORT_HEIGHT = 1080;
+
+    @Param({"10", "100"})
+    public int density;
+
+    @Param({"50000"})
+    public double extent;
+
+    private ConfigurableApplicationContext context;
+    private CanvasObjectRepository repository;
+    private final Random random = new Random(7);
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(CanvasEarthApplication.class)
+                .properties(
+                        "spring.datasource.url=" + System.getProperty("bench.datasource.url",
+                                "jdbc:postgresql://localhost:5432/canvasearth_bench"),
+                        "spring.datasource.username=" + System.getProperty("bench.datasource.username", "postgres"),
+                        "spring.datasource.password=" + System.getProperty("bench.datasource.password", "postgres"),
+                        "spring.jpa.hibernate.ddl-auto=update",
+                        "spring.jpa.defer-datasource-initialization=true",
+                        "spring.jpa.show-sql=false",
+                        "server.port=0",
+                        "canvas.viewport.source=database",
+                        "logging.level.root=WARN")
+                .run();
+        repository = context.getBean(CanvasObjectRepository.class);
+
+        int count = (int) (density * (extent / 1000) * (extent / 1000));
+        load(context.getBean(JdbcTemplate.class), SyntheticCanvas.objects(count, extent, 42));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<CanvasObject> arithmetic() {
+        double minX = randomOrigin();
+        double minY = randomOrigin();
+        return repository.findObjectsInViewport(minX, minY, minX + VIEWPORT_WIDTH, minY + VIEWPORT_HEIGHT);
+    }
+
+    @Benchmark
+    public List<CanvasObject> postgis() {
+        double minX = randomOrigin();
+        double minY = randomOrigin();
+        return repository.findObjectsInViewportPostgis(minX, minY, minX + VIEWPORT_WIDTH, minY + VIEWPORT_HEIGHT);
+    }
+
+    private double randomOrigin() {
+        return random.nextDouble() * (extent - VIEWPORT_WIDTH) - extent / 2;
+    }
+
+    private static void load(JdbcTemplate jdbcTemplate, List<CanvasObject> objects) {
+        jdbcTemplate.execute("TRUNCATE canvas_objects RESTART IDENTITY CASCADE");
+
+        String sql = "INSERT INTO canvas_objects (object_type, content_url, position_x, position_y, width, height, "
+                + "z_index, font_size, font_weight, text_color, created_at, revision, bbox) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ST_MakeEnvelope(?, ?, ?, ?, 0))";
+        for (int from = 0; from < objects.size(); from += INSERT_BATCH_SIZE) {
+            List<CanvasObject> batch = objects.subList(from, Math.min(from + INSERT_BATCH_SIZE, objects.size()));
+            jdbcTemplate.batchUpdate(sql, batch, batch.size(), (statement, object) -> {
+                statement.setString(1, object.getObjectType().name());
+                statement.setString(2, object.getContentUrl());
+                statement.setDouble(3, object.getPositionX());
+                statement.setDouble(4, object.getPositionY());
+                statement.setDouble(5, object.getWidth());
+                statement.setDouble(6, object.getHeight());
+                statement.setInt(7, object.getZIndex());
+                statement.setObject(8, object.getFontSize());
+                statement.setString(9, object.getFontWeight());
+                statement.setString(10, object.getTextColor());
+                statement.setTimestamp(11, Timestamp.valueOf(object.getCreatedAt()));
+                statement.setLong(12, object.getRevision());
+                statement.setDouble(13, object.getPositionX());
+                statement.setDouble(14, object.getPositionY());
+                statement.setDouble(15, object.getPositionX() + object.getWidth());
+                statement.setDouble(16, object.getPositionY() + object.getHeight());
+            });
+        }
+        jdbcTemplate.execute("ANALYZE canvas_objects");
+    }
+}
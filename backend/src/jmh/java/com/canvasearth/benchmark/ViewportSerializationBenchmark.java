@@ -0,0 +1,86 @@
+package com.canvasearth.benchmark;
+
+import com.canvasearth.dto.CanvasObjectResponse;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of a viewport response in each wire format (see WebConfig),
+ * and deserialization as done by a client.
+ * Payload sizes over HTTP are compared by benchmarks/wire-format/run.sh.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewportSerializationBenchmark {
+
+    private static final TypeReference<List<CanvasObjectResponse>> RESPONSE_LIST = new TypeReference<>() {
+    };
+
+    @Param({"1000", "10000"})
+    public int objects;
+
+    @Param({"json", "cbor", "cbor-stringref"})
+    public String format;
+
+    private ObjectMapper mapper;
+    private List<CanvasObjectResponse> responses;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Same date handling as Boot's ObjectMapper (ISO-8601 strings)
+        mapper = switch (format) {
+            case "json" -> JsonMapper.builder()
+                    .findAndAddModules()
+                    .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                    .build();
+            case "cbor" -> CBORMapper.builder()
+                    .findAndAddModules()
+                    .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                    .build();
+            case "cbor-stringref" -> CBORMapper.builder(CBORFactory.builder()
+                            .enable(CBORGenerator.Feature.STRINGREF)
+                            .build())
+                    .findAndAddModules()
+                    .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                    .build();
+            default -> throw new IllegalArgumentException("Unknown format: " + format);
+        };
+        responses = SyntheticCanvas.responses(objects, 50_000, 42);
+        encoded = mapper.writeValueAsBytes(responses);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return mapper.writeValueAsBytes(responses);
+    }
+
+    @Benchmark
+    public List<CanvasObjectResponse> deserialize() throws IOException {
+        return mapper.readValue(encoded, RESPONSE_LIST);
+    }
+}
@@ -0,0 +1,96 @@
+package com.canvasearth.config;
+
+import com.canvasearth.entity.CanvasObject;
+import com.canvasearth.entity.User;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.time.Duration;
+import java.util.OptionalLong;
+
+/**
+ * Hibernate second-level cache for CanvasObject and User, held in Caffeine (W-TinyLFU eviction)
+ * through JCache.
+ *
+ * Each entity region is bounded by entry count (canvas.cache.*.max-size) and entries expire a
+ * fixed time after they were written (canvas.cache.*.expire-after-write). Regions are
+ * read-write: Hibernate updates them when a transaction commits, so findById after a write
+ * on this instance never sees the old row. Bulk HQL/native writes evict the whole region,
+ * so services change cached entities one by one.
+ *
+ * Hit/miss/put counts come from Hibernate statistics (hibernate.second.level.cache.*);
+ * canvas.cache.size is the number of entries per region.
+ */
+@Slf4j
+@Configuration
+public class CacheConfig {
+
+    @Value("${canvas.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${canvas.cache.objects.max-size:100000}")
+    private long objectsMaxSize;
+
+    @Value("${canvas.cache.objects.expire-after-write:PT10M}")
+    private Duration objectsExpireAfterWrite;
+
+    @Value("${canvas.cache.users.max-size:10000}")
+    private long usersMaxSize;
+
+    @Value("${canvas.cache.users.expire-after-write:PT1H}")
+    private Duration usersExpireAfterWrite;
+
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager(MeterRegistry meterRegistry) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+
+        // Region names are the entity names
+        createRegion(cacheManager, meterRegistry, CanvasObject.class.getName(), objectsMaxSize, objectsExpireAfterWrite);
+        createRegion(cacheManager, meterRegistry, User.class.getName(), usersMaxSize, usersExpireAfterWrite);
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager secondLevelCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, enabled);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+            // A region without a cache above would be unbounded: refuse to start instead
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            properties.put(AvailableSettings.GENERATE_STATISTICS, true);
+        };
+    }
+
+    private static void createRegion(CacheManager cacheManager, MeterRegistry meterRegistry,
+                                     String region, long maxSize, Duration expireAfterWrite) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maxSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(expireAfterWrite.toNanos()));
+        // Hibernate caches immutable disassembled state: no copy on read or write
+        configuration.setStoreByValue(false);
+
+        Cache<Object, Object> cache = cacheManager.createCache(region, configuration);
+        com.github.benmanes.caffeine.cache.Cache<?, ?> caffeine =
+                cache.unwrap(com.github.benmanes.caffeine.cache.Cache.class);
+        Gauge.builder("canvas.cache.size", caffeine, com.github.benmanes.caffeine.cache.Cache::estimatedSize)
+                .description("Entries in a second-level cache region")
+                .tag("region", region.substring(region.lastIndexOf('.') + 1))
+                .register(meterRegistry);
+        log.info("Second-level cache region {}: max {} entries, expire after {}", region, maxSize, expireAfterWrite);
+    }
+}
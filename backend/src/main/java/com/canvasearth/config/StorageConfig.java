@@ -0,0 +1,162 @@
+package com.canvasearth.config;
+
+import com.canvasearth.storage.BlobStore;
+import com.canvasearth.storage.GcsBlobStore;
+import com.canvasearth.storage.LocalBlobStore;
+import com.canvasearth.storage.S3BlobStore;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Selects the BlobStore for uploads with canvas.storage.type:
+ * - local: files under canvas.upload.directory, served by this application
+ * - gcs: Google Cloud Storage bucket gcp.storage.bucket-name
+ * - s3: S3-compatible bucket canvas.storage.s3.* (AWS S3, or MinIO with endpoint and path-style)
+ *
+ * For gcs and s3, reads of /uploads/sha256/** are redirected to the bucket (MediaController).
+ */
+@Slf4j
+@Configuration
+public class StorageConfig {
+
+    @Value("${canvas.storage.type:local}")
+    private String storageType;
+
+    @Value("${canvas.upload.directory:uploads}")
+    private String uploadDirectory;
+
+    @Value("${canvas.storage.public-base-url:}")
+    private String publicBaseUrl;
+
+    @Value("${canvas.storage.presign-ttl:PT15M}")
+    private Duration presignTtl;
+
+    @Value("${canvas.storage.chunk-size:8MB}")
+    private DataSize chunkSize;
+
+    @Value("${gcp.storage.bucket-name:}")
+    private String gcsBucket;
+
+    @Value("${gcp.storage.credentials-path:}")
+    private String gcsCredentialsPath;
+
+    @Value("${canvas.storage.s3.bucket:}")
+    private String s3Bucket;
+
+    @Value("${canvas.storage.s3.region:us-east-1}")
+    private String s3Region;
+
+    @Value("${canvas.storage.s3.endpoint:}")
+    private String s3Endpoint;
+
+    @Value("${canvas.storage.s3.path-style:false}")
+    private boolean s3PathStyle;
+
+    @Value("${canvas.storage.s3.access-key:}")
+    private String s3AccessKey;
+
+    @Value("${canvas.storage.s3.secret-key:}")
+    private String s3SecretKey;
+
+    @Value("${canvas.storage.s3.multipart-threshold:16MB}")
+    private DataSize s3MultipartThreshold;
+
+    @Value("${canvas.storage.s3.upload-concurrency:4}")
+    private int s3UploadConcurrency;
+
+    @Bean
+    public BlobStore blobStore() throws IOException {
+        String baseUrl = publicBaseUrl.endsWith("/")
+                ? publicBaseUrl.substring(0, publicBaseUrl.length() - 1)
+                : publicBaseUrl;
+
+        return switch (storageType.toLowerCase()) {
+            case "local" -> new LocalBlobStore(Paths.get(uploadDirectory));
+            case "gcs" -> {
+                log.info("Upload storage: GCS bucket {}", gcsBucket);
+                yield new GcsBlobStore(gcsStorage(), requireBucket(gcsBucket, "gcp.storage.bucket-name"),
+                        baseUrl, presignTtl, (int) chunkSize.toBytes());
+            }
+            case "s3" -> {
+                log.info("Upload storage: S3 bucket {}{}", s3Bucket, s3Endpoint.isEmpty() ? "" : " at " + s3Endpoint);
+                yield new S3BlobStore(s3Client(), s3Presigner(), requireBucket(s3Bucket, "canvas.storage.s3.bucket"),
+                        baseUrl, presignTtl, s3MultipartThreshold.toBytes(), (int) chunkSize.toBytes(), s3UploadConcurrency);
+            }
+            default -> throw new IllegalStateException("Unknown canvas.storage.type: " + storageType);
+        };
+    }
+
+    private Storage gcsStorage() throws IOException {
+        StorageOptions.Builder options = StorageOptions.newBuilder();
+        if (!gcsCredentialsPath.isEmpty()) {
+            try (InputStream credentials = new FileInputStream(gcsCredentialsPath)) {
+                options.setCredentials(GoogleCredentials.fromStream(credentials));
+            }
+        }
+        return options.build().getService();
+    }
+
+    private S3Client s3Client() {
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(s3Region))
+                .credentialsProvider(s3Credentials())
+                .serviceConfiguration(s3Configuration());
+        if (!s3Endpoint.isEmpty()) {
+            builder.endpointOverride(URI.create(s3Endpoint));
+        }
+        return builder.build();
+    }
+
+    private S3Presigner s3Presigner() {
+        S3Presigner.Builder builder = S3Presigner.builder()
+                .region(Region.of(s3Region))
+                .credentialsProvider(s3Credentials())
+                .serviceConfiguration(s3Configuration());
+        if (!s3Endpoint.isEmpty()) {
+            builder.endpointOverride(URI.create(s3Endpoint));
+        }
+        return builder.build();
+    }
+
+    private S3Configuration s3Configuration() {
+        return S3Configuration.builder()
+                .pathStyleAccessEnabled(s3PathStyle)
+                .build();
+    }
+
+    private AwsCredentialsProvider s3Credentials() {
+        if (s3AccessKey.isEmpty()) {
+            return DefaultCredentialsProvider.create();
+        }
+        return StaticCredentialsProvider.create(AwsBasicCredentials.create(s3AccessKey, s3SecretKey));
+    }
+
+    private static String requireBucket(String bucket, String property) {
+        if (bucket.isEmpty()) {
+            throw new IllegalStateException(property + " must be set for this canvas.storage.type");
+        }
+        return bucket;
+    }
+}
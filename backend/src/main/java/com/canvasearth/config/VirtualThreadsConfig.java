@@ -0,0 +1,68 @@
+package com.canvasearth.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+
+/**
+ * Startup checks for spring.threads.virtual.enabled.
+ *
+ * A virtual thread that blocks inside a synchronized block pins its carrier thread, so a
+ * few slow statements can stall every request. pgjdbc replaced its synchronized blocks with
+ * locks in 42.6 and HikariCP 5.1 does not block while synchronized; older drivers are
+ * reported here. Run with -Djdk.tracePinnedThreads=short to log any remaining pinning.
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class VirtualThreadsConfig {
+
+    private static final int MIN_PGJDBC_MAJOR = 42;
+    private static final int MIN_PGJDBC_MINOR = 6;
+
+    private final Environment environment;
+    private final DataSource dataSource;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkVirtualThreads() {
+        boolean requested = environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false);
+        if (!requested) {
+            return;
+        }
+        if (!Threading.VIRTUAL.isActive(environment)) {
+            log.warn("spring.threads.virtual.enabled is set but Java {} has no virtual threads; using platform threads",
+                    Runtime.version().feature());
+            return;
+        }
+
+        log.info("Virtual threads enabled for Tomcat, task execution and STOMP channels");
+        checkJdbcDriver();
+        if (System.getProperty("jdk.tracePinnedThreads") == null) {
+            log.info("Start with -Djdk.tracePinnedThreads=short to log virtual threads pinned while blocking");
+        }
+    }
+
+    private void checkJdbcDriver() {
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            int major = metaData.getDriverMajorVersion();
+            int minor = metaData.getDriverMinorVersion();
+            if (major < MIN_PGJDBC_MAJOR || (major == MIN_PGJDBC_MAJOR && minor < MIN_PGJDBC_MINOR)) {
+                log.warn("JDBC driver {} {} synchronizes around socket I/O and pins virtual threads; " +
+                                "upgrade to pgjdbc {}.{} or later",
+                        metaData.getDriverName(), metaData.getDriverVersion(), MIN_PGJDBC_MAJOR, MIN_PGJDBC_MINOR);
+            }
+        } catch (SQLException e) {
+            log.warn("Could not check the JDBC driver version: {}", e.getMessage());
+        }
+    }
+}
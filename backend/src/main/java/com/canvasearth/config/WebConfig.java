@@ -1,10 +1,15 @@
 package com.canvasearth.config;
 
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import java.util.ArrayList;
@@ -16,6 +21,24 @@ public class WebConfig implements WebMvcConfigurer {
     @Autowired
     private Environment environment;
 
+    @Value("${canvas.wire.cbor.string-refs:false}")
+    private boolean cborStringRefs;
+
+    /**
+     * Binary responses for clients sending Accept: application/cbor (same fields as JSON).
+     * Built from Boot's ObjectMapper builder so dates and other settings match the JSON output;
+     * replaces the default CBOR converter in place, so JSON stays the default for other clients.
+     * With string-refs, repeated strings (field names, contentUrl, username) are written once
+     * per response (CBOR stringref tags 25/256); the client decoder must support them.
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        CBORFactory factory = CBORFactory.builder()
+                .configure(CBORGenerator.Feature.STRINGREF, cborStringRefs)
+                .build();
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(factory).build());
+    }
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         // Read allowed origins from environment variables (consistent with application.yml)
@@ -35,6 +58,7 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedOrigins(origins)
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
+                .exposedHeaders("X-Next-After-Id", "X-Canvas-Revision", "ETag")
                 .allowCredentials(true)
                 .maxAge(3600);
 
@@ -45,20 +69,13 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowCredentials(true)
                 .maxAge(3600);
 
+        // Uploads are served by LocalMediaController / MediaController
         registry.addMapping("/uploads/**")
                 .allowedOrigins(origins)
-                .allowedMethods("GET")
+                .allowedMethods("GET", "HEAD")
                 .allowedHeaders("*")
+                .exposedHeaders("ETag", "Content-Range", "Accept-Ranges")
                 .allowCredentials(true)
                 .maxAge(3600);
     }
-
-    @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // Serve uploaded files from absolute path
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:/app/uploads/");
-    }
-
-
 }
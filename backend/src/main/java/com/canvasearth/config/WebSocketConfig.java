@@ -1,16 +1,63 @@
 package com.canvasearth.config;
 
+import com.canvasearth.metrics.OutboundQueueMetrics;
+import com.canvasearth.service.PresenceBackpressure;
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.stomp.StompReactorNettyCodec;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.messaging.tcp.reactor.ReactorNettyTcpClient;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.tcp.TcpClient;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * STOMP over SockJS at /ws.
+ *
+ * canvas.websocket.broker selects the broker behind /topic:
+ * - simple: in-memory broker, messages only reach sockets connected to this instance
+ * - relay: every instance relays to an external STOMP broker (RabbitMQ with the STOMP plugin),
+ *   so a broadcast from any instance reaches clients on all of them
+ *
+ * /queue carries per-session replies (/user/queue/acks, /user/queue/errors, see
+ * CanvasCommandController); anonymous sessions are addressed by session id.
+ * Presence (cursors, see PresenceService) uses /topic/canvas.presence.* and is dropped for
+ * sessions that fall behind (PresenceBackpressure).
+ *
+ * In relay mode the broker is probed at startup; if it cannot be reached and
+ * canvas.websocket.relay.fallback-to-simple is set, the simple broker is used instead.
+ *
+ * With spring.threads.virtual.enabled on Java 21+, the clientInbound/clientOutbound channels
+ * run each message on a virtual thread, up to canvas.websocket.virtual-channel-concurrency
+ * messages at a time per channel; otherwise Spring's default platform thread pools are used.
+ */
+@Slf4j
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
@@ -18,15 +65,88 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Autowired
     private Environment environment;
 
+    @Autowired
+    private OutboundQueueMetrics outboundQueueMetrics;
+
+    @Autowired
+    private PresenceBackpressure presenceBackpressure;
+
+    @Value("${canvas.websocket.broker:simple}")
+    private String brokerMode;
+
+    @Value("${canvas.websocket.heartbeat.send-interval:10000}")
+    private long heartbeatSendInterval;
+
+    @Value("${canvas.websocket.heartbeat.receive-interval:10000}")
+    private long heartbeatReceiveInterval;
+
+    @Value("${canvas.websocket.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${canvas.websocket.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${canvas.websocket.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${canvas.websocket.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${canvas.websocket.relay.virtual-host:/}")
+    private String relayVirtualHost;
+
+    // Caps the client sessions of this instance in relay mode (one broker connection each)
+    @Value("${canvas.websocket.relay.max-connections:2000}")
+    private int relayMaxConnections;
+
+    @Value("${server.tomcat.max-connections:8192}")
+    private int serverMaxConnections;
+
+    @Value("${canvas.websocket.relay.connect-timeout:PT3S}")
+    private Duration relayConnectTimeout;
+
+    @Value("${canvas.websocket.relay.fallback-to-simple:true}")
+    private boolean fallbackToSimple;
+
+    @Value("${canvas.websocket.virtual-channel-concurrency:256}")
+    private int virtualChannelConcurrency;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Simple in-memory message broker
-        config.enableSimpleBroker("/topic");
+        if ("relay".equalsIgnoreCase(brokerMode) && useRelay()) {
+            configureRelay(config);
+        } else {
+            // Simple in-memory message broker
+            config.enableSimpleBroker("/topic", "/queue")
+                    .setHeartbeatValue(new long[]{heartbeatSendInterval, heartbeatReceiveInterval})
+                    .setTaskScheduler(webSocketHeartbeatScheduler());
+        }
 
         // Application destination prefix for messages from clients
         config.setApplicationDestinationPrefixes("/app");
     }
 
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            registration.taskExecutor(virtualChannelExecutor("ws-inbound-"));
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            registration.taskExecutor(virtualChannelExecutor("ws-outbound-"));
+        }
+        // Dropped presence messages never reach the queue metrics
+        registration.interceptors(presenceBackpressure, outboundQueueMetrics);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.addDecoratorFactory(presenceBackpressure);
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         // Register WebSocket endpoint at "/ws"
@@ -48,4 +168,118 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .withSockJS();
     }
 
+    private void configureRelay(MessageBrokerRegistry config) {
+        // One pooled TCP connection per client session plus the shared "system" session
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("stomp-relay")
+                .maxConnections(relayMaxConnections)
+                .pendingAcquireTimeout(relayConnectTimeout)
+                .build();
+        TcpClient tcpClient = TcpClient.create(connectionProvider)
+                .host(relayHost)
+                .port(relayPort)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) relayConnectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true);
+
+        config.enableStompBrokerRelay("/topic", "/queue")
+                .setTcpClient(new ReactorNettyTcpClient<>(tcpClient, new StompReactorNettyCodec()))
+                .setClientLogin(relayLogin)
+                .setClientPasscode(relayPasscode)
+                .setSystemLogin(relayLogin)
+                .setSystemPasscode(relayPasscode)
+                .setVirtualHost(relayVirtualHost)
+                .setSystemHeartbeatSendInterval(heartbeatSendInterval)
+                .setSystemHeartbeatReceiveInterval(heartbeatReceiveInterval);
+        // Sees the /user destinations already resolved to the per-session /queue names
+        config.configureBrokerChannel().interceptors(new TransientUserQueueInterceptor());
+
+        log.info("STOMP broker relay: {}:{} (max {} connections)", relayHost, relayPort, relayMaxConnections);
+        if (relayMaxConnections <= serverMaxConnections) {
+            // The pool fails a CONNECT it cannot serve within the timeout instead of queueing it
+            log.warn("STOMP broker relay allows at most {} client sessions on this instance while the server " +
+                            "accepts {} connections; CONNECTs beyond that fail after {}. " +
+                            "Raise canvas.websocket.relay.max-connections to the expected session count",
+                    relayMaxConnections - 1, serverMaxConnections, relayConnectTimeout);
+        }
+    }
+
+    /**
+     * Whether the relay broker is reachable, or relay mode is forced (fallback disabled).
+     */
+    private boolean useRelay() {
+        if (!fallbackToSimple) {
+            return true;
+        }
+
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(relayHost, relayPort), (int) relayConnectTimeout.toMillis());
+            return true;
+        } catch (IOException e) {
+            log.warn("STOMP broker {}:{} is unreachable ({}), falling back to the simple broker; " +
+                    "broadcasts will only reach clients of this instance", relayHost, relayPort, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Pool of virtual threads: the pool size only bounds how many messages are handled at once,
+     * a blocked send or handler no longer ties up a platform thread.
+     * Idle threads are not kept, so the pool is empty between bursts.
+     */
+    private ThreadPoolTaskExecutor virtualChannelExecutor(String threadNamePrefix) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setVirtualThreads(true);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setCorePoolSize(virtualChannelConcurrency);
+        executor.setMaxPoolSize(virtualChannelConcurrency);
+        executor.setKeepAliveSeconds(10);
+        executor.setAllowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * RabbitMQ declares /queue destinations durable and keeps them after the subscriber leaves.
+     * The per-session queues behind /user/queue/** are declared transient and auto-deleted
+     * instead, so they go away with the session. RabbitMQ declares the queue on SUBSCRIBE and
+     * again on every SEND (the @SendToUser replies), and a redeclare with other arguments fails
+     * with PRECONDITION_FAILED and closes the relay session, so both carry the same headers.
+     */
+    private static class TransientUserQueueInterceptor implements ChannelInterceptor {
+
+        @Override
+        public Message<?> preSend(Message<?> message, MessageChannel channel) {
+            SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+            String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+            if ((type != SimpMessageType.SUBSCRIBE && type != SimpMessageType.MESSAGE)
+                    || destination == null || !destination.startsWith("/queue/")) {
+                return message;
+            }
+
+            SimpMessageHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, SimpMessageHeaderAccessor.class);
+            if (accessor != null && accessor.isMutable()) {
+                setTransient(accessor);
+                return message;
+            }
+            SimpMessageHeaderAccessor copy = SimpMessageHeaderAccessor.wrap(message);
+            setTransient(copy);
+            return MessageBuilder.createMessage(message.getPayload(), copy.getMessageHeaders());
+        }
+
+        private static void setTransient(SimpMessageHeaderAccessor accessor) {
+            accessor.setNativeHeader("durable", "false");
+            accessor.setNativeHeader("auto-delete", "true");
+        }
+    }
+
+    /**
+     * Heartbeats of the simple broker. A bean, so the context initializes it and shuts its
+     * thread down on close; called from configureMessageBroker, the configuration proxy
+     * returns the same instance.
+     */
+    @Bean
+    public ThreadPoolTaskScheduler webSocketHeartbeatScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("ws-heartbeat-");
+        return scheduler;
+    }
 }
@@ -0,0 +1,199 @@
+package com.canvasearth.controller;
+
+import com.canvasearth.dto.CanvasCommandAck;
+import com.canvasearth.dto.CanvasCommandError;
+import com.canvasearth.dto.CanvasObjectRequest;
+import com.canvasearth.dto.CanvasObjectResponse;
+import com.canvasearth.dto.CanvasObjectUpdateRequest;
+import com.canvasearth.exception.ObjectConflictException;
+import com.canvasearth.exception.ObjectNotFoundException;
+import com.canvasearth.exception.PreconditionFailedException;
+import com.canvasearth.service.CanvasObjectService;
+import com.canvasearth.service.WriteBehindBuffer;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.handler.annotation.support.MethodArgumentNotValidException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.stereotype.Controller;
+
+import java.util.stream.Collectors;
+
+/**
+ * Object mutations over the open STOMP connection, without an HTTP request per change.
+ *
+ * SEND to /app/objects.create, /app/objects.{id}.update, /app/objects.{id}.move or
+ * /app/objects.{id}.delete with the same JSON body as the REST counterpart. Commands go
+ * through CanvasObjectService and are broadcast on the canvas topics like REST changes.
+ * The sending session alone gets a CanvasCommandAck on /user/queue/acks, or a
+ * CanvasCommandError on /user/queue/errors; both echo the request-id header of the SEND.
+ *
+ * move takes position/size only and is buffered like PUT ?deferred=true (use while
+ * dragging); update accepts an expected-revision header, the If-Match of PUT.
+ */
+@Slf4j
+@Controller
+@RequiredArgsConstructor
+public class CanvasCommandController {
+
+    public static final String ACK_QUEUE = "/queue/acks";
+    public static final String ERROR_QUEUE = "/queue/errors";
+    public static final String REQUEST_ID_HEADER = "request-id";
+    public static final String EXPECTED_REVISION_HEADER = "expected-revision";
+
+    private final CanvasObjectService canvasObjectService;
+    private final WriteBehindBuffer writeBehindBuffer;
+
+    @MessageMapping("objects.create")
+    @SendToUser(destinations = ACK_QUEUE, broadcast = false)
+    public CanvasCommandAck createObject(
+            @Valid @Payload CanvasObjectRequest request,
+            @Header(name = REQUEST_ID_HEADER, required = false) String requestId) {
+
+        CanvasObjectResponse created = canvasObjectService.createObject(request);
+        return ack(requestId, created);
+    }
+
+    @MessageMapping("objects.{id}.update")
+    @SendToUser(destinations = ACK_QUEUE, broadcast = false)
+    public CanvasCommandAck updateObject(
+            @DestinationVariable Long id,
+            @Valid @Payload CanvasObjectUpdateRequest request,
+            @Header(name = EXPECTED_REVISION_HEADER, required = false) Long expectedRevision,
+            @Header(name = REQUEST_ID_HEADER, required = false) String requestId) {
+
+        CanvasObjectResponse updated = canvasObjectService.updateObject(id, request, expectedRevision);
+        return ack(requestId, updated);
+    }
+
+    @MessageMapping("objects.{id}.move")
+    @SendToUser(destinations = ACK_QUEUE, broadcast = false)
+    public CanvasCommandAck moveObject(
+            @DestinationVariable Long id,
+            @Valid @Payload CanvasObjectUpdateRequest request,
+            @Header(name = REQUEST_ID_HEADER, required = false) String requestId) {
+
+        if (!WriteBehindBuffer.isBufferable(request)) {
+            throw new IllegalArgumentException("move only changes positionX, positionY, width and height");
+        }
+
+        CanvasObjectResponse moved = writeBehindBuffer.isEnabled()
+                ? canvasObjectService.updateObjectDeferred(id, request)
+                : canvasObjectService.updateObject(id, request);
+        return ack(requestId, moved);
+    }
+
+    @MessageMapping("objects.{id}.delete")
+    @SendToUser(destinations = ACK_QUEUE, broadcast = false)
+    public CanvasCommandAck deleteObject(
+            @DestinationVariable Long id,
+            @Header(name = REQUEST_ID_HEADER, required = false) String requestId) {
+
+        canvasObjectService.deleteObject(id);
+        return CanvasCommandAck.builder()
+                .requestId(requestId)
+                .objectId(id)
+                .build();
+    }
+
+    @MessageExceptionHandler(MethodArgumentNotValidException.class)
+    @SendToUser(destinations = ERROR_QUEUE, broadcast = false)
+    public CanvasCommandError handleValidationException(
+            MethodArgumentNotValidException ex,
+            @Header(name = REQUEST_ID_HEADER, required = false) String requestId,
+            @Header(SimpMessageHeaderAccessor.DESTINATION_HEADER) String destination) {
+
+        String message = ex.getBindingResult() == null ? ex.getMessage()
+                : ex.getBindingResult().getFieldErrors().stream()
+                        .map(error -> error.getField() + ": " + error.getDefaultMessage())
+                        .collect(Collectors.joining(", "));
+        return error(requestId, HttpStatus.BAD_REQUEST, "Validation Error", message, destination);
+    }
+
+    @MessageExceptionHandler({IllegalArgumentException.class, MessageConversionException.class})
+    @SendToUser(destinations = ERROR_QUEUE, broadcast = false)
+    public CanvasCommandError handleInvalidCommand(
+            RuntimeException ex,
+            @Header(name = REQUEST_ID_HEADER, required = false) String requestId,
+            @Header(SimpMessageHeaderAccessor.DESTINATION_HEADER) String destination) {
+
+        log.warn("Invalid command on {}: {}", destination, ex.getMessage());
+        return error(requestId, HttpStatus.BAD_REQUEST, "Invalid Argument", ex.getMessage(), destination);
+    }
+
+    @MessageExceptionHandler(ObjectNotFoundException.class)
+    @SendToUser(destinations = ERROR_QUEUE, broadcast = false)
+    public CanvasCommandError handleObjectNotFound(
+            ObjectNotFoundException ex,
+            @Header(name = REQUEST_ID_HEADER, required = false) String requestId,
+            @Header(SimpMessageHeaderAccessor.DESTINATION_HEADER) String destination) {
+
+        return error(requestId, HttpStatus.NOT_FOUND, "Not Found", ex.getMessage(), destination);
+    }
+
+    @MessageExceptionHandler(ObjectConflictException.class)
+    @SendToUser(destinations = ERROR_QUEUE, broadcast = false)
+    public CanvasCommandError handleObjectConflict(
+            ObjectConflictException ex,
+            @Header(name = REQUEST_ID_HEADER, required = false) String requestId,
+            @Header(SimpMessageHeaderAccessor.DESTINATION_HEADER) String destination) {
+
+        return error(requestId, HttpStatus.CONFLICT, "Conflict", ex.getMessage(), destination);
+    }
+
+    @MessageExceptionHandler(OptimisticLockingFailureException.class)
+    @SendToUser(destinations = ERROR_QUEUE, broadcast = false)
+    public CanvasCommandError handleOptimisticLockingFailure(
+            OptimisticLockingFailureException ex,
+            @Header(name = REQUEST_ID_HEADER, required = false) String requestId,
+            @Header(SimpMessageHeaderAccessor.DESTINATION_HEADER) String destination) {
+
+        log.debug("Concurrent modification on {}: {}", destination, ex.getMessage());
+        return error(requestId, HttpStatus.CONFLICT, "Conflict",
+                "The object was changed concurrently, please retry", destination);
+    }
+
+    @MessageExceptionHandler(PreconditionFailedException.class)
+    @SendToUser(destinations = ERROR_QUEUE, broadcast = false)
+    public CanvasCommandError handlePreconditionFailed(
+            PreconditionFailedException ex,
+            @Header(name = REQUEST_ID_HEADER, required = false) String requestId,
+            @Header(SimpMessageHeaderAccessor.DESTINATION_HEADER) String destination) {
+
+        return error(requestId, HttpStatus.PRECONDITION_FAILED, "Precondition Failed", ex.getMessage(), destination);
+    }
+
+    @MessageExceptionHandler(Exception.class)
+    @SendToUser(destinations = ERROR_QUEUE, broadcast = false)
+    public CanvasCommandError handleGeneralException(
+            Exception ex,
+            @Header(name = REQUEST_ID_HEADER, required = false) String requestId,
+            @Header(SimpMessageHeaderAccessor.DESTINATION_HEADER) String destination) {
+
+        log.error("Command on {} failed", destination, ex);
+        return error(requestId, HttpStatus.INTERNAL_SERVER_ERROR, "Internal Server Error",
+                "An unexpected error occurred. Please try again later.", destination);
+    }
+
+    private static CanvasCommandAck ack(String requestId, CanvasObjectResponse object) {
+        return CanvasCommandAck.builder()
+                .requestId(requestId)
+                .object(object)
+                .objectId(object.getId())
+                .build();
+    }
+
+    private static CanvasCommandError error(String requestId, HttpStatus status, String error,
+                                            String message, String destination) {
+        return CanvasCommandError.of(requestId, status.value(), error, message, destination);
+    }
+}
@@ -1,25 +1,42 @@
 package com.canvasearth.controller;
 
+import com.canvasearth.dto.CanvasChangesResponse;
+import com.canvasearth.dto.CanvasObjectBatchRequest;
+import com.canvasearth.dto.CanvasObjectBatchResponse;
 import com.canvasearth.dto.CanvasObjectRequest;
 import com.canvasearth.dto.CanvasObjectResponse;
 import com.canvasearth.dto.CanvasObjectUpdateRequest;
 import com.canvasearth.dto.FileUploadRequest;
+import com.canvasearth.dto.PresignUploadRequest;
+import com.canvasearth.dto.PresignUploadResponse;
+import com.canvasearth.exception.PreconditionFailedException;
 import com.canvasearth.service.CanvasObjectService;
+import com.canvasearth.service.CanvasSyncService;
+import com.canvasearth.service.UploadService;
+import com.canvasearth.service.ViewportCellCache;
+import com.canvasearth.service.WriteBehindBuffer;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.HashMap;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/api/objects")
@@ -27,24 +44,94 @@ import java.util.Map;
 @Tag(name = "Canvas Objects", description = "Canvas object management APIs")
 public class CanvasObjectController {
 
-    private static final String CANVAS_TOPIC = "/topic/canvas";
+    private static final String NEXT_AFTER_ID_HEADER = "X-Next-After-Id";
+    private static final String REVISION_HEADER = "X-Canvas-Revision";
+    private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+    // Well beyond any object extent (positions and sizes are bounded to 1,000,000)
+    private static final double MAX_VIEWPORT_COORDINATE = 1.0e9;
 
     private final CanvasObjectService canvasObjectService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final CanvasSyncService canvasSyncService;
+    private final WriteBehindBuffer writeBehindBuffer;
+    private final UploadService uploadService;
+    private final ViewportCellCache viewportCellCache;
 
     @GetMapping
     @Operation(summary = "Get objects in viewport",
-               description = "Retrieve all canvas objects within the specified viewport bounds. If no parameters are provided, returns all objects.")
-    public ResponseEntity<List<CanvasObjectResponse>> getObjectsInViewport(
+               description = "Retrieve all canvas objects within the specified viewport bounds. " +
+                       "If no bounds are provided, returns one page of all objects ordered by id; " +
+                       "the " + NEXT_AFTER_ID_HEADER + " response header holds the afterId of the next page.")
+    @ApiResponse(responseCode = "200", content = @Content(array = @ArraySchema(schema = @Schema(implementation = CanvasObjectResponse.class))))
+    public ResponseEntity<?> getObjectsInViewport(
             @Parameter(description = "Minimum X coordinate") @RequestParam(required = false) Double minX,
             @Parameter(description = "Minimum Y coordinate") @RequestParam(required = false) Double minY,
             @Parameter(description = "Maximum X coordinate") @RequestParam(required = false) Double maxX,
-            @Parameter(description = "Maximum Y coordinate") @RequestParam(required = false) Double maxY) {
+            @Parameter(description = "Maximum Y coordinate") @RequestParam(required = false) Double maxY,
+            @Parameter(description = "Unbounded listing: return objects with id greater than this") @RequestParam(required = false) Long afterId,
+            @Parameter(description = "Unbounded listing: page size (default 1000, max 5000)") @RequestParam(required = false) Integer limit,
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+
+        if (minX == null || minY == null || maxX == null || maxY == null) {
+            List<CanvasObjectResponse> page = canvasObjectService.getObjectsPage(afterId, limit);
+
+            // Cursor for the next page; an empty page marks the end
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (!page.isEmpty()) {
+                response.header(NEXT_AFTER_ID_HEADER, String.valueOf(page.get(page.size() - 1).getId()));
+            }
+            return response.body(page);
+        }
+
+        checkViewport(minX, minY, maxX, maxY);
+
+        // Grid-aligned viewports of JSON clients are assembled from pre-encoded cells
+        if (acceptsJson(accept)) {
+            ViewportCellCache.Viewport viewport = viewportCellCache.getViewport(minX, minY, maxX, maxY);
+            if (viewport != null) {
+                return ResponseEntity.ok()
+                        .header(REVISION_HEADER, String.valueOf(viewport.getRevision()))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(viewport.getJson());
+            }
+        }
 
+        // Read the revision first: anything committed while querying is re-sent by the next delta sync
+        long revision = canvasSyncService.currentRevision();
         List<CanvasObjectResponse> objects = canvasObjectService
                 .getObjectsInViewport(minX, minY, maxX, maxY);
 
-        return ResponseEntity.ok(objects);
+        return ResponseEntity.ok()
+                .header(REVISION_HEADER, String.valueOf(revision))
+                .body(objects);
+    }
+
+    @GetMapping("/changes")
+    @Operation(summary = "Get viewport changes since a revision",
+               description = "Return objects created, updated, deleted or moved away in the viewport after the given revision, " +
+                       "plus the new high-water mark. Use the " + REVISION_HEADER + " header of GET /api/objects as the first revision.")
+    public ResponseEntity<CanvasChangesResponse> getChangesSince(
+            @Parameter(description = "Last revision the client has seen") @RequestParam long since,
+            @Parameter(description = "Minimum X coordinate") @RequestParam double minX,
+            @Parameter(description = "Minimum Y coordinate") @RequestParam double minY,
+            @Parameter(description = "Maximum X coordinate") @RequestParam double maxX,
+            @Parameter(description = "Maximum Y coordinate") @RequestParam double maxY) {
+
+        checkViewport(minX, minY, maxX, maxY);
+        CanvasChangesResponse changes = canvasSyncService
+                .getChangesSince(since, minX, minY, maxX, maxY);
+
+        return ResponseEntity.ok(changes);
+    }
+
+    @GetMapping(value = "/stream", produces = NDJSON_MEDIA_TYPE)
+    @Operation(summary = "Stream all objects",
+               description = "Stream every canvas object as newline-delimited JSON with bounded server memory")
+    public ResponseEntity<StreamingResponseBody> streamAllObjects() {
+        StreamingResponseBody body = canvasObjectService::streamAllObjects;
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON_MEDIA_TYPE))
+                .body(body);
     }
 
     @GetMapping("/{id}")
@@ -54,7 +141,7 @@ public class CanvasObjectController {
             @Parameter(description = "Object ID") @PathVariable Long id) {
 
         CanvasObjectResponse object = canvasObjectService.getObjectById(id);
-        return ResponseEntity.ok(object);
+        return withRevisionETag(object);
     }
 
     @PostMapping
@@ -65,23 +152,32 @@ public class CanvasObjectController {
 
         CanvasObjectResponse created = canvasObjectService.createObject(request);
 
-        broadcastCreate(created);
-
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
     @PutMapping("/{id}")
     @Operation(summary = "Update object",
-               description = "Update position, size, or other properties of a canvas object")
+               description = "Update position, size, or other properties of a canvas object. " +
+                       "Concurrent changes to different properties are merged; a concurrent change to the same " +
+                       "property is retried on the server and answers 409 if it keeps conflicting. " +
+                       "With If-Match: \"<revision>\" (the ETag of GET/PUT) the update only applies if the object " +
+                       "is still at that revision, else 412 with the current revision as ETag. " +
+                       "With deferred=true, position/size-only changes are broadcast immediately and " +
+                       "persisted by the next write-behind flush (use while dragging; ignored with If-Match).")
     public ResponseEntity<CanvasObjectResponse> updateObject(
             @Parameter(description = "Object ID") @PathVariable Long id,
+            @Parameter(description = "Buffer position/size changes instead of writing them now") @RequestParam(defaultValue = "false") boolean deferred,
+            @Parameter(description = "Revision the object must still be at, as an entity tag") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Valid @RequestBody CanvasObjectUpdateRequest request) {
 
-        CanvasObjectResponse updated = canvasObjectService.updateObject(id, request);
-
-        broadcastUpdate(updated);
+        Long expectedRevision = parseIfMatch(ifMatch);
+        if (expectedRevision == null && deferred && writeBehindBuffer.isEnabled() && WriteBehindBuffer.isBufferable(request)) {
+            // Not written yet: the revision it will get is unknown
+            return ResponseEntity.ok(canvasObjectService.updateObjectDeferred(id, request));
+        }
 
-        return ResponseEntity.ok(updated);
+        CanvasObjectResponse updated = canvasObjectService.updateObject(id, request, expectedRevision);
+        return withRevisionETag(updated);
     }
 
     @DeleteMapping("/{id}")
@@ -92,57 +188,132 @@ public class CanvasObjectController {
 
         canvasObjectService.deleteObject(id);
 
-        broadcastDelete(id);
-
         return ResponseEntity.noContent().build();
     }
 
-    @PostMapping("/upload")
+    @PostMapping("/batch")
+    @Operation(summary = "Apply batch",
+               description = "Create, update and delete many objects in one transaction (e.g. multi-select move or paste). " +
+                       "Changes are broadcast as one BATCH message per affected tile topic.")
+    public ResponseEntity<CanvasObjectBatchResponse> applyBatch(
+            @Valid @RequestBody CanvasObjectBatchRequest request) {
+
+        CanvasObjectBatchResponse result = canvasObjectService.applyBatch(request.getOperations());
+
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @Operation(summary = "Upload file",
                description = "Upload image or video file and create canvas object")
     public ResponseEntity<CanvasObjectResponse> uploadFile(
             @RequestParam("file") MultipartFile file,
             @Valid @ModelAttribute FileUploadRequest request) throws IOException {
 
-        CanvasObjectResponse created = canvasObjectService.uploadFile(
-                file,
-                request.getObjectType(),
-                request.getPositionX(),
-                request.getPositionY(),
-                request.getWidth(),
-                request.getHeight(),
-                request.getZIndex(),
-                request.getUserId());
+        CanvasObjectResponse created = uploadService.uploadFile(file, request);
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(created);
+    }
+
+    @PostMapping(value = "/upload", consumes = {"image/*", "video/*", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    @Operation(summary = "Upload file (streaming)",
+               description = "Upload the file as the raw request body with the object fields as query parameters. " +
+                       "The body is written to storage as it arrives; size limits and the file type (from its content) " +
+                       "are checked while streaming, so oversized or invalid files are rejected without being buffered.")
+    public ResponseEntity<CanvasObjectResponse> uploadFileStream(
+            @Valid @ModelAttribute FileUploadRequest request,
+            HttpServletRequest servletRequest) throws IOException {
 
-        broadcastCreate(created);
+        CanvasObjectResponse created = uploadService.uploadStream(
+                servletRequest.getInputStream(), servletRequest.getContentLengthLong(), request);
 
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
-    // Helper methods for WebSocket broadcasting
-    private void broadcastCreate(CanvasObjectResponse object) {
-        broadcastChange("CREATE", object, null);
+    @PostMapping("/upload/presign")
+    @Operation(summary = "Prepare direct upload",
+               description = "Return a URL the client can upload the file to directly (S3-compatible storage), " +
+                       "so large files bypass the application. Then call POST /api/objects/upload/complete. " +
+                       "If exists is true the same content is already stored and the upload can be skipped; " +
+                       "if uploadUrl is null the storage does not support direct uploads.")
+    public ResponseEntity<PresignUploadResponse> presignUpload(
+            @Valid @RequestBody PresignUploadRequest request) throws IOException {
+
+        PresignUploadResponse response = uploadService.presign(request);
+
+        return ResponseEntity.ok(response);
     }
 
-    private void broadcastUpdate(CanvasObjectResponse object) {
-        broadcastChange("UPDATE", object, null);
+    @PostMapping("/upload/complete")
+    @Operation(summary = "Complete direct upload",
+               description = "Create the canvas object for a file uploaded to the URL returned by POST /api/objects/upload/presign. " +
+                       "The stored file's size and type are checked first.")
+    public ResponseEntity<CanvasObjectResponse> completeUpload(
+            @Parameter(description = "contentUrl returned by the presign call") @RequestParam String contentUrl,
+            @Valid @ModelAttribute FileUploadRequest request) throws IOException {
+
+        CanvasObjectResponse created = uploadService.completeDirectUpload(contentUrl, request);
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
-    private void broadcastDelete(Long objectId) {
-        broadcastChange("DELETE", null, objectId);
+    /**
+     * Reject non-finite or out-of-range viewport bounds before they reach the tile grids
+     */
+    private static void checkViewport(double minX, double minY, double maxX, double maxY) {
+        for (double value : new double[]{minX, minY, maxX, maxY}) {
+            if (!Double.isFinite(value) || Math.abs(value) > MAX_VIEWPORT_COORDINATE) {
+                throw new IllegalArgumentException(
+                        "Viewport bounds must be finite and within +/-" + (long) MAX_VIEWPORT_COORDINATE);
+            }
+        }
     }
 
-    private void broadcastChange(String type, CanvasObjectResponse object, Long objectId) {
-        Map<String, Object> message = new HashMap<>();
-        message.put("type", type);
+    /**
+     * The object with its revision as ETag, for a later If-Match
+     */
+    private static ResponseEntity<CanvasObjectResponse> withRevisionETag(CanvasObjectResponse object) {
+        if (object.getRevision() == null) {
+            return ResponseEntity.ok(object);
+        }
+        return ResponseEntity.ok().eTag("\"" + object.getRevision() + "\"").body(object);
+    }
 
-        if (object != null) {
-            message.put("object", object);
+    /**
+     * Revision from If-Match: a single "revision" tag; null if absent or *.
+     * If-Match uses strong comparison, so a weak W/"revision" tag never matches (412).
+     */
+    private static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            throw new PreconditionFailedException("A weak entity tag never matches If-Match");
         }
-        if (objectId != null) {
-            message.put("objectId", objectId);
+        if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new IllegalArgumentException("If-Match must be a single entity tag \"<revision>\"");
         }
+        try {
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("If-Match must be a single entity tag \"<revision>\"");
+        }
+    }
 
-        messagingTemplate.convertAndSend(CANVAS_TOPIC, message);
+    /**
+     * Whether JSON is the client's preferred representation (CBOR clients go through the message converters)
+     */
+    private static boolean acceptsJson(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return true;
+        }
+        try {
+            List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+            MimeTypeUtils.sortBySpecificity(mediaTypes);
+            return !mediaTypes.isEmpty() && mediaTypes.get(0).isCompatibleWith(MediaType.APPLICATION_JSON);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
     }
 }
@@ -0,0 +1,228 @@
+package com.canvasearth.controller;
+
+import com.canvasearth.service.UploadStorage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves uploaded files from canvas.upload.directory.
+ *
+ * - Strong ETags: the content hash for content-addressed files and renditions, size and
+ *   modification time otherwise; If-None-Match / If-Modified-Since answer 304.
+ * - Content-addressed files, renditions and legacy UUID-named uploads never change, so they
+ *   are cacheable for a year as immutable; anything else must be revalidated.
+ * - Single byte ranges (Range / If-Range) answer 206 so video players can seek;
+ *   multiple ranges get the whole file, which RFC 9110 allows.
+ * - Bodies of canvas.media.sendfile-threshold bytes or more are handed to Tomcat's sendfile
+ *   (FileChannel.transferTo to the socket, no copy through the heap); smaller bodies and
+ *   connectors without sendfile are copied with transferTo to the response stream.
+ *
+ * With gcs/s3 storage, MediaController's more specific mappings redirect content-addressed
+ * files and renditions to the bucket; this only serves files still on local disk.
+ */
+@RestController
+@RequiredArgsConstructor
+@Tag(name = "Media", description = "Uploaded file access")
+public class LocalMediaController {
+
+    private static final Pattern UUID_NAME = Pattern.compile(
+            "[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}\\.[a-z0-9]+");
+    private static final Pattern BYTE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    // Tomcat NIO/NIO2 connector sendfile contract (see org.apache.catalina.servlets.DefaultServlet)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+    private static final CacheControl REVALIDATE = CacheControl.noCache();
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${canvas.upload.directory:uploads}")
+    private String uploadDirectory;
+
+    @Value("${canvas.media.sendfile:true}")
+    private boolean sendfile;
+
+    @Value("${canvas.media.sendfile-threshold:48KB}")
+    private DataSize sendfileThreshold;
+
+    @RequestMapping(value = UploadStorage.URL_PREFIX + "**", method = {RequestMethod.GET, RequestMethod.HEAD})
+    @Operation(summary = "Get uploaded file",
+               description = "Serve an uploaded file with ETag validation and byte range support")
+    public void getUpload(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String relative = UriUtils.decode(request.getRequestURI()
+                .substring(request.getContextPath().length() + UploadStorage.URL_PREFIX.length()), StandardCharsets.UTF_8);
+        Path file = resolve(relative);
+        BasicFileAttributes attributes;
+        try {
+            attributes = file == null ? null : Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            attributes = null;
+        }
+        if (attributes == null || !attributes.isRegularFile()) {
+            count("404");
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long length = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String name = file.getFileName().toString();
+        String contentUrl = UploadStorage.URL_PREFIX + relative;
+        boolean contentAddressed = UploadStorage.keyOfUrl(contentUrl) != null
+                || UploadStorage.keyOfRenditionUrl(contentUrl) != null;
+
+        String etag = contentAddressed
+                ? "\"" + name.substring(0, name.lastIndexOf('.')) + "\""
+                : "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                (contentAddressed || UUID_NAME.matcher(name).matches() ? IMMUTABLE : REVALIDATE).getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        // Sets ETag and Last-Modified, and 304 when the client's copy is current
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            count("304");
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && rangeApplies(request, etag, lastModified)) {
+            Matcher matcher = BYTE_RANGE.matcher(range.trim());
+            if (matcher.matches() && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+                if (matcher.group(1).isEmpty()) {
+                    // Suffix range: the last n bytes
+                    start = Math.max(0, length - parseBytePosition(matcher.group(2)));
+                } else {
+                    start = parseBytePosition(matcher.group(1));
+                    if (!matcher.group(2).isEmpty()) {
+                        end = Math.min(end, parseBytePosition(matcher.group(2)));
+                    }
+                }
+                if (start >= length || start > end) {
+                    count("416");
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    return;
+                }
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long bytes = end - start + 1;
+        response.setContentType(MediaTypeFactory.getMediaType(name)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setContentLengthLong(bytes);
+        count(String.valueOf(response.getStatus()));
+        if ("HEAD".equals(request.getMethod()) || bytes == 0) {
+            return;
+        }
+
+        if (sendfile && bytes >= sendfileThreshold.toBytes()
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat writes the file after this method returns
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            meterRegistry.counter("canvas.media.bytes", "transfer", "sendfile").increment(bytes);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = bytes;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                position += written;
+                remaining -= written;
+            }
+        }
+        meterRegistry.counter("canvas.media.bytes", "transfer", "copy").increment(bytes);
+    }
+
+    /**
+     * File for a path under the upload directory, or null if it points outside it
+     * or at uploads still being written (incoming/)
+     */
+    private Path resolve(String relative) {
+        Path root = Paths.get(uploadDirectory).toAbsolutePath().normalize();
+        Path file = root.resolve(relative).normalize();
+        if (!file.startsWith(root) || file.startsWith(root.resolve("incoming"))) {
+            return null;
+        }
+        return file;
+    }
+
+    /**
+     * If-Range: serve the range only if the client's copy is the current one, else the whole file
+     */
+    private static boolean rangeApplies(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return date != -1 && lastModified / 1000 <= date / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Byte position from a Range header. Positions too large for a long are past the end of
+     * any file, so they saturate: a first position answers 416, a last position or suffix
+     * length covers the rest of the file.
+     */
+    private static long parseBytePosition(String digits) {
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private void count(String status) {
+        meterRegistry.counter("canvas.media.responses", "status", status).increment();
+    }
+}
@@ -0,0 +1,69 @@
+package com.canvasearth.controller;
+
+import com.canvasearth.service.UploadStorage;
+import com.canvasearth.storage.BlobStore;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Redirects reads of uploaded files to the bucket when they are stored remotely
+ * (canvas.storage.type gcs or s3), so file traffic does not pass through the application.
+ * With local storage the /uploads/** resource handler serves them instead.
+ */
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnExpression("!'${canvas.storage.type:local}'.equalsIgnoreCase('local')")
+@Tag(name = "Media", description = "Uploaded file access")
+public class MediaController {
+
+    private final BlobStore blobStore;
+
+    @Value("${canvas.storage.public-base-url:}")
+    private String publicBaseUrl;
+
+    @Value("${canvas.storage.presign-ttl:PT15M}")
+    private Duration presignTtl;
+
+    @GetMapping(UploadStorage.CONTENT_URL_PREFIX + "{prefix}/{name}")
+    @Operation(summary = "Get uploaded file",
+               description = "Redirect to the stored file (public bucket URL or presigned GET)")
+    public ResponseEntity<Void> getUpload(@PathVariable String prefix, @PathVariable String name) {
+        return redirect(UploadStorage.keyOfUrl(UploadStorage.CONTENT_URL_PREFIX + prefix + "/" + name));
+    }
+
+    @GetMapping(UploadStorage.RENDITION_URL_PREFIX + "{prefix}/{name}")
+    @Operation(summary = "Get image rendition",
+               description = "Redirect to a downscaled rendition of an uploaded image")
+    public ResponseEntity<Void> getRendition(@PathVariable String prefix, @PathVariable String name) {
+        return redirect(UploadStorage.keyOfRenditionUrl(UploadStorage.RENDITION_URL_PREFIX + prefix + "/" + name));
+    }
+
+    private ResponseEntity<Void> redirect(String key) {
+        Optional<URI> location = key == null ? Optional.empty() : blobStore.readUrl(key);
+        if (location.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        // Public URLs never change; presigned ones may only be reused while still valid
+        CacheControl cacheControl = publicBaseUrl.isEmpty()
+                ? CacheControl.maxAge(presignTtl.dividedBy(2)).cachePrivate()
+                : CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+        return ResponseEntity.status(HttpStatus.FOUND)
+                .location(location.get())
+                .cacheControl(cacheControl)
+                .build();
+    }
+}
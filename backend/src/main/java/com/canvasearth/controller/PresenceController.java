@@ -0,0 +1,49 @@
+package com.canvasearth.controller;
+
+import com.canvasearth.dto.PresenceSession;
+import com.canvasearth.dto.PresenceUpdate;
+import com.canvasearth.service.PresenceService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.stereotype.Controller;
+
+/**
+ * Presence frames (cursor, selection, drag preview) sent to /app/presence.
+ * The frame is kept for the next presence flush (see PresenceService). Only the frame that
+ * creates the session's slot is answered, with the id its frames carry, on /user/queue/presence.
+ */
+@Slf4j
+@Controller
+@RequiredArgsConstructor
+public class PresenceController {
+
+    public static final String SESSION_QUEUE = "/queue/presence";
+
+    private final PresenceService presenceService;
+
+    @MessageMapping("presence")
+    @SendToUser(destinations = SESSION_QUEUE, broadcast = false)
+    public PresenceSession updatePresence(
+            @Payload PresenceUpdate update,
+            @Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId) {
+
+        // null sends no reply
+        String id = presenceService.update(sessionId, update);
+        return id != null ? new PresenceSession(id) : null;
+    }
+
+    /**
+     * A malformed frame is dropped; the client's next frame replaces it anyway
+     */
+    @MessageExceptionHandler(MessageConversionException.class)
+    public void handleInvalidFrame(MessageConversionException ex) {
+        log.debug("Dropped invalid presence frame: {}", ex.getMessage());
+    }
+}
@@ -0,0 +1,50 @@
+package com.canvasearth.controller;
+
+import com.canvasearth.service.TileService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/tiles")
+@RequiredArgsConstructor
+@Tag(name = "Tiles", description = "Rendered canvas tiles for zoomed-out views")
+public class TileController {
+
+    private final TileService tileService;
+
+    @GetMapping(value = "/{z}/{x}/{y}", produces = MediaType.IMAGE_PNG_VALUE)
+    @Operation(summary = "Get canvas tile",
+               description = "PNG of the canvas area x * span .. (x + 1) * span, y * span .. (y + 1) * span, " +
+                       "where span = canvas.tiles.pixels * 2^z. Revalidate with If-None-Match: " +
+                       "the ETag changes whenever an object in the tile changes.")
+    public ResponseEntity<byte[]> getTile(
+            @Parameter(description = "Zoom level (canvas.tiles.min-zoom..max-zoom)") @PathVariable int z,
+            @Parameter(description = "Tile column") @PathVariable long x,
+            @Parameter(description = "Tile row") @PathVariable long y,
+            WebRequest request) throws IOException {
+
+        if (request.checkNotModified(tileService.etag(z, x, y))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+
+        TileService.Tile tile = tileService.getTile(z, x, y);
+        return ResponseEntity.ok()
+                .eTag(tile.getEtag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.IMAGE_PNG)
+                .body(tile.getData());
+    }
+}
@@ -0,0 +1,42 @@
+package com.canvasearth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Delta sync result for one region.
+ * Clients remove removedIds first, then upsert objects, then remember revision
+ * as the "since" value for the next request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CanvasChangesResponse {
+
+    /**
+     * High-water mark to send as "since" next time
+     */
+    private Long revision;
+
+    /**
+     * true if the client's revision is too old (or too much changed) to be answered
+     * incrementally; the client must refetch the region with GET /api/objects
+     */
+    private boolean fullResync;
+
+    /**
+     * Objects created or updated in the region since the requested revision
+     */
+    private List<CanvasObjectResponse> objects;
+
+    /**
+     * Objects deleted from, or moved out of, the region since the requested revision.
+     * An id can appear here and in objects if it moved within the region.
+     */
+    private List<Long> removedIds;
+}
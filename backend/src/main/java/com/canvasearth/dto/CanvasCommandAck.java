@@ -0,0 +1,24 @@
+package com.canvasearth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Reply on /user/queue/acks to an object command sent over STOMP (see CanvasCommandController)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CanvasCommandAck {
+
+    /** request-id header of the command, if it had one */
+    private String requestId;
+
+    /** The object after the command; null for deletes */
+    private CanvasObjectResponse object;
+
+    private Long objectId;
+}
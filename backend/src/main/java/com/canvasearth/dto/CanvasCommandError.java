@@ -0,0 +1,37 @@
+package com.canvasearth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Reply on /user/queue/errors to a failed object command sent over STOMP.
+ * status and error are the ones the REST API answers for the same failure.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CanvasCommandError {
+
+    private LocalDateTime timestamp;
+    private String requestId;
+    private int status;
+    private String error;
+    private String message;
+    private String destination;
+
+    public static CanvasCommandError of(String requestId, int status, String error, String message, String destination) {
+        return CanvasCommandError.builder()
+                .timestamp(LocalDateTime.now())
+                .requestId(requestId)
+                .status(status)
+                .error(error)
+                .message(message)
+                .destination(destination)
+                .build();
+    }
+}
@@ -0,0 +1,61 @@
+package com.canvasearth.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for batch requests: a mixed list of create, update and delete operations
+ * applied in a single transaction.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CanvasObjectBatchRequest {
+
+    @NotEmpty(message = "At least one operation is required")
+    @Size(max = 1000, message = "Too many operations (max: 1000)")
+    @Valid
+    private List<Operation> operations;
+
+    public enum OperationType {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Operation {
+
+        @NotNull(message = "Operation type is required")
+        private OperationType type;
+
+        /**
+         * Target object ID (UPDATE, DELETE)
+         */
+        private Long id;
+
+        /**
+         * New object (CREATE)
+         */
+        @Valid
+        private CanvasObjectRequest create;
+
+        /**
+         * Changed fields (UPDATE)
+         */
+        @Valid
+        private CanvasObjectUpdateRequest update;
+    }
+}
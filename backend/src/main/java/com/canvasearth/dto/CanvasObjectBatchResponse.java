@@ -0,0 +1,19 @@
+package com.canvasearth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CanvasObjectBatchResponse {
+
+    private List<CanvasObjectResponse> created;
+    private List<CanvasObjectResponse> updated;
+    private List<Long> deletedIds;
+}
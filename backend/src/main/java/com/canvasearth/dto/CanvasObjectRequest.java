@@ -1,7 +1,10 @@
 package com.canvasearth.dto;
 
 import com.canvasearth.entity.ObjectType;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -19,15 +22,23 @@ public class CanvasObjectRequest {
     private String contentUrl;
 
     @NotNull(message = "Position X is required")
+    @Min(value = -1000000, message = "Position X out of bounds (min: -1,000,000)")
+    @Max(value = 1000000, message = "Position X out of bounds (max: 1,000,000)")
     private Double positionX;
 
     @NotNull(message = "Position Y is required")
+    @Min(value = -1000000, message = "Position Y out of bounds (min: -1,000,000)")
+    @Max(value = 1000000, message = "Position Y out of bounds (max: 1,000,000)")
     private Double positionY;
 
     @NotNull(message = "Width is required")
+    @Positive(message = "Width must be positive")
+    @Max(value = 1000000, message = "Width too large (max: 1,000,000)")
     private Double width;
 
     @NotNull(message = "Height is required")
+    @Positive(message = "Height must be positive")
+    @Max(value = 1000000, message = "Height too large (max: 1,000,000)")
     private Double height;
 
     private Integer zIndex;
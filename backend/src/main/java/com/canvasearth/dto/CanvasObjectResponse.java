@@ -2,17 +2,19 @@ package com.canvasearth.dto;
 
 import com.canvasearth.entity.CanvasObject;
 import com.canvasearth.entity.ObjectType;
+import com.canvasearth.service.UploadStorage;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class CanvasObjectResponse {
 
     private Long id;
@@ -26,13 +28,34 @@ public class CanvasObjectResponse {
     private Long userId;
     private String username;
     private LocalDateTime createdAt;
+    private Long revision;
 
     // Text styling properties
     private Integer fontSize;
     private String fontWeight;
     private String textColor;
 
+    /**
+     * Downscaled renditions of an image by longest side in pixels, smallest first
+     * (absent until generated); clients pick the smallest one covering the on-screen size.
+     */
+    private Map<Integer, String> lodUrls;
+
     public static CanvasObjectResponse fromEntity(CanvasObject object) {
+        return fromEntity(object, object.getUser() != null ? object.getUser().getUsername() : null);
+    }
+
+    /**
+     * Map a list row using usernames resolved in bulk by the caller.
+     * Only the owner's id is read from the (possibly lazy) user reference,
+     * which does not initialize the proxy.
+     */
+    public static CanvasObjectResponse fromEntity(CanvasObject object, Map<Long, String> usernames) {
+        Long userId = object.getUser() != null ? object.getUser().getId() : null;
+        return fromEntity(object, userId != null ? usernames.get(userId) : null);
+    }
+
+    private static CanvasObjectResponse fromEntity(CanvasObject object, String username) {
         return CanvasObjectResponse.builder()
                 .id(object.getId())
                 .objectType(object.getObjectType())
@@ -46,8 +69,10 @@ public class CanvasObjectResponse {
                 .fontWeight(object.getFontWeight())
                 .textColor(object.getTextColor())
                 .userId(object.getUser() != null ? object.getUser().getId() : null)
-                .username(object.getUser() != null ? object.getUser().getUsername() : null)
+                .username(username)
                 .createdAt(object.getCreatedAt())
+                .revision(object.getRevision())
+                .lodUrls(UploadStorage.renditionUrls(object.getContentUrl(), object.getLodSizes(), object.getLodFormat()))
                 .build();
     }
 }
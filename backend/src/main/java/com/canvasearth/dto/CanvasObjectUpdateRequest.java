@@ -37,16 +37,18 @@ public class CanvasObjectUpdateRequest {
 
     /**
      * Width of the object in pixels
-     * Must be positive
+     * Range: positive, up to 1,000,000
      */
     @Positive(message = "Width must be positive")
+    @Max(value = 1000000, message = "Width too large (max: 1,000,000)")
     private Double width;
 
     /**
      * Height of the object in pixels
-     * Must be positive
+     * Range: positive, up to 1,000,000
      */
     @Positive(message = "Height must be positive")
+    @Max(value = 1000000, message = "Height too large (max: 1,000,000)")
     private Double height;
 
     /**
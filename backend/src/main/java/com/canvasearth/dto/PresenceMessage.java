@@ -0,0 +1,42 @@
+package com.canvasearth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Presence of the sessions in one broadcast tile, sent on /topic/canvas.presence.{tx}.{ty}
+ * once per canvas.presence.interval while any of them changed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PresenceMessage {
+
+    private String type;
+
+    /** Latest frame of each session that changed since the previous message */
+    private List<Frame> frames;
+
+    /** Sessions that left this tile, disconnected or went idle */
+    private List<String> gone;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Frame {
+        /** Random per session; not the STOMP session id */
+        private String id;
+        private double x;
+        private double y;
+        private List<Long> selection;
+        private PresenceUpdate.Drag drag;
+        private String name;
+        private String color;
+    }
+}
@@ -0,0 +1,20 @@
+package com.canvasearth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Reply on /user/queue/presence when a session's presence slot is created (see PresenceController),
+ * so the client can tell its own frames from those of other sessions
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PresenceSession {
+
+    /** Id the session's frames carry in PresenceMessage */
+    private String id;
+}
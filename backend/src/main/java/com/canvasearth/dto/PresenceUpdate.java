@@ -0,0 +1,46 @@
+package com.canvasearth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Presence frame sent by a client to /app/presence: its cursor in canvas coordinates and,
+ * optionally, its selection and the object it is dragging. Never persisted; a newer frame
+ * of the same session replaces it (see PresenceService).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PresenceUpdate {
+
+    private Double x;
+    private Double y;
+
+    /** Ids of the selected objects */
+    private List<Long> selection;
+
+    /** Position/size the dragged object currently has on the client, not yet sent as an update */
+    private Drag drag;
+
+    private String name;
+
+    /** Cursor colour, #rrggbb */
+    private String color;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Drag {
+        private Long objectId;
+        private Double positionX;
+        private Double positionY;
+        private Double width;
+        private Double height;
+    }
+}
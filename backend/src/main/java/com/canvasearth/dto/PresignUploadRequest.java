@@ -0,0 +1,46 @@
+package com.canvasearth.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for requesting a direct-to-storage upload of a file the client has already hashed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PresignUploadRequest {
+
+    /**
+     * Object type (IMAGE or VIDEO)
+     */
+    @NotNull(message = "Object type is required")
+    private String objectType;
+
+    /**
+     * MIME type of the file (e.g. video/mp4)
+     */
+    @NotBlank(message = "Content type is required")
+    private String contentType;
+
+    /**
+     * File size in bytes
+     */
+    @NotNull(message = "Size is required")
+    @Positive(message = "Size must be positive")
+    private Long size;
+
+    /**
+     * SHA-256 of the file content, lowercase hex
+     */
+    @NotNull(message = "SHA-256 is required")
+    @Pattern(regexp = "[0-9a-f]{64}", message = "SHA-256 must be 64 lowercase hex digits")
+    private String sha256;
+}
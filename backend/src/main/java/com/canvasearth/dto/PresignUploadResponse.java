@@ -0,0 +1,42 @@
+package com.canvasearth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Where to upload a file directly. The client then calls POST /api/objects/upload/complete
+ * with contentUrl; if exists is true the upload step is skipped, and if uploadUrl is null the
+ * storage does not accept direct uploads and the file must be sent to POST /api/objects/upload.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PresignUploadResponse {
+
+    /**
+     * URL the object will reference once the upload is completed
+     */
+    private String contentUrl;
+
+    /**
+     * The same content is already stored
+     */
+    private boolean exists;
+
+    private String uploadUrl;
+
+    private String method;
+
+    /**
+     * Headers to send with the upload exactly as given
+     */
+    private Map<String, String> headers;
+
+    private Instant expiresAt;
+}
@@ -5,15 +5,36 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.OptimisticLock;
+import org.hibernate.annotations.OptimisticLockType;
+import org.hibernate.annotations.OptimisticLocking;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
 
 import java.time.LocalDateTime;
 
+/**
+ * Concurrent edits are merged per column: updates only write the columns they change
+ * (@DynamicUpdate), and the UPDATE only matches if those columns still have the values that
+ * were read (OptimisticLockType.DIRTY). A move and a colour change of the same object both
+ * apply; two moves conflict and the later one fails with an optimistic locking exception.
+ * Derived columns (revision, bbox) do not take part in the check.
+ */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@DynamicUpdate
+@OptimisticLocking(type = OptimisticLockType.DIRTY)
 @Table(name = "canvas_objects",
        indexes = {
            @Index(name = "idx_position_x", columnList = "position_x"),
            @Index(name = "idx_position_y", columnList = "position_y"),
-           @Index(name = "idx_z_index_created", columnList = "z_index, created_at")
+           @Index(name = "idx_z_index_created", columnList = "z_index, created_at"),
+           @Index(name = "idx_revision", columnList = "revision")
        })
 @Data
 @NoArgsConstructor
@@ -21,6 +42,8 @@ import java.time.LocalDateTime;
 @Builder
 public class CanvasObject {
 
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -57,6 +80,20 @@ public class CanvasObject {
     @Column(name = "text_color")
     private String textColor;
 
+    /**
+     * Downscaled renditions of an uploaded image (see RenditionService): comma-separated
+     * longest-side sizes in pixels, empty if none can be made, null until processed.
+     * Renditions belong to the content, so every object with the same contentUrl has the same value.
+     */
+    @Column(name = "lod_sizes", length = 64)
+    private String lodSizes;
+
+    /**
+     * File extension of the renditions (jpg, or png for images with transparency)
+     */
+    @Column(name = "lod_format", length = 8)
+    private String lodFormat;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
@@ -64,11 +101,48 @@ public class CanvasObject {
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
+    /**
+     * Canvas-wide revision of the last change to this object (canvas_revision_seq).
+     * Used by delta sync: clients ask for objects changed after the revision they last saw.
+     */
+    @Column(name = "revision")
+    @OptimisticLock(excluded = true)
+    private Long revision;
+
+    /**
+     * Bounding box geometry for PostGIS viewport queries.
+     * Derived from position and size on every insert/update; GiST-indexed by db/schema.sql.
+     */
+    @Column(name = "bbox", columnDefinition = "geometry(Polygon,0)")
+    @OptimisticLock(excluded = true)
+    private Polygon bbox;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         if (zIndex == null) {
             zIndex = 0;
         }
+        updateBbox();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updateBbox();
+    }
+
+    private void updateBbox() {
+        double minX = positionX;
+        double minY = positionY;
+        double maxX = positionX + width;
+        double maxY = positionY + height;
+
+        bbox = GEOMETRY_FACTORY.createPolygon(new Coordinate[]{
+                new Coordinate(minX, minY),
+                new Coordinate(maxX, minY),
+                new Coordinate(maxX, maxY),
+                new Coordinate(minX, maxY),
+                new Coordinate(minX, minY)
+        });
     }
 }
@@ -0,0 +1,65 @@
+package com.canvasearth.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Records that an object left a region at a given revision, so delta sync clients
+ * can drop it from their cache: either the object was deleted, or it was moved/resized
+ * and these are its previous bounds.
+ */
+@Entity
+@Table(name = "canvas_object_tombstones",
+       indexes = {
+           @Index(name = "idx_tombstone_revision", columnList = "revision"),
+           @Index(name = "idx_tombstone_created_at", columnList = "created_at")
+       })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CanvasObjectTombstone {
+
+    // Sequence (not IDENTITY) ids so tombstone inserts can be JDBC-batched
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tombstone_seq")
+    @SequenceGenerator(name = "tombstone_seq", sequenceName = "canvas_object_tombstones_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "object_id", nullable = false)
+    private Long objectId;
+
+    @Column(nullable = false)
+    private Long revision;
+
+    /**
+     * true if the object was deleted, false if it only moved away from these bounds
+     */
+    @Column(nullable = false)
+    private Boolean deleted;
+
+    @Column(name = "min_x", nullable = false)
+    private Double minX;
+
+    @Column(name = "min_y", nullable = false)
+    private Double minY;
+
+    @Column(name = "max_x", nullable = false)
+    private Double maxX;
+
+    @Column(name = "max_y", nullable = false)
+    private Double maxY;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
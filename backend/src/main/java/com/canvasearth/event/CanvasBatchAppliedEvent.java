@@ -0,0 +1,23 @@
+package com.canvasearth.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Published by CanvasObjectService after a batch, in addition to the per-object
+ * CanvasObjectChangedEvents (which are not broadcast individually).
+ * Lets CanvasBroadcastService send the batch as BATCH messages.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class CanvasBatchAppliedEvent {
+
+    /**
+     * Changes in the batch, in order: creates, updates, deletes
+     */
+    private final List<CanvasObjectChangedEvent> changes;
+}
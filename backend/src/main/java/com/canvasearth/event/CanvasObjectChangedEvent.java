@@ -0,0 +1,64 @@
+package com.canvasearth.event;
+
+import com.canvasearth.dto.CanvasObjectResponse;
+import com.canvasearth.spatial.Bounds;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published by CanvasObjectService whenever a canvas object is created, updated or deleted.
+ * Listeners that maintain derived state should use @TransactionalEventListener so they only
+ * observe committed changes.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class CanvasObjectChangedEvent {
+
+    public enum Type {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+
+    private final Type type;
+
+    private final Long objectId;
+
+    /**
+     * State after the change (null for DELETE)
+     */
+    private final CanvasObjectResponse object;
+
+    /**
+     * Bounds before the change (null for CREATE)
+     */
+    private final Bounds previousBounds;
+
+    /**
+     * Whether the change is sent to clients by CanvasBroadcastService.
+     * False for changes that reach clients another way (as part of a BATCH message,
+     * or a write-behind flush of changes broadcast when they were accepted).
+     */
+    private final boolean broadcast;
+
+    public static CanvasObjectChangedEvent created(CanvasObjectResponse object) {
+        return new CanvasObjectChangedEvent(Type.CREATE, object.getId(), object, null, true);
+    }
+
+    public static CanvasObjectChangedEvent updated(CanvasObjectResponse object, Bounds previousBounds) {
+        return new CanvasObjectChangedEvent(Type.UPDATE, object.getId(), object, previousBounds, true);
+    }
+
+    public static CanvasObjectChangedEvent deleted(Long objectId, Bounds previousBounds) {
+        return new CanvasObjectChangedEvent(Type.DELETE, objectId, null, previousBounds, true);
+    }
+
+    /**
+     * The same change, applied to derived state but not broadcast
+     */
+    public CanvasObjectChangedEvent withoutBroadcast() {
+        return new CanvasObjectChangedEvent(type, objectId, object, previousBounds, false);
+    }
+}
@@ -0,0 +1,20 @@
+package com.canvasearth.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Published by CanvasObjectService when objects stop referencing uploaded content, because
+ * they were deleted or their contentUrl was replaced. UploadService removes a stored file
+ * once no object references it after the change has committed.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ContentReleasedEvent {
+
+    private final List<String> contentUrls;
+}
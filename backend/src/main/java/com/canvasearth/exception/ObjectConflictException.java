@@ -0,0 +1,13 @@
+package com.canvasearth.exception;
+
+import java.util.Collection;
+
+public class ObjectConflictException extends RuntimeException {
+    public ObjectConflictException(Long id) {
+        super("Object " + id + " was changed concurrently, please retry");
+    }
+
+    public ObjectConflictException(Collection<Long> ids) {
+        super("One of objects " + ids + " was changed concurrently, please retry");
+    }
+}
@@ -0,0 +1,22 @@
+package com.canvasearth.exception;
+
+import lombok.Getter;
+
+@Getter
+public class PreconditionFailedException extends RuntimeException {
+
+    private final Long currentRevision;
+
+    public PreconditionFailedException(Long id, Long currentRevision) {
+        super("Object " + id + " is at revision " + currentRevision + ", not the one given in If-Match");
+        this.currentRevision = currentRevision;
+    }
+
+    /**
+     * A precondition that cannot match whatever the current revision is
+     */
+    public PreconditionFailedException(String message) {
+        super(message);
+        this.currentRevision = null;
+    }
+}
@@ -0,0 +1,61 @@
+package com.canvasearth.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks messages queued on the STOMP client outbound channel per WebSocket session,
+ * i.e. sent by the broker but not yet handed to the session.
+ *
+ * Per-session values are not exported as tags (session ids are unbounded); instead
+ * canvas.websocket.outbound.queue.max reports the deepest session queue, which is where
+ * a slow consumer shows up, and canvas.websocket.outbound.queue.total the sum over sessions.
+ */
+@Component
+public class OutboundQueueMetrics implements ExecutorChannelInterceptor {
+
+    private final ConcurrentHashMap<String, AtomicInteger> queued = new ConcurrentHashMap<>();
+
+    public OutboundQueueMetrics(MeterRegistry meterRegistry) {
+        Gauge.builder("canvas.websocket.outbound.queue.max", this, OutboundQueueMetrics::maxDepth)
+                .description("Deepest per-session outbound message queue")
+                .register(meterRegistry);
+        Gauge.builder("canvas.websocket.outbound.queue.total", this, OutboundQueueMetrics::totalDepth)
+                .description("Outbound messages queued over all sessions")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId != null) {
+            queued.computeIfAbsent(sessionId, key -> new AtomicInteger()).incrementAndGet();
+        }
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId != null) {
+            queued.computeIfPresent(sessionId, (key, count) -> count.decrementAndGet() <= 0 ? null : count);
+        }
+    }
+
+    private double maxDepth() {
+        return queued.values().stream().mapToInt(AtomicInteger::get).max().orElse(0);
+    }
+
+    private double totalDepth() {
+        return queued.values().stream().mapToInt(AtomicInteger::get).sum();
+    }
+}
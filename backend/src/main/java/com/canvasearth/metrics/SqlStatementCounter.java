@@ -0,0 +1,29 @@
+package com.canvasearth.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread.
+ * Registered as Hibernate's statement inspector (see MetricsConfig) and read per
+ * request by SqlStatementMetricsFilter; statements are passed through unchanged.
+ */
+@Component
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    public void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    public int get() {
+        return COUNT.get()[0];
+    }
+}
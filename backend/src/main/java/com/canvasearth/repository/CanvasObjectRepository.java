@@ -1,16 +1,35 @@
 package com.canvasearth.repository;
 
 import com.canvasearth.entity.CanvasObject;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface CanvasObjectRepository extends JpaRepository<CanvasObject, Long> {
 
+    /**
+     * Two-key advisory lock namespaces (pg_locks.classid, objsubid 2). Single-key advisory
+     * locks (objsubid 1) are only used for in-flight revisions, keyed by the revision.
+     */
+    int REVISION_WRITER_LOCK = 0x52455649;
+    int CONTENT_LOCK = 0x434f4e54;
+
     /**
      * Find all objects within the viewport bounds.
      * An object is visible if its bounding box intersects with the viewport.
@@ -18,10 +37,9 @@ public interface CanvasObjectRepository extends JpaRepository<CanvasObject, Long
      * Performance Note:
      * - Current query uses computed expressions (positionX + width)
      * - Indexes on position_x, position_y help but not optimal
-     * - For large datasets (>10K objects), consider:
-     *   1. Adding computed columns (position_x_max, position_y_max)
-     *   2. Using spatial indexes (PostGIS ST_Intersects)
      * - Current performance: acceptable for <10K objects
+     * - For larger datasets use findObjectsInViewportPostgis (canvas.viewport.source=postgis)
+     *   or the in-memory index (canvas.viewport.source=memory-index)
      */
     @Query("SELECT o FROM CanvasObject o " +
            "WHERE o.positionX + o.width >= :minX " +
@@ -35,4 +53,199 @@ public interface CanvasObjectRepository extends JpaRepository<CanvasObject, Long
             @Param("maxX") Double maxX,
             @Param("maxY") Double maxY
     );
+
+    /**
+     * PostGIS variant of findObjectsInViewport.
+     * Uses the bounding-box operator (&&) against the GiST index on bbox, so the cost
+     * depends on the number of matches rather than the table size.
+     * For axis-aligned rectangles, && is exact and matches the inclusive edges of the range query.
+     */
+    @Query(value = "SELECT * FROM canvas_objects o " +
+                   "WHERE o.bbox && ST_MakeEnvelope(:minX, :minY, :maxX, :maxY, 0) " +
+                   "ORDER BY o.z_index ASC, o.created_at ASC",
+           nativeQuery = true)
+    List<CanvasObject> findObjectsInViewportPostgis(
+            @Param("minX") Double minX,
+            @Param("minY") Double minY,
+            @Param("maxX") Double maxX,
+            @Param("maxY") Double maxY
+    );
+
+    /**
+     * Largest objects intersecting the area, largest first, for rendering zoomed-out tiles:
+     * when a tile holds more objects than it can draw, the smallest ones are left out.
+     */
+    @Query("SELECT o FROM CanvasObject o " +
+           "WHERE o.positionX + o.width >= :minX " +
+           "AND o.positionX <= :maxX " +
+           "AND o.positionY + o.height >= :minY " +
+           "AND o.positionY <= :maxY " +
+           "ORDER BY o.width * o.height DESC, o.id ASC")
+    List<CanvasObject> findLargestInArea(
+            @Param("minX") Double minX,
+            @Param("minY") Double minY,
+            @Param("maxX") Double maxX,
+            @Param("maxY") Double maxY,
+            Pageable pageable
+    );
+
+    /**
+     * PostGIS variant of findLargestInArea
+     */
+    @Query(value = "SELECT * FROM canvas_objects o " +
+                   "WHERE o.bbox && ST_MakeEnvelope(:minX, :minY, :maxX, :maxY, 0) " +
+                   "ORDER BY o.width * o.height DESC, o.id ASC " +
+                   "LIMIT :limit",
+           nativeQuery = true)
+    List<CanvasObject> findLargestInAreaPostgis(
+            @Param("minX") Double minX,
+            @Param("minY") Double minY,
+            @Param("maxX") Double maxX,
+            @Param("maxY") Double maxY,
+            @Param("limit") int limit
+    );
+
+    /**
+     * Keyset page of objects ordered by id, with owners fetched in the same query.
+     * Used for unbounded listing and to rebuild the in-memory spatial index
+     * without holding the whole table in one persistence context.
+     */
+    @Query("SELECT o FROM CanvasObject o LEFT JOIN FETCH o.user " +
+           "WHERE o.id > :afterId " +
+           "ORDER BY o.id ASC")
+    List<CanvasObject> findPageAfterId(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Objects by id with owners fetched in the same query, read from the table rather than
+     * the second-level cache. Used to load write targets (see findCurrentById) and to apply
+     * changes made by other instances to the in-memory spatial index (see CacheInvalidationService).
+     */
+    @Query("SELECT o FROM CanvasObject o LEFT JOIN FETCH o.user WHERE o.id IN :ids")
+    List<CanvasObject> findAllWithUserByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * An object with its owner, read from the table rather than the second-level cache.
+     * Used to load write targets: with dirty-column locking a stale cached copy still writes
+     * successfully, but the response and event would carry its stale untouched columns.
+     */
+    @Query("SELECT o FROM CanvasObject o LEFT JOIN FETCH o.user WHERE o.id = :id")
+    Optional<CanvasObject> findCurrentById(@Param("id") Long id);
+
+    /**
+     * Server-side cursor over all objects, ordered by id, with owners fetched in the same query.
+     * The fetch size makes the PostgreSQL driver read rows in batches instead of
+     * materializing the whole result; must be consumed inside a transaction and closed.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT o FROM CanvasObject o LEFT JOIN FETCH o.user ORDER BY o.id ASC")
+    Stream<CanvasObject> streamAll();
+
+    /**
+     * Objects in the viewport that were created or updated after the given revision.
+     */
+    @Query("SELECT o FROM CanvasObject o LEFT JOIN FETCH o.user " +
+           "WHERE o.revision > :since " +
+           "AND o.positionX + o.width >= :minX " +
+           "AND o.positionX <= :maxX " +
+           "AND o.positionY + o.height >= :minY " +
+           "AND o.positionY <= :maxY " +
+           "ORDER BY o.revision ASC")
+    List<CanvasObject> findChangedInViewportSince(
+            @Param("since") Long since,
+            @Param("minX") Double minX,
+            @Param("minY") Double minY,
+            @Param("maxX") Double maxX,
+            @Param("maxY") Double maxY,
+            Pageable pageable
+    );
+
+    /**
+     * Take the next revision and lock it until the calling transaction ends, so readers can
+     * tell it is not committed yet (see findSafeRevision). The writer lock is taken before
+     * the sequence advances, which covers the moment between nextval and the revision lock.
+     */
+    @Query(value = "WITH writer AS MATERIALIZED (" +
+                   "    SELECT 1 FROM pg_advisory_xact_lock_shared(" + REVISION_WRITER_LOCK + ", 0)), " +
+                   "taken AS MATERIALIZED (" +
+                   "    SELECT nextval('canvas_revision_seq') AS revision FROM writer), " +
+                   "locked AS MATERIALIZED (" +
+                   "    SELECT t.revision FROM taken t, LATERAL pg_advisory_xact_lock(t.revision) l) " +
+                   "SELECT revision FROM locked",
+           nativeQuery = true)
+    Long nextRevision();
+
+    /**
+     * Objects referencing an uploaded file (see UploadService)
+     */
+    long countByContentUrl(String contentUrl);
+
+    /**
+     * Take a transaction-scoped advisory lock on an uploaded file's content URL. Serializes
+     * storing a file plus inserting its reference against counting references plus deleting
+     * the file on every replica sharing the database (see UploadService).
+     */
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(" + CONTENT_LOCK + ", hashtext(:contentUrl))",
+           nativeQuery = true)
+    Integer lockContentUrl(@Param("contentUrl") String contentUrl);
+
+    /**
+     * Objects showing an uploaded image whose renditions are not recorded yet (see RenditionService)
+     */
+    List<CanvasObject> findByContentUrlAndLodSizesIsNull(String contentUrl);
+
+    /**
+     * An object whose renditions of this content are already recorded, to reuse them
+     */
+    Optional<CanvasObject> findFirstByContentUrlAndLodSizesIsNotNull(String contentUrl);
+
+    /**
+     * Load an object with SELECT ... FOR UPDATE, bypassing the second-level cache.
+     * Used by conditional updates (If-Match), which must compare against the committed revision.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM CanvasObject o WHERE o.id = :id")
+    Optional<CanvasObject> findForUpdateById(@Param("id") Long id);
+
+    /**
+     * Keyset page of uploaded images still waiting for renditions (partial index idx_canvas_objects_lod_pending)
+     */
+    @Query("SELECT o FROM CanvasObject o " +
+           "WHERE o.objectType = com.canvasearth.entity.ObjectType.IMAGE " +
+           "AND o.lodSizes IS NULL " +
+           "AND o.contentUrl LIKE '/uploads/sha256/%' " +
+           "AND o.id > :afterId " +
+           "ORDER BY o.id ASC")
+    List<CanvasObject> findPendingRenditionsAfterId(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Highest revision handed out so far (0 if none), committed or not.
+     */
+    @Query(value = "SELECT CASE WHEN is_called THEN last_value ELSE last_value - 1 END " +
+                   "FROM canvas_revision_seq",
+           nativeQuery = true)
+    Long lastRevision();
+
+    /**
+     * Bound lastRevision, read before this call, by the revisions still locked by their
+     * writing transactions (see nextRevision): every revision up to the result has been
+     * committed or rolled back. Null while a writer is between its writer and revision
+     * locks, whose revision is not known yet. pg_locks is read once, as one snapshot.
+     */
+    @Query(value = "SELECT CASE WHEN bool_or(s.taking) THEN NULL " +
+                   "            ELSE LEAST(:lastRevision, min(s.revision) - 1) END " +
+                   "FROM (SELECT min(CASE WHEN l.objsubid = 1 " +
+                   "                      THEN (CAST(l.classid AS bigint) << 32) | CAST(l.objid AS bigint) END) AS revision, " +
+                   "             bool_or(l.objsubid = 2) AND NOT bool_or(l.objsubid = 1) AS taking " +
+                   "      FROM pg_locks l " +
+                   "      WHERE l.locktype = 'advisory' " +
+                   "        AND l.database = (SELECT oid FROM pg_database WHERE datname = current_database()) " +
+                   "        AND (l.objsubid = 1 " +
+                   "             OR (l.objsubid = 2 AND l.classid = " + REVISION_WRITER_LOCK + " AND l.objid = 0)) " +
+                   "      GROUP BY l.pid) s",
+           nativeQuery = true)
+    Long findSafeRevision(@Param("lastRevision") Long lastRevision);
 }
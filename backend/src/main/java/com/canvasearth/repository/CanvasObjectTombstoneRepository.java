@@ -0,0 +1,51 @@
+package com.canvasearth.repository;
+
+import com.canvasearth.entity.CanvasObjectTombstone;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface CanvasObjectTombstoneRepository extends JpaRepository<CanvasObjectTombstone, Long> {
+
+    /**
+     * Ids of objects that left the region (deleted or moved away) after the given revision.
+     */
+    @Query("SELECT DISTINCT t.objectId FROM CanvasObjectTombstone t " +
+           "WHERE t.revision > :since " +
+           "AND t.maxX >= :minX " +
+           "AND t.minX <= :maxX " +
+           "AND t.maxY >= :minY " +
+           "AND t.minY <= :maxY")
+    List<Long> findRemovedObjectIdsSince(
+            @Param("since") Long since,
+            @Param("minX") Double minX,
+            @Param("minY") Double minY,
+            @Param("maxX") Double maxX,
+            @Param("maxY") Double maxY
+    );
+
+    @Query("SELECT MAX(t.revision) FROM CanvasObjectTombstone t WHERE t.createdAt < :cutoff")
+    Long findMaxRevisionCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Query("DELETE FROM CanvasObjectTombstone t WHERE t.revision <= :revision")
+    int deleteUpToRevision(@Param("revision") Long revision);
+
+    /**
+     * Highest revision whose tombstones may have been purged (canvas_sync_state, see schema.sql)
+     */
+    @Query(value = "SELECT purged_revision FROM canvas_sync_state WHERE id = 1", nativeQuery = true)
+    Long findPurgedRevision();
+
+    @Modifying
+    @Query(value = "UPDATE canvas_sync_state SET purged_revision = GREATEST(purged_revision, :revision) " +
+                   "WHERE id = 1",
+           nativeQuery = true)
+    int advancePurgedRevision(@Param("revision") Long revision);
+}
@@ -0,0 +1,324 @@
+package com.canvasearth.service;
+
+import com.canvasearth.dto.CanvasObjectResponse;
+import com.canvasearth.entity.CanvasObject;
+import com.canvasearth.event.CanvasObjectChangedEvent;
+import com.canvasearth.spatial.Bounds;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.messaging.tcp.reactor.ReactorNettyTcpStompClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the state derived from canvas objects consistent across instances in relay mode: the
+ * second-level cache (see CacheConfig), the in-memory spatial index (see SpatialTileIndex),
+ * the viewport cells (see ViewportCellCache) and the tile versions (see TileService).
+ *
+ * All of them only follow the changes of their own instance. Ids and areas of committed
+ * changes are collected here and sent every canvas.cache.invalidation.interval as one message
+ * on /topic/canvas.cache, through the same STOMP broker that carries the canvas broadcasts.
+ * Each instance subscribes with its own broker connection and, for what the others sent,
+ * evicts the cached objects, re-reads them into the spatial index, then invalidates the cells
+ * and tiles of the areas (so they are rebuilt from the updated index). This runs on a
+ * thread of its own, in the order received. Invalidations missed while disconnected cannot
+ * be replayed, so everything is invalidated and the index rebuilt on every (re)connect.
+ *
+ * Users are never changed by the application and are left to expire.
+ * With the simple broker there is a single instance and nothing to do.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CacheInvalidationService implements SmartLifecycle {
+
+    public static final String INVALIDATION_TOPIC = "/topic/canvas.cache";
+
+    private static final int MAX_IDS_PER_MESSAGE = 1000;
+    private static final Duration RECONNECT_DELAY = Duration.ofSeconds(5);
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ViewportCellCache viewportCellCache;
+    private final CanvasObjectService canvasObjectService;
+    private final TileService tileService;
+    private final ObjectProvider<StompBrokerRelayMessageHandler> relayHandler;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${canvas.websocket.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${canvas.websocket.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${canvas.websocket.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${canvas.websocket.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${canvas.websocket.relay.virtual-host:/}")
+    private String relayVirtualHost;
+
+    private final String node = UUID.randomUUID().toString();
+
+    // Changed object id -> area its changes touched since the last flush (minX, minY, maxX, maxY)
+    private final Map<Long, double[]> pending = new ConcurrentHashMap<>();
+
+    private volatile ReactorNettyTcpStompClient client;
+    private volatile ThreadPoolTaskScheduler scheduler;
+
+    // Applies received invalidations one at a time, apart from the heartbeats on scheduler
+    private volatile ThreadPoolTaskExecutor applier;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onObjectChanged(CanvasObjectChangedEvent event) {
+        if (client == null) {
+            return;
+        }
+        double[] area = null;
+        if (event.getPreviousBounds() != null) {
+            area = union(area, event.getPreviousBounds());
+        }
+        CanvasObjectResponse object = event.getObject();
+        if (object != null) {
+            area = union(area, Bounds.of(object.getPositionX(), object.getPositionY(), object.getWidth(), object.getHeight()));
+        }
+        pending.merge(event.getObjectId(), area, (previous, next) -> union(previous, new Bounds(next[0], next[1], next[2], next[3])));
+    }
+
+    /**
+     * Send the collected ids. Runs on the shared scheduler thread: the relay send does not wait for the broker.
+     */
+    @Scheduled(fixedDelayString = "${canvas.cache.invalidation.interval:PT0.1S}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = new ArrayList<>();
+        List<double[]> areas = new ArrayList<>();
+        Iterator<Long> iterator = pending.keySet().iterator();
+        while (iterator.hasNext()) {
+            Long id = iterator.next();
+            double[] area = pending.remove(id);
+            if (area != null) {
+                ids.add(id);
+                areas.add(area);
+            }
+            if (ids.size() == MAX_IDS_PER_MESSAGE || (!iterator.hasNext() && !ids.isEmpty())) {
+                send(ids, areas);
+                ids = new ArrayList<>();
+                areas = new ArrayList<>();
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        if (relayHandler.getIfAvailable() == null) {
+            return;
+        }
+
+        ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setPoolSize(1);
+        taskScheduler.setThreadNamePrefix("cache-invalidation-");
+        taskScheduler.initialize();
+
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(1);
+        taskExecutor.setMaxPoolSize(1);
+        taskExecutor.setThreadNamePrefix("cache-invalidation-apply-");
+        taskExecutor.initialize();
+
+        ReactorNettyTcpStompClient stompClient = new ReactorNettyTcpStompClient(relayHost, relayPort);
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        stompClient.setTaskScheduler(taskScheduler);
+
+        scheduler = taskScheduler;
+        applier = taskExecutor;
+        client = stompClient;
+        connect();
+    }
+
+    @Override
+    public void stop() {
+        ReactorNettyTcpStompClient stompClient = client;
+        client = null;
+        if (stompClient != null) {
+            stompClient.shutdown();
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        if (applier != null) {
+            applier.shutdown();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return client != null;
+    }
+
+    private void connect() {
+        ReactorNettyTcpStompClient stompClient = client;
+        if (stompClient == null) {
+            return;
+        }
+
+        StompHeaders headers = new StompHeaders();
+        headers.setLogin(relayLogin);
+        headers.setPasscode(relayPasscode);
+        headers.setHost(relayVirtualHost);
+        // A failed connect is reported to handleTransportError, which retries
+        stompClient.connectAsync(headers, new InvalidationHandler());
+    }
+
+    private void reconnectLater() {
+        ThreadPoolTaskScheduler taskScheduler = scheduler;
+        if (client != null && taskScheduler != null) {
+            taskScheduler.schedule(this::connect, Instant.now().plus(RECONNECT_DELAY));
+        }
+    }
+
+    private void send(List<Long> ids, List<double[]> areas) {
+        try {
+            messagingTemplate.convertAndSend(INVALIDATION_TOPIC, new Invalidation(node, ids, areas));
+            meterRegistry.counter("canvas.cache.invalidations", "direction", "sent").increment(ids.size());
+        } catch (MessagingException e) {
+            // Remote copies stay stale until they expire (canvas.cache.objects.expire-after-write)
+            log.warn("Failed to send cache invalidation for {} objects: {}", ids.size(), e.getMessage());
+        }
+    }
+
+    private void invalidateAll() {
+        entityManagerFactory.getCache().evict(CanvasObject.class);
+        canvasObjectService.rebuildSpatialIndex();
+        viewportCellCache.invalidateAll();
+        tileService.invalidateAll();
+    }
+
+    private void apply(Invalidation invalidation) {
+        jakarta.persistence.Cache cache = entityManagerFactory.getCache();
+        invalidation.getObjectIds().forEach(id -> cache.evict(CanvasObject.class, id));
+        canvasObjectService.refreshSpatialIndex(invalidation.getObjectIds());
+        if (invalidation.getAreas() != null) {
+            for (double[] area : invalidation.getAreas()) {
+                Bounds bounds = new Bounds(area[0], area[1], area[2], area[3]);
+                viewportCellCache.invalidate(bounds);
+                tileService.invalidate(bounds);
+            }
+        }
+        meterRegistry.counter("canvas.cache.invalidations", "direction", "received")
+                .increment(invalidation.getObjectIds().size());
+    }
+
+    /**
+     * Run on the applier thread, so the broker connection is not blocked by database reads
+     */
+    private void execute(Runnable task) {
+        ThreadPoolTaskExecutor taskExecutor = applier;
+        if (taskExecutor == null) {
+            return;
+        }
+        taskExecutor.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // Remote copies stay stale until they expire or the next reconnect
+                log.error("Cache invalidation: failed to apply remote changes", e);
+            }
+        });
+    }
+
+    private static double[] union(double[] area, Bounds bounds) {
+        if (area == null) {
+            return new double[]{bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY()};
+        }
+        return new double[]{
+                Math.min(area[0], bounds.getMinX()), Math.min(area[1], bounds.getMinY()),
+                Math.max(area[2], bounds.getMaxX()), Math.max(area[3], bounds.getMaxY())};
+    }
+
+    private class InvalidationHandler extends StompSessionHandlerAdapter {
+
+        @Override
+        public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+            session.subscribe(INVALIDATION_TOPIC, this);
+            execute(CacheInvalidationService.this::invalidateAll);
+            log.info("Cache invalidation: subscribed to {} on {}:{}", INVALIDATION_TOPIC, relayHost, relayPort);
+        }
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return Invalidation.class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            Invalidation invalidation = (Invalidation) payload;
+            if (node.equals(invalidation.getNode()) || invalidation.getObjectIds() == null) {
+                return;
+            }
+            execute(() -> apply(invalidation));
+        }
+
+        @Override
+        public void handleException(StompSession session, StompCommand command, StompHeaders headers,
+                                    byte[] payload, Throwable exception) {
+            log.warn("Cache invalidation: cannot handle message: {}", exception.getMessage());
+        }
+
+        @Override
+        public void handleTransportError(StompSession session, Throwable exception) {
+            if (!session.isConnected()) {
+                log.warn("Cache invalidation: no connection to STOMP broker {}:{}: {}",
+                        relayHost, relayPort, exception.getMessage());
+                reconnectLater();
+            }
+        }
+    }
+
+    /**
+     * Message on INVALIDATION_TOPIC: objects changed by the instance node, and for each the
+     * area its changes touched (minX, minY, maxX, maxY)
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Invalidation {
+        private String node;
+        private List<Long> objectIds;
+        private List<double[]> areas;
+    }
+}
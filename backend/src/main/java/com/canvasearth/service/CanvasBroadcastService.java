@@ -0,0 +1,188 @@
+package com.canvasearth.service;
+
+import com.canvasearth.dto.CanvasObjectResponse;
+import com.canvasearth.event.CanvasBatchAppliedEvent;
+import com.canvasearth.event.CanvasObjectChangedEvent;
+import com.canvasearth.spatial.Bounds;
+import com.canvasearth.spatial.TileSpans;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sends committed canvas changes to WebSocket clients on spatially partitioned topics.
+ *
+ * The canvas is divided into square tiles of canvas.websocket.tile-size units and each
+ * change is sent to /topic/canvas.tile.{tx}.{ty} for every tile touched by the object's
+ * bounds before and after the change, so clients subscribed to the tiles of their viewport
+ * also see objects moving in or out of it. Objects spanning more than
+ * canvas.websocket.max-tiles-per-object tiles go to /topic/canvas.large instead,
+ * which every client subscribes to.
+ */
+@Slf4j
+@Service
+public class CanvasBroadcastService {
+
+    public static final String TILE_TOPIC_PREFIX = "/topic/canvas.tile.";
+    public static final String LARGE_OBJECT_TOPIC = "/topic/canvas.large";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final double tileSize;
+    private final int maxTilesPerObject;
+
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary fanout;
+    private final Timer sendTimer;
+    private final Counter sendFailures;
+
+    public CanvasBroadcastService(
+            SimpMessagingTemplate messagingTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${canvas.websocket.tile-size:2000}") double tileSize,
+            @Value("${canvas.websocket.max-tiles-per-object:64}") int maxTilesPerObject) {
+        this.messagingTemplate = messagingTemplate;
+        this.tileSize = tileSize;
+        this.maxTilesPerObject = maxTilesPerObject;
+        this.meterRegistry = meterRegistry;
+        this.fanout = DistributionSummary.builder("canvas.broadcast.fanout")
+                .description("Topics a single change or batch is sent to")
+                .register(meterRegistry);
+        this.sendTimer = Timer.builder("canvas.broadcast.send")
+                .description("Time to convert and hand one message to the broker")
+                .register(meterRegistry);
+        this.sendFailures = Counter.builder("canvas.broadcast.failures")
+                .description("Messages that could not be handed to the broker")
+                .register(meterRegistry);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onObjectChanged(CanvasObjectChangedEvent event) {
+        if (!event.isBroadcast()) {
+            return;
+        }
+
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", event.getType().name());
+        if (event.getObject() != null) {
+            message.put("object", event.getObject());
+        } else {
+            message.put("objectId", event.getObjectId());
+        }
+
+        Set<String> topics = topicsOf(event);
+        recordBroadcast(event.getType().name(), topics.size());
+        for (String topic : topics) {
+            send(topic, message);
+        }
+    }
+
+    /**
+     * Send a batch as one BATCH message per affected topic, each holding only the
+     * changes that touch that topic's tile.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBatchApplied(CanvasBatchAppliedEvent event) {
+        Map<String, BatchMessage> messages = new LinkedHashMap<>();
+        for (CanvasObjectChangedEvent change : event.getChanges()) {
+            for (String topic : topicsOf(change)) {
+                messages.computeIfAbsent(topic, key -> new BatchMessage()).add(change);
+            }
+        }
+
+        recordBroadcast("BATCH", messages.size());
+        messages.forEach((topic, batch) -> send(topic, batch.toMessage()));
+    }
+
+    /**
+     * Topics of the tiles touched by the object before and after the change
+     */
+    private Set<String> topicsOf(CanvasObjectChangedEvent event) {
+        Set<String> topics = new LinkedHashSet<>();
+        if (event.getPreviousBounds() != null) {
+            addTopics(topics, event.getPreviousBounds());
+        }
+        CanvasObjectResponse object = event.getObject();
+        if (object != null) {
+            addTopics(topics, Bounds.of(object.getPositionX(), object.getPositionY(),
+                    object.getWidth(), object.getHeight()));
+        }
+        return topics;
+    }
+
+    private void addTopics(Set<String> topics, Bounds bounds) {
+        long minTx = tileCoord(bounds.getMinX());
+        long maxTx = tileCoord(bounds.getMaxX());
+        long minTy = tileCoord(bounds.getMinY());
+        long maxTy = tileCoord(bounds.getMaxY());
+
+        if (TileSpans.count(minTx, maxTx, minTy, maxTy) > maxTilesPerObject) {
+            topics.add(LARGE_OBJECT_TOPIC);
+            return;
+        }
+        for (long tx = minTx; tx <= maxTx; tx++) {
+            for (long ty = minTy; ty <= maxTy; ty++) {
+                topics.add(TILE_TOPIC_PREFIX + tx + "." + ty);
+            }
+        }
+    }
+
+    private void recordBroadcast(String type, int topics) {
+        meterRegistry.counter("canvas.broadcast.messages", "type", type).increment(topics);
+        fanout.record(topics);
+    }
+
+    private long tileCoord(double value) {
+        return (long) Math.floor(value / tileSize);
+    }
+
+    /**
+     * The change is already committed, so a broker outage (relay mode) must not fail the request;
+     * clients catch up through delta sync.
+     */
+    private void send(String topic, Map<String, Object> message) {
+        try {
+            sendTimer.record(() -> messagingTemplate.convertAndSend(topic, message));
+        } catch (MessagingException e) {
+            sendFailures.increment();
+            log.warn("Failed to broadcast {} message to {}: {}", message.get("type"), topic, e.getMessage());
+        }
+    }
+
+    private static class BatchMessage {
+        private final List<CanvasObjectResponse> created = new ArrayList<>();
+        private final List<CanvasObjectResponse> updated = new ArrayList<>();
+        private final List<Long> deletedIds = new ArrayList<>();
+
+        void add(CanvasObjectChangedEvent change) {
+            switch (change.getType()) {
+                case CREATE -> created.add(change.getObject());
+                case UPDATE -> updated.add(change.getObject());
+                case DELETE -> deletedIds.add(change.getObjectId());
+            }
+        }
+
+        Map<String, Object> toMessage() {
+            Map<String, Object> message = new HashMap<>();
+            message.put("type", "BATCH");
+            message.put("created", created);
+            message.put("updated", updated);
+            message.put("deletedIds", deletedIds);
+            return message;
+        }
+    }
+}
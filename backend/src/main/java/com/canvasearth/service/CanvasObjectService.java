@@ -1,57 +1,209 @@
 package com.canvasearth.service;
 
+import com.canvasearth.dto.CanvasObjectBatchRequest;
+import com.canvasearth.dto.CanvasObjectBatchResponse;
 import com.canvasearth.dto.CanvasObjectRequest;
 import com.canvasearth.dto.CanvasObjectResponse;
 import com.canvasearth.dto.CanvasObjectUpdateRequest;
+import com.canvasearth.dto.FileUploadRequest;
 import com.canvasearth.entity.CanvasObject;
 import com.canvasearth.entity.ObjectType;
 import com.canvasearth.entity.User;
+import com.canvasearth.event.CanvasBatchAppliedEvent;
+import com.canvasearth.event.CanvasObjectChangedEvent;
+import com.canvasearth.event.ContentReleasedEvent;
+import com.canvasearth.exception.ObjectConflictException;
+import com.canvasearth.exception.ObjectNotFoundException;
+import com.canvasearth.exception.PreconditionFailedException;
 import com.canvasearth.repository.CanvasObjectRepository;
 import com.canvasearth.repository.UserRepository;
+import com.canvasearth.spatial.Bounds;
+import com.canvasearth.spatial.SpatialTileIndex;
+import com.canvasearth.spatial.ViewportSource;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class CanvasObjectService {
 
+    private static final int INDEX_REBUILD_PAGE_SIZE = 10000;
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+    private static final int MAX_PAGE_SIZE = 5000;
+    private static final int STREAM_FLUSH_INTERVAL = 500;
+
     private final CanvasObjectRepository canvasObjectRepository;
     private final UserRepository userRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final SpatialTileIndex spatialTileIndex;
+    private final CanvasSyncService canvasSyncService;
+    private final WriteBehindBuffer writeBehindBuffer;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${canvas.viewport.source:memory-index}")
+    private ViewportSource viewportSource;
+
+    @Value("${canvas.objects.update.max-attempts:3}")
+    private int maxUpdateAttempts;
+
+    // Startup and broker reconnects (CacheInvalidationService) may both rebuild the index.
+    // A lock rather than synchronized: the rebuild blocks on JDBC, which would pin a virtual thread
+    private final Lock indexRebuildLock = new ReentrantLock();
 
     /**
      * Get all objects within the viewport bounds.
-     * If viewport parameters are null, returns all objects.
+     * If viewport parameters are null, returns the first page of all objects
+     * (see getObjectsPage); the full canvas is never materialized in one response.
      */
     public List<CanvasObjectResponse> getObjectsInViewport(
             Double minX, Double minY, Double maxX, Double maxY) {
 
-        List<CanvasObject> objects;
-
-        // If any parameter is null, return all objects
         if (minX == null || minY == null || maxX == null || maxY == null) {
-            objects = canvasObjectRepository.findAll();
+            return getObjectsPage(null, null);
+        }
+
+        ViewportSource source = viewportSource == ViewportSource.MEMORY_INDEX && !spatialTileIndex.isReady()
+                ? ViewportSource.DATABASE
+                : viewportSource;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<CanvasObjectResponse> result;
+
+        if (source == ViewportSource.MEMORY_INDEX) {
+            // Buffered moves are already applied to the index (see updateObjectDeferred)
+            result = spatialTileIndex.query(minX, minY, maxX, maxY);
+        } else {
+            List<CanvasObject> objects = source == ViewportSource.POSTGIS
+                    ? canvasObjectRepository.findObjectsInViewportPostgis(minX, minY, maxX, maxY)
+                    : canvasObjectRepository.findObjectsInViewport(minX, minY, maxX, maxY);
+            result = toResponses(objects).stream()
+                    .map(writeBehindBuffer::overlay)
+                    .collect(Collectors.toList());
+        }
+
+        String sourceTag = source.name().toLowerCase();
+        sample.stop(meterRegistry.timer("canvas.viewport.query", "source", sourceTag));
+        DistributionSummary.builder("canvas.viewport.objects")
+                .description("Objects returned per viewport query")
+                .tag("source", sourceTag)
+                .register(meterRegistry)
+                .record(result.size());
+        return result;
+    }
+
+    /**
+     * Objects to draw on a rendered tile: at most limit objects intersecting the bounds,
+     * the largest ones if there are more, in viewport order. Not recorded as a viewport query.
+     */
+    public List<CanvasObjectResponse> getObjectsForTile(Bounds bounds, int limit) {
+        Comparator<CanvasObjectResponse> largestFirst = Comparator
+                .comparingDouble((CanvasObjectResponse object) -> object.getWidth() * object.getHeight())
+                .reversed();
+        List<CanvasObjectResponse> objects;
+
+        if (viewportSource == ViewportSource.MEMORY_INDEX && spatialTileIndex.isReady()) {
+            objects = spatialTileIndex.query(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+            if (objects.size() > limit) {
+                objects = objects.stream()
+                        .sorted(largestFirst)
+                        .limit(limit)
+                        .collect(Collectors.toList());
+            }
         } else {
-            objects = canvasObjectRepository
-                    .findObjectsInViewport(minX, minY, maxX, maxY);
+            List<CanvasObject> entities = viewportSource == ViewportSource.POSTGIS
+                    ? canvasObjectRepository.findLargestInAreaPostgis(
+                            bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY(), limit)
+                    : canvasObjectRepository.findLargestInArea(
+                            bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY(),
+                            PageRequest.of(0, limit));
+            objects = toResponses(entities).stream()
+                    .map(writeBehindBuffer::overlay)
+                    .collect(Collectors.toList());
         }
 
         return objects.stream()
+                .sorted(SpatialTileIndex.VIEWPORT_ORDER)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get one keyset page of all objects, ordered by id.
+     * Pass the id of the last object of the previous page as afterId to continue.
+     */
+    public List<CanvasObjectResponse> getObjectsPage(Long afterId, Integer limit) {
+        int pageSize = limit != null ? Math.max(1, Math.min(limit, MAX_PAGE_SIZE)) : DEFAULT_PAGE_SIZE;
+
+        return canvasObjectRepository
+                .findPageAfterId(afterId != null ? afterId : 0L, PageRequest.of(0, pageSize))
+                .stream()
                 .map(CanvasObjectResponse::fromEntity)
+                .map(writeBehindBuffer::overlay)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Write every object as newline-delimited JSON.
+     * Rows are read through a database cursor and the persistence context is cleared
+     * periodically, so memory use does not grow with the size of the canvas.
+     */
+    public void streamAllObjects(OutputStream outputStream) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(new SerializedString("\n"));
+
+        try (Stream<CanvasObject> objects = canvasObjectRepository.streamAll()) {
+            int count = 0;
+            for (CanvasObject object : (Iterable<CanvasObject>) objects::iterator) {
+                objectMapper.writeValue(generator, writeBehindBuffer.overlay(CanvasObjectResponse.fromEntity(object)));
+                if (++count % STREAM_FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                    entityManager.clear();
+                }
+            }
+        }
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+
     /**
      * Create a new canvas object
      */
@@ -63,7 +215,429 @@ public class CanvasObjectService {
                     .orElse(null);
         }
 
+        CanvasObject object = buildObject(request, user, canvasSyncService.nextRevision());
+
+        CanvasObject saved = canvasObjectRepository.save(object);
+        CanvasObjectResponse response = CanvasObjectResponse.fromEntity(saved);
+        eventPublisher.publishEvent(CanvasObjectChangedEvent.created(response));
+        return response;
+    }
+
+    /**
+     * Update an existing canvas object
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CanvasObjectResponse updateObject(Long id, CanvasObjectUpdateRequest request) {
+        return updateObject(id, request, null);
+    }
+
+    /**
+     * Update an existing canvas object, optionally only if it is still at expectedRevision.
+     *
+     * Only the columns the request changes are written, and only while they still hold the
+     * values that were read (see CanvasObject), so edits of different properties merge. If the
+     * same column was changed concurrently, the request is applied again on a fresh copy, up
+     * to canvas.objects.update.max-attempts times, before ObjectConflictException.
+     *
+     * With expectedRevision (If-Match) the row is locked while it is compared and written;
+     * PreconditionFailedException carries the current revision if it no longer matches.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CanvasObjectResponse updateObject(Long id, CanvasObjectUpdateRequest request, Long expectedRevision) {
+        // A buffered drag on this object is older than this request: persist it underneath
+        CanvasObjectUpdateRequest buffered = writeBehindBuffer.drain(id);
+        try {
+            return executeRetryingConflicts(List.of(id), status ->
+                    applyObjectUpdate(id, buffered, request, expectedRevision));
+        } catch (RuntimeException e) {
+            if (buffered != null) {
+                writeBehindBuffer.restore(Map.of(id, buffered));
+            }
+            throw e;
+        }
+    }
+
+    private CanvasObjectResponse applyObjectUpdate(Long id, CanvasObjectUpdateRequest buffered,
+                                                   CanvasObjectUpdateRequest request, Long expectedRevision) {
+        CanvasObject object;
+        if (expectedRevision != null) {
+            object = canvasObjectRepository.findForUpdateById(id)
+                    .orElseThrow(() -> new ObjectNotFoundException(id));
+            if (!expectedRevision.equals(object.getRevision())) {
+                throw new PreconditionFailedException(id, object.getRevision());
+            }
+        } else {
+            object = canvasObjectRepository.findCurrentById(id)
+                    .orElseThrow(() -> new ObjectNotFoundException(id));
+        }
+        Bounds previousBounds = boundsOf(object);
+
+        long revision = canvasSyncService.nextRevision();
+        if (buffered != null) {
+            applyUpdate(object, buffered, revision);
+        }
+        applyUpdate(object, request, revision);
+
+        // Flush here so a conflicting UPDATE surfaces as OptimisticLockingFailureException
+        CanvasObject updated = canvasObjectRepository.saveAndFlush(object);
+        canvasSyncService.recordMoved(id, previousBounds, boundsOf(updated), revision);
+        CanvasObjectResponse response = CanvasObjectResponse.fromEntity(updated);
+        eventPublisher.publishEvent(CanvasObjectChangedEvent.updated(response, previousBounds));
+        return response;
+    }
+
+    /**
+     * Accept a position/size change without writing it yet.
+     * The change is merged into the write-behind buffer and persisted by the next
+     * WriteBehindFlusher run; it is broadcast now, and the returned object and reads
+     * already reflect it.
+     */
+    public CanvasObjectResponse updateObjectDeferred(Long id, CanvasObjectUpdateRequest request) {
+        CanvasObjectResponse current = spatialTileIndex.isReady() ? spatialTileIndex.get(id) : null;
+        if (current == null) {
+            current = CanvasObjectResponse.fromEntity(canvasObjectRepository.findById(id)
+                    .orElseThrow(() -> new ObjectNotFoundException(id)));
+        }
+
+        CanvasObjectResponse before = writeBehindBuffer.overlay(current);
+        writeBehindBuffer.add(id, request);
+        // A delete may have committed since current was read: don't broadcast the object back
+        boolean exists = spatialTileIndex.isReady()
+                ? spatialTileIndex.get(id) != null
+                : canvasObjectRepository.existsById(id);
+        if (!exists) {
+            writeBehindBuffer.drain(id);
+            throw new ObjectNotFoundException(id);
+        }
+        CanvasObjectResponse response = writeBehindBuffer.overlay(current);
+        // Broadcasts the change and moves the object in the memory index right away
+        eventPublisher.publishEvent(CanvasObjectChangedEvent.updated(response, Bounds.of(
+                before.getPositionX(), before.getPositionY(), before.getWidth(), before.getHeight())));
+        return response;
+    }
+
+    /**
+     * Persist changes drained from the write-behind buffer in one transaction.
+     * Only the latest geometry of each object is written, under a single revision;
+     * objects deleted in the meantime, or whose change a direct write took over, are skipped. Concurrent writes to the same columns
+     * are retried on fresh rows like in updateObject.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void applyBufferedUpdates(Map<Long, CanvasObjectUpdateRequest> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        executeRetryingConflicts(changes.keySet(), status -> {
+            writeBufferedUpdates(changes);
+            return null;
+        });
+    }
+
+    private void writeBufferedUpdates(Map<Long, CanvasObjectUpdateRequest> changes) {
+        long revision = canvasSyncService.nextRevision();
+        for (CanvasObject object : canvasObjectRepository.findAllWithUserByIdIn(changes.keySet())) {
+            CanvasObjectUpdateRequest change = changes.get(object.getId());
+            // Taken over by a direct update or delete, which writes it underneath its own change
+            if (!writeBehindBuffer.isFlushing(object.getId(), change)) {
+                continue;
+            }
+            Bounds previousBounds = boundsOf(object);
+            applyUpdate(object, change, revision);
+            canvasSyncService.recordMoved(object.getId(), previousBounds, boundsOf(object), revision);
+            // Newer buffered changes stay on top of what is written now
+            CanvasObjectResponse response = writeBehindBuffer.overlay(CanvasObjectResponse.fromEntity(object));
+            // Already broadcast when accepted
+            eventPublisher.publishEvent(
+                    CanvasObjectChangedEvent.updated(response, previousBounds).withoutBroadcast());
+        }
+    }
+
+    /**
+     * Delete a canvas object. A stale cached copy is retried on a fresh row like in updateObject.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void deleteObject(Long id) {
+        CanvasObjectUpdateRequest buffered = writeBehindBuffer.drain(id);
+        try {
+            executeRetryingConflicts(List.of(id), status -> {
+                removeObject(id);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            if (buffered != null) {
+                writeBehindBuffer.restore(Map.of(id, buffered));
+            }
+            throw e;
+        }
+    }
+
+    private void removeObject(Long id) {
+        CanvasObject object = canvasObjectRepository.findCurrentById(id)
+                .orElseThrow(() -> new ObjectNotFoundException(id));
+        canvasObjectRepository.delete(object);
+        canvasSyncService.recordDeleted(id, boundsOf(object), canvasSyncService.nextRevision());
+        eventPublisher.publishEvent(CanvasObjectChangedEvent.deleted(id, boundsOf(object)));
+        releaseContent(List.of(object));
+    }
+
+    /**
+     * Apply a mixed list of operations in one transaction.
+     * Operations are grouped by type and applied as creates, then updates, then deletes;
+     * objects are loaded with one query per group and the resulting UPDATE/DELETE
+     * statements are sent as JDBC batches on commit. If any target is missing,
+     * nothing is applied. Concurrent writes to the same columns are retried on fresh rows
+     * like in updateObject.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CanvasObjectBatchResponse applyBatch(List<CanvasObjectBatchRequest.Operation> operations) {
+        List<CanvasObjectRequest> creates = new ArrayList<>();
+        Map<Long, List<CanvasObjectUpdateRequest>> updates = new LinkedHashMap<>();
+        Set<Long> deletes = new LinkedHashSet<>();
+
+        for (CanvasObjectBatchRequest.Operation operation : operations) {
+            switch (operation.getType()) {
+                case CREATE -> {
+                    if (operation.getCreate() == null) {
+                        throw new IllegalArgumentException("CREATE operation requires 'create'");
+                    }
+                    creates.add(operation.getCreate());
+                }
+                case UPDATE -> {
+                    if (operation.getId() == null || operation.getUpdate() == null) {
+                        throw new IllegalArgumentException("UPDATE operation requires 'id' and 'update'");
+                    }
+                    updates.computeIfAbsent(operation.getId(), id -> new ArrayList<>())
+                            .add(operation.getUpdate());
+                }
+                case DELETE -> {
+                    if (operation.getId() == null) {
+                        throw new IllegalArgumentException("DELETE operation requires 'id'");
+                    }
+                    deletes.add(operation.getId());
+                }
+            }
+        }
+
+        // Buffered drags are older than the batch: persisted underneath updates, dropped by deletes
+        Set<Long> targetIds = new LinkedHashSet<>(updates.keySet());
+        targetIds.addAll(deletes);
+        Map<Long, CanvasObjectUpdateRequest> buffered = new LinkedHashMap<>();
+        for (Long id : targetIds) {
+            CanvasObjectUpdateRequest change = writeBehindBuffer.drain(id);
+            if (change != null) {
+                buffered.put(id, change);
+            }
+        }
+
+        try {
+            return executeRetryingConflicts(targetIds, status ->
+                    applyOperations(creates, updates, deletes, buffered));
+        } catch (RuntimeException e) {
+            writeBehindBuffer.restore(buffered);
+            throw e;
+        }
+    }
+
+    private CanvasObjectBatchResponse applyOperations(List<CanvasObjectRequest> creates,
+                                                      Map<Long, List<CanvasObjectUpdateRequest>> updates,
+                                                      Set<Long> deletes,
+                                                      Map<Long, CanvasObjectUpdateRequest> buffered) {
+        long revision = canvasSyncService.nextRevision();
+
+        // Creates
+        Set<Long> userIds = creates.stream()
+                .map(CanvasObjectRequest::getUserId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, User> users = userIds.isEmpty()
+                ? Map.of()
+                : userRepository.findAllById(userIds).stream()
+                        .collect(Collectors.toMap(User::getId, user -> user));
+
+        List<CanvasObject> createdObjects = canvasObjectRepository.saveAll(creates.stream()
+                .map(request -> buildObject(request,
+                        request.getUserId() != null ? users.get(request.getUserId()) : null, revision))
+                .collect(Collectors.toList()));
+        List<CanvasObjectResponse> created = createdObjects.stream()
+                .map(CanvasObjectResponse::fromEntity)
+                .collect(Collectors.toList());
+
+        // Updates (flushed as batched UPDATEs on commit)
+        Map<Long, CanvasObject> targets = findAllByIdOrThrow(updates.keySet());
+        List<CanvasObjectResponse> updated = new ArrayList<>();
+        List<Bounds> updatedPreviousBounds = new ArrayList<>();
+        for (Map.Entry<Long, List<CanvasObjectUpdateRequest>> entry : updates.entrySet()) {
+            CanvasObject object = targets.get(entry.getKey());
+            Bounds previousBounds = boundsOf(object);
+            if (buffered.containsKey(object.getId())) {
+                applyUpdate(object, buffered.get(object.getId()), revision);
+            }
+            entry.getValue().forEach(request -> applyUpdate(object, request, revision));
+            canvasSyncService.recordMoved(object.getId(), previousBounds, boundsOf(object), revision);
+            if (!deletes.contains(object.getId())) {
+                updated.add(CanvasObjectResponse.fromEntity(object));
+                updatedPreviousBounds.add(previousBounds);
+            }
+        }
+
+        // Deletes (batched DELETEs on commit; a bulk statement would evict every cached object)
+        Map<Long, CanvasObject> deleteTargets = findAllByIdOrThrow(deletes);
+        deleteTargets.values().forEach(object ->
+                canvasSyncService.recordDeleted(object.getId(), boundsOf(object), revision));
+        canvasObjectRepository.deleteAll(deleteTargets.values());
+        releaseContent(deleteTargets.values());
+
+        // Broadcast together as BATCH messages rather than one message per object
+        List<CanvasObjectChangedEvent> changes = new ArrayList<>();
+        created.forEach(object -> changes.add(CanvasObjectChangedEvent.created(object)));
+        for (int i = 0; i < updated.size(); i++) {
+            changes.add(CanvasObjectChangedEvent.updated(updated.get(i), updatedPreviousBounds.get(i)));
+        }
+        deleteTargets.values().forEach(object ->
+                changes.add(CanvasObjectChangedEvent.deleted(object.getId(), boundsOf(object))));
+
+        changes.forEach(change -> eventPublisher.publishEvent(change.withoutBroadcast()));
+        eventPublisher.publishEvent(new CanvasBatchAppliedEvent(changes));
+
+        return CanvasObjectBatchResponse.builder()
+                .created(created)
+                .updated(updated)
+                .deletedIds(new ArrayList<>(deleteTargets.keySet()))
+                .build();
+    }
+
+    /**
+     * Get a single object by ID
+     */
+    public CanvasObjectResponse getObjectById(Long id) {
+        CanvasObject object = canvasObjectRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Object not found with id: " + id));
+        return writeBehindBuffer.overlay(CanvasObjectResponse.fromEntity(object));
+    }
+
+    /**
+     * Create the canvas object for a file stored by UploadService
+     */
+    @Transactional
+    public CanvasObjectResponse createUploadedObject(FileUploadRequest request, String contentUrl) {
+        // Get user if exists
+        User user = null;
+        if (request.getUserId() != null) {
+            user = userRepository.findById(request.getUserId()).orElse(null);
+        }
+
+        // Create canvas object
         CanvasObject object = CanvasObject.builder()
+                .objectType(ObjectType.valueOf(request.getObjectType()))
+                .contentUrl(contentUrl)
+                .positionX(request.getPositionX())
+                .positionY(request.getPositionY())
+                .width(request.getWidth())
+                .height(request.getHeight())
+                .zIndex(request.getZIndex() != null ? request.getZIndex() : 0)
+                .user(user)
+                .revision(canvasSyncService.nextRevision())
+                .build();
+
+        CanvasObject saved = canvasObjectRepository.save(object);
+        CanvasObjectResponse response = CanvasObjectResponse.fromEntity(saved);
+        eventPublisher.publishEvent(CanvasObjectChangedEvent.created(response));
+        return response;
+    }
+
+    /**
+     * Record the renditions made for an uploaded image on every object showing it.
+     * The objects get a new revision and are broadcast, so clients pick up the rendition URLs.
+     *
+     * @return number of objects updated
+     */
+    @Transactional
+    public int applyRenditions(String contentUrl, String lodSizes, String lodFormat) {
+        List<CanvasObject> objects = canvasObjectRepository.findByContentUrlAndLodSizesIsNull(contentUrl);
+        if (objects.isEmpty()) {
+            return 0;
+        }
+
+        long revision = canvasSyncService.nextRevision();
+        objects.forEach(object -> {
+            object.setLodSizes(lodSizes);
+            object.setLodFormat(lodFormat);
+            object.setRevision(revision);
+        });
+        for (CanvasObjectResponse response : toResponses(objects)) {
+            // Position and size are unchanged (including buffered drags)
+            CanvasObjectResponse current = writeBehindBuffer.overlay(response);
+            eventPublisher.publishEvent(CanvasObjectChangedEvent.updated(current, Bounds.of(
+                    current.getPositionX(), current.getPositionY(), current.getWidth(), current.getHeight())));
+        }
+        return objects.size();
+    }
+
+    /**
+     * Load the in-memory spatial index from the table once the application is up.
+     * Pages are read by id in separate transactions so the persistence context stays small;
+     * changes committed while loading are applied by the index itself and take precedence.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void rebuildSpatialIndex() {
+        if (viewportSource != ViewportSource.MEMORY_INDEX) {
+            return;
+        }
+
+        indexRebuildLock.lock();
+        try {
+            long startTime = System.currentTimeMillis();
+            spatialTileIndex.beginRebuild();
+
+            try {
+                long afterId = 0L;
+                List<CanvasObject> page;
+                do {
+                    page = canvasObjectRepository.findPageAfterId(
+                            afterId, PageRequest.of(0, INDEX_REBUILD_PAGE_SIZE));
+                    spatialTileIndex.load(page.stream()
+                            .map(CanvasObjectResponse::fromEntity)
+                            .collect(Collectors.toList()));
+                    if (!page.isEmpty()) {
+                        afterId = page.get(page.size() - 1).getId();
+                    }
+                } while (page.size() == INDEX_REBUILD_PAGE_SIZE);
+            } catch (RuntimeException e) {
+                // Leave the index unready so viewport queries keep going to the database
+                log.error("Failed to rebuild spatial index, serving viewports from the database", e);
+                return;
+            }
+
+            spatialTileIndex.finishRebuild();
+            log.info("Spatial index rebuilt in {} ms", System.currentTimeMillis() - startTime);
+        } finally {
+            indexRebuildLock.unlock();
+        }
+    }
+
+    /**
+     * Re-read objects changed by another instance into the in-memory spatial index, which
+     * only sees local events otherwise (see CacheInvalidationService). Ids no longer in the
+     * table are removed; moves buffered on this instance stay on top.
+     */
+    @Transactional(readOnly = true)
+    public void refreshSpatialIndex(Collection<Long> ids) {
+        if (viewportSource != ViewportSource.MEMORY_INDEX || ids.isEmpty()) {
+            return;
+        }
+
+        Set<Long> removed = new HashSet<>(ids);
+        for (CanvasObject object : canvasObjectRepository.findAllWithUserByIdIn(ids)) {
+            removed.remove(object.getId());
+            spatialTileIndex.put(writeBehindBuffer.overlay(CanvasObjectResponse.fromEntity(object)));
+        }
+        removed.forEach(spatialTileIndex::remove);
+    }
+
+    private CanvasObject buildObject(CanvasObjectRequest request, User user, long revision) {
+        return CanvasObject.builder()
                 .objectType(request.getObjectType())
                 .contentUrl(request.getContentUrl())
                 .positionX(request.getPositionX())
@@ -75,20 +649,14 @@ public class CanvasObjectService {
                 .fontWeight(request.getFontWeight())
                 .textColor(request.getTextColor())
                 .user(user)
+                .revision(revision)
                 .build();
-
-        CanvasObject saved = canvasObjectRepository.save(object);
-        return CanvasObjectResponse.fromEntity(saved);
     }
 
     /**
-     * Update an existing canvas object
+     * Apply the non-null fields of a partial update
      */
-    @Transactional
-    public CanvasObjectResponse updateObject(Long id, CanvasObjectUpdateRequest request) {
-        CanvasObject object = canvasObjectRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Object not found with id: " + id));
-
+    private void applyUpdate(CanvasObject object, CanvasObjectUpdateRequest request, long revision) {
         if (request.getPositionX() != null) {
             object.setPositionX(request.getPositionX());
         }
@@ -104,8 +672,12 @@ public class CanvasObjectService {
         if (request.getZIndex() != null) {
             object.setZIndex(request.getZIndex());
         }
-        if (request.getContentUrl() != null) {
+        if (request.getContentUrl() != null && !request.getContentUrl().equals(object.getContentUrl())) {
+            releaseContent(List.of(object));
             object.setContentUrl(request.getContentUrl());
+            // Renditions of the new content are recorded by the next RenditionService backfill
+            object.setLodSizes(null);
+            object.setLodFormat(null);
         }
         if (request.getFontSize() != null) {
             object.setFontSize(request.getFontSize());
@@ -116,85 +688,86 @@ public class CanvasObjectService {
         if (request.getTextColor() != null) {
             object.setTextColor(request.getTextColor());
         }
-
-        CanvasObject updated = canvasObjectRepository.save(object);
-        return CanvasObjectResponse.fromEntity(updated);
+        object.setRevision(revision);
     }
 
     /**
-     * Delete a canvas object
+     * The objects no longer reference their uploaded files (deleted or replaced)
      */
-    @Transactional
-    public void deleteObject(Long id) {
-        if (!canvasObjectRepository.existsById(id)) {
-            throw new RuntimeException("Object not found with id: " + id);
+    private void releaseContent(Collection<CanvasObject> objects) {
+        List<String> contentUrls = objects.stream()
+                .map(CanvasObject::getContentUrl)
+                .filter(UploadStorage::isContentAddressed)
+                .distinct()
+                .collect(Collectors.toList());
+        if (!contentUrls.isEmpty()) {
+            eventPublisher.publishEvent(new ContentReleasedEvent(contentUrls));
         }
-        canvasObjectRepository.deleteById(id);
     }
 
     /**
-     * Get a single object by ID
+     * Run work in a transaction of its own. If a concurrent write to the same columns or a
+     * stale cached copy makes it fail (see CanvasObject), the cached copies of ids are evicted
+     * and the work runs again on fresh rows, up to canvas.objects.update.max-attempts times
+     * before ObjectConflictException.
      */
-    public CanvasObjectResponse getObjectById(Long id) {
-        CanvasObject object = canvasObjectRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Object not found with id: " + id));
-        return CanvasObjectResponse.fromEntity(object);
+    private <T> T executeRetryingConflicts(Collection<Long> ids, TransactionCallback<T> work) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(work);
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxUpdateAttempts) {
+                    meterRegistry.counter("canvas.objects.conflicts", "result", "failed").increment();
+                    throw ids.size() == 1
+                            ? new ObjectConflictException(ids.iterator().next())
+                            : new ObjectConflictException(ids);
+                }
+                meterRegistry.counter("canvas.objects.conflicts", "result", "retried").increment();
+                // The cached copies may predate the write that won
+                jakarta.persistence.Cache cache = entityManager.getEntityManagerFactory().getCache();
+                ids.forEach(id -> cache.evict(CanvasObject.class, id));
+            }
+        }
     }
 
-    /**
-     * Upload file and create canvas object
-     */
-    @Transactional
-    public CanvasObjectResponse uploadFile(
-            MultipartFile file,
-            String objectType,
-            Double positionX,
-            Double positionY,
-            Double width,
-            Double height,
-            Integer zIndex,
-            Long userId) throws IOException {
-
-        // Create upload directory if it doesn't exist
-        Path uploadDir = Paths.get("uploads");
-        if (!Files.exists(uploadDir)) {
-            Files.createDirectories(uploadDir);
+    private Map<Long, CanvasObject> findAllByIdOrThrow(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
         }
 
-        // Generate unique filename
-        String originalFilename = file.getOriginalFilename();
-        String extension = "";
-        if (originalFilename != null && originalFilename.contains(".")) {
-            extension = originalFilename.substring(originalFilename.lastIndexOf("."));
+        Map<Long, CanvasObject> objects = canvasObjectRepository.findAllWithUserByIdIn(ids).stream()
+                .collect(Collectors.toMap(CanvasObject::getId, object -> object));
+        for (Long id : ids) {
+            if (!objects.containsKey(id)) {
+                throw new ObjectNotFoundException(id);
+            }
         }
-        String filename = UUID.randomUUID().toString() + extension;
-        Path filePath = uploadDir.resolve(filename);
+        return objects;
+    }
 
-        // Save file to disk
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+    /**
+     * Map entities to responses with a constant number of statements:
+     * owners are loaded in one query instead of one lazy load per row.
+     */
+    private List<CanvasObjectResponse> toResponses(List<CanvasObject> objects) {
+        Set<Long> userIds = objects.stream()
+                .map(CanvasObject::getUser)
+                .filter(Objects::nonNull)
+                .map(User::getId)
+                .collect(Collectors.toSet());
 
-        // Create URL for accessing the file
-        String fileUrl = "/uploads/" + filename;
+        Map<Long, String> usernames = userIds.isEmpty()
+                ? Map.of()
+                : userRepository.findAllById(userIds).stream()
+                        .collect(Collectors.toMap(User::getId, User::getUsername));
 
-        // Get user if exists
-        User user = null;
-        if (userId != null) {
-            user = userRepository.findById(userId).orElse(null);
-        }
-
-        // Create canvas object
-        CanvasObject object = CanvasObject.builder()
-                .objectType(ObjectType.valueOf(objectType))
-                .contentUrl(fileUrl)
-                .positionX(positionX)
-                .positionY(positionY)
-                .width(width)
-                .height(height)
-                .zIndex(zIndex != null ? zIndex : 0)
-                .user(user)
-                .build();
+        return objects.stream()
+                .map(object -> CanvasObjectResponse.fromEntity(object, usernames))
+                .collect(Collectors.toList());
+    }
 
-        CanvasObject saved = canvasObjectRepository.save(object);
-        return CanvasObjectResponse.fromEntity(saved);
+    private Bounds boundsOf(CanvasObject object) {
+        return Bounds.of(object.getPositionX(), object.getPositionY(),
+                object.getWidth(), object.getHeight());
     }
 }
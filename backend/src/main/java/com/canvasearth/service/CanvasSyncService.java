@@ -0,0 +1,182 @@
+package com.canvasearth.service;
+
+import com.canvasearth.dto.CanvasChangesResponse;
+import com.canvasearth.dto.CanvasObjectResponse;
+import com.canvasearth.entity.CanvasObject;
+import com.canvasearth.entity.CanvasObjectTombstone;
+import com.canvasearth.repository.CanvasObjectRepository;
+import com.canvasearth.repository.CanvasObjectTombstoneRepository;
+import com.canvasearth.spatial.Bounds;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Canvas revisions and delta sync ("what changed in this region since revision N").
+ *
+ * Every create/update takes a new value from canvas_revision_seq; deletes and moves
+ * additionally leave a tombstone with the object's previous bounds. Tombstones are purged
+ * after the retention period, and clients asking for revisions older than the purge
+ * horizon are told to do a full resync. The horizon is kept in canvas_sync_state, so it
+ * survives restarts and every instance agrees on it.
+ *
+ * The high-water mark handed to clients is commit-safe: revisions are handed out before
+ * their transactions commit, so each writer holds an advisory lock on its revision until
+ * it ends, and the mark stops below the oldest revision still locked (see
+ * CanvasObjectRepository.nextRevision). A client syncing from it cannot miss a change
+ * that commits later.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class CanvasSyncService {
+
+    private static final int MAX_CHANGES = 5000;
+    private static final int MAX_REVISION_ATTEMPTS = 5;
+
+    private final CanvasObjectRepository canvasObjectRepository;
+    private final CanvasObjectTombstoneRepository tombstoneRepository;
+
+    @Value("${canvas.sync.tombstone-retention:P7D}")
+    private Duration tombstoneRetention;
+
+    // Last high-water mark computed here; still safe later, since it never decreases
+    private final AtomicLong safeRevision = new AtomicLong();
+
+    /**
+     * Highest revision up to which every change has been committed or rolled back.
+     * Retried while a writer is between taking its revision and locking it (a single
+     * statement); if that keeps happening, the previous mark is returned.
+     */
+    public long currentRevision() {
+        for (int attempt = 0; attempt < MAX_REVISION_ATTEMPTS; attempt++) {
+            // The sequence first: a revision it includes is then either finished or locked
+            Long lastRevision = canvasObjectRepository.lastRevision();
+            Long revision = canvasObjectRepository.findSafeRevision(lastRevision != null ? lastRevision : 0L);
+            if (revision != null) {
+                return safeRevision.accumulateAndGet(revision, Math::max);
+            }
+        }
+        return safeRevision.get();
+    }
+
+    /**
+     * Take the next canvas revision. Must be called inside the writing transaction, which
+     * keeps the revision locked until it ends.
+     */
+    @Transactional
+    public long nextRevision() {
+        return canvasObjectRepository.nextRevision();
+    }
+
+    @Transactional
+    public void recordDeleted(Long objectId, Bounds previousBounds, long revision) {
+        tombstoneRepository.save(tombstone(objectId, previousBounds, revision, true));
+    }
+
+    /**
+     * Record the previous bounds of a moved or resized object, so clients watching the
+     * region it left can drop it. No-op if the bounds did not change.
+     */
+    @Transactional
+    public void recordMoved(Long objectId, Bounds previousBounds, Bounds newBounds, long revision) {
+        if (previousBounds.getMinX() == newBounds.getMinX()
+                && previousBounds.getMinY() == newBounds.getMinY()
+                && previousBounds.getMaxX() == newBounds.getMaxX()
+                && previousBounds.getMaxY() == newBounds.getMaxY()) {
+            return;
+        }
+        tombstoneRepository.save(tombstone(objectId, previousBounds, revision, false));
+    }
+
+    /**
+     * Changes in the region after the given revision.
+     * The high-water mark is read before querying, so a change committed during the
+     * request is returned again next time rather than skipped. The purge horizon is read
+     * after the tombstones, so a purge committed in between leads to a full resync.
+     */
+    public CanvasChangesResponse getChangesSince(
+            long since, double minX, double minY, double maxX, double maxY) {
+
+        long revision = currentRevision();
+
+        if (since < purgedRevision()) {
+            return fullResync(revision);
+        }
+
+        List<CanvasObject> changed = canvasObjectRepository.findChangedInViewportSince(
+                since, minX, minY, maxX, maxY, PageRequest.of(0, MAX_CHANGES + 1));
+        if (changed.size() > MAX_CHANGES) {
+            return fullResync(revision);
+        }
+
+        List<Long> removedIds = tombstoneRepository.findRemovedObjectIdsSince(
+                since, minX, minY, maxX, maxY);
+        if (since < purgedRevision()) {
+            return fullResync(revision);
+        }
+
+        return CanvasChangesResponse.builder()
+                .revision(revision)
+                .fullResync(false)
+                .objects(changed.stream()
+                        .map(CanvasObjectResponse::fromEntity)
+                        .collect(Collectors.toList()))
+                .removedIds(removedIds)
+                .build();
+    }
+
+    /**
+     * Drop tombstones older than the retention period and advance the horizon past them.
+     */
+    @Scheduled(fixedDelayString = "${canvas.sync.tombstone-purge-interval:PT1H}")
+    @Transactional
+    public void purgeTombstones() {
+        Long purgeUpTo = tombstoneRepository.findMaxRevisionCreatedBefore(
+                LocalDateTime.now().minus(tombstoneRetention));
+        if (purgeUpTo == null) {
+            return;
+        }
+
+        tombstoneRepository.advancePurgedRevision(purgeUpTo);
+        int deleted = tombstoneRepository.deleteUpToRevision(purgeUpTo);
+        log.info("Purged {} tombstones up to revision {}", deleted, purgeUpTo);
+    }
+
+    private long purgedRevision() {
+        Long revision = tombstoneRepository.findPurgedRevision();
+        return revision != null ? revision : Long.MAX_VALUE;
+    }
+
+    private CanvasChangesResponse fullResync(long revision) {
+        return CanvasChangesResponse.builder()
+                .revision(revision)
+                .fullResync(true)
+                .objects(List.of())
+                .removedIds(List.of())
+                .build();
+    }
+
+    private CanvasObjectTombstone tombstone(Long objectId, Bounds bounds, long revision, boolean deleted) {
+        return CanvasObjectTombstone.builder()
+                .objectId(objectId)
+                .revision(revision)
+                .deleted(deleted)
+                .minX(bounds.getMinX())
+                .minY(bounds.getMinY())
+                .maxX(bounds.getMaxX())
+                .maxY(bounds.getMaxY())
+                .build();
+    }
+}
@@ -0,0 +1,110 @@
+package com.canvasearth.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drops presence messages for sessions that are not keeping up.
+ *
+ * Messages to one WebSocket session are written one at a time; while a write is blocked on a
+ * slow client, everything else for that session is buffered until the buffer limit closes
+ * the session. A session counts as slow while a write to it has been blocked for longer than
+ * canvas.presence.slow-send-threshold, and presence messages for it are then dropped before
+ * they are buffered: the next message carries newer positions anyway, and canvas changes keep
+ * their room in the buffer. Other sessions are not affected.
+ *
+ * Registered both as WebSocket handler decorator (to time the writes) and as
+ * clientOutboundChannel interceptor, see WebSocketConfig.
+ */
+@Component
+public class PresenceBackpressure implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    // WebSocket session id -> System.nanoTime() when the current write started, 0 while idle
+    private final Map<String, AtomicLong> writeStarted = new ConcurrentHashMap<>();
+    private final long slowSendThresholdNanos;
+    private final Counter dropped;
+
+    public PresenceBackpressure(
+            MeterRegistry meterRegistry,
+            @Value("${canvas.presence.slow-send-threshold:PT0.1S}") Duration slowSendThreshold) {
+        this.slowSendThresholdNanos = slowSendThreshold.toNanos();
+        this.dropped = Counter.builder("canvas.presence.dropped")
+                .description("Presence messages not sent to sessions with a blocked write")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null || !destination.startsWith(PresenceService.PRESENCE_TOPIC_PREFIX)) {
+            return message;
+        }
+
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        AtomicLong started = sessionId != null ? writeStarted.get(sessionId) : null;
+        long startedNanos = started != null ? started.get() : 0;
+        if (startedNanos != 0 && System.nanoTime() - startedNanos > slowSendThresholdNanos) {
+            dropped.increment();
+            return null;
+        }
+        return message;
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                AtomicLong started = new AtomicLong();
+                writeStarted.put(session.getId(), started);
+                super.afterConnectionEstablished(new TimedSession(session, started));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                writeStarted.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    private static class TimedSession extends WebSocketSessionDecorator {
+
+        private final AtomicLong started;
+
+        TimedSession(WebSocketSession session, AtomicLong started) {
+            super(session);
+            this.started = started;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            started.set(System.nanoTime());
+            try {
+                super.sendMessage(message);
+            } finally {
+                started.set(0);
+            }
+        }
+    }
+}
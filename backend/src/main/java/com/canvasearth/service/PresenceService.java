@@ -0,0 +1,269 @@
+package com.canvasearth.service;
+
+import com.canvasearth.dto.PresenceMessage;
+import com.canvasearth.dto.PresenceUpdate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * Cursors, selections and drag previews of connected sessions. Held in memory only: nothing
+ * here touches the database or CanvasObjectService.
+ *
+ * Clients send frames as often as they like (e.g. every animation frame). Each session has a
+ * single slot holding its latest frame; a newer frame replaces one not sent yet. Every
+ * canvas.presence.interval the slots that changed are sent, one message per broadcast tile
+ * (the grid of CanvasBroadcastService) on /topic/canvas.presence.{tx}.{ty}, so clients only
+ * receive the sessions around their viewport and at most one message per tile and interval.
+ * A session that moves to another tile, disconnects or sends nothing for
+ * canvas.presence.idle-timeout is listed as gone in the tile it was last seen in.
+ *
+ * Slow clients skip presence messages instead of queueing them (see PresenceBackpressure).
+ */
+@Slf4j
+@Service
+public class PresenceService implements SmartLifecycle {
+
+    public static final String PRESENCE_TOPIC_PREFIX = "/topic/canvas.presence.";
+
+    private static final String MESSAGE_TYPE = "PRESENCE";
+    private static final Pattern COLOR = Pattern.compile("#[0-9a-fA-F]{6}");
+    private static final int MAX_NAME_LENGTH = 64;
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final double tileSize;
+    private final Duration interval;
+    private final long idleTimeoutNanos;
+    private final int maxSelection;
+
+    private final Counter framesReceived;
+    private final Counter framesSuperseded;
+    private final Counter framesSent;
+    private final Timer flushTimer;
+
+    // STOMP session id -> presence of that session
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+
+    // Slots of disconnected sessions, to be announced as gone by the next flush
+    private final Queue<Slot> departed = new ConcurrentLinkedQueue<>();
+
+    private volatile ThreadPoolTaskScheduler scheduler;
+
+    public PresenceService(
+            SimpMessagingTemplate messagingTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${canvas.websocket.tile-size:2000}") double tileSize,
+            @Value("${canvas.presence.interval:PT0.05S}") Duration interval,
+            @Value("${canvas.presence.idle-timeout:PT30S}") Duration idleTimeout,
+            @Value("${canvas.presence.max-selection:100}") int maxSelection) {
+        this.messagingTemplate = messagingTemplate;
+        this.tileSize = tileSize;
+        this.interval = interval;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.maxSelection = maxSelection;
+        this.framesReceived = meterRegistry.counter("canvas.presence.frames", "result", "received");
+        this.framesSuperseded = meterRegistry.counter("canvas.presence.frames", "result", "superseded");
+        this.framesSent = meterRegistry.counter("canvas.presence.frames", "result", "sent");
+        this.flushTimer = Timer.builder("canvas.presence.flush")
+                .description("Time to collect and send the presence changes of one interval")
+                .register(meterRegistry);
+        Gauge.builder("canvas.presence.sessions", slots, Map::size)
+                .description("Sessions with a presence slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Keep the latest frame of a session. Called for every frame a client sends, so it does
+     * no more than replace the pending one.
+     *
+     * @return id of the session's frames if this frame created its slot, otherwise null
+     */
+    public String update(String sessionId, PresenceUpdate update) {
+        if (update.getX() == null || update.getY() == null
+                || !Double.isFinite(update.getX()) || !Double.isFinite(update.getY())) {
+            return null;
+        }
+
+        Slot slot = slots.get(sessionId);
+        boolean created = false;
+        if (slot == null) {
+            Slot fresh = new Slot(UUID.randomUUID().toString());
+            Slot existing = slots.putIfAbsent(sessionId, fresh);
+            created = existing == null;
+            slot = created ? fresh : existing;
+        }
+
+        framesReceived.increment();
+        if (slot.pending.getAndSet(toFrame(slot.id, update)) != null) {
+            framesSuperseded.increment();
+        }
+        return created ? slot.id : null;
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        Slot slot = slots.remove(event.getSessionId());
+        if (slot != null) {
+            departed.add(slot);
+        }
+    }
+
+    /**
+     * Send the frames received since the last flush, grouped by tile. Runs on a single thread,
+     * which alone reads and writes Slot.topic and Slot.lastFrameNanos.
+     */
+    void flush() {
+        long now = System.nanoTime();
+        Map<String, PresenceMessage> messages = new LinkedHashMap<>();
+
+        Iterator<Map.Entry<String, Slot>> iterator = slots.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Slot> entry = iterator.next();
+            Slot slot = entry.getValue();
+            PresenceMessage.Frame frame = slot.pending.getAndSet(null);
+            if (frame != null) {
+                String topic = topicOf(frame.getX(), frame.getY());
+                if (slot.topic != null && !slot.topic.equals(topic)) {
+                    messageFor(messages, slot.topic).getGone().add(slot.id);
+                }
+                slot.topic = topic;
+                slot.lastFrameNanos = now;
+                messageFor(messages, topic).getFrames().add(frame);
+            } else if (slot.topic != null && now - slot.lastFrameNanos > idleTimeoutNanos) {
+                messageFor(messages, slot.topic).getGone().add(slot.id);
+                // A later frame starts over with a new slot
+                slots.remove(entry.getKey(), slot);
+            }
+        }
+
+        Slot slot;
+        while ((slot = departed.poll()) != null) {
+            if (slot.topic != null) {
+                messageFor(messages, slot.topic).getGone().add(slot.id);
+            }
+        }
+
+        messages.forEach(this::send);
+    }
+
+    @Override
+    public void start() {
+        ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setPoolSize(1);
+        taskScheduler.setThreadNamePrefix("presence-");
+        taskScheduler.initialize();
+        taskScheduler.scheduleWithFixedDelay(this::flushAndRecord, interval);
+        scheduler = taskScheduler;
+        log.info("Presence: flushing every {} on {}*", interval, PRESENCE_TOPIC_PREFIX);
+    }
+
+    @Override
+    public void stop() {
+        ThreadPoolTaskScheduler taskScheduler = scheduler;
+        scheduler = null;
+        if (taskScheduler != null) {
+            taskScheduler.shutdown();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return scheduler != null;
+    }
+
+    private void flushAndRecord() {
+        try {
+            flushTimer.record(this::flush);
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule
+            log.error("Presence flush failed", e);
+        }
+    }
+
+    private void send(String topic, PresenceMessage message) {
+        try {
+            messagingTemplate.convertAndSend(topic, message);
+            framesSent.increment(message.getFrames().size());
+        } catch (MessagingException e) {
+            // The next frames of these sessions replace what was lost
+            log.warn("Failed to send presence to {}: {}", topic, e.getMessage());
+        }
+    }
+
+    private PresenceMessage.Frame toFrame(String id, PresenceUpdate update) {
+        List<Long> selection = update.getSelection();
+        if (selection != null && selection.size() > maxSelection) {
+            selection = new ArrayList<>(selection.subList(0, maxSelection));
+        }
+
+        PresenceUpdate.Drag drag = update.getDrag();
+        if (drag != null && (drag.getObjectId() == null
+                || !isFinite(drag.getPositionX()) || !isFinite(drag.getPositionY())
+                || !isFinite(drag.getWidth()) || !isFinite(drag.getHeight()))) {
+            drag = null;
+        }
+
+        String name = update.getName();
+        if (name != null && name.length() > MAX_NAME_LENGTH) {
+            name = name.substring(0, MAX_NAME_LENGTH);
+        }
+        String color = update.getColor() != null && COLOR.matcher(update.getColor()).matches()
+                ? update.getColor() : null;
+
+        return PresenceMessage.Frame.builder()
+                .id(id)
+                .x(update.getX())
+                .y(update.getY())
+                .selection(selection)
+                .drag(drag)
+                .name(name)
+                .color(color)
+                .build();
+    }
+
+    private String topicOf(double x, double y) {
+        return PRESENCE_TOPIC_PREFIX + (long) Math.floor(x / tileSize) + "." + (long) Math.floor(y / tileSize);
+    }
+
+    private static PresenceMessage messageFor(Map<String, PresenceMessage> messages, String topic) {
+        return messages.computeIfAbsent(topic, key -> new PresenceMessage(MESSAGE_TYPE, new ArrayList<>(), new ArrayList<>()));
+    }
+
+    private static boolean isFinite(Double value) {
+        return value != null && Double.isFinite(value);
+    }
+
+    @RequiredArgsConstructor
+    private static class Slot {
+        private final String id;
+        // Latest frame not sent yet
+        private final AtomicReference<PresenceMessage.Frame> pending = new AtomicReference<>();
+        // Tile topic the session was last announced in, and when its last frame was sent
+        private String topic;
+        private long lastFrameNanos;
+    }
+}
@@ -0,0 +1,388 @@
+package com.canvasearth.service;
+
+import com.canvasearth.entity.CanvasObject;
+import com.canvasearth.repository.CanvasObjectRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Generates downscaled renditions of uploaded images (canvas.upload.lod.sizes, longest side
+ * in pixels) so zoomed-out clients can load a small file instead of the original.
+ *
+ * Work runs on a bounded pool of canvas.upload.lod.workers threads, after the upload has
+ * committed. Renditions belong to the content: they are made once per content URL and
+ * recorded on every object showing it (lod_sizes, lod_format). Uploads whose task is rejected
+ * or fails, and images uploaded before renditions existed, are picked up by a periodic
+ * backfill over the rows still without lod_sizes; progress lives in those rows, so the
+ * backfill resumes where it stopped after a restart.
+ *
+ * A content whose renditions fail (storage or database errors) is retried with an exponential
+ * backoff starting at canvas.upload.lod.retry-backoff; after canvas.upload.lod.max-attempts
+ * failures it is recorded as having none, like undecodable content, and no longer retried.
+ * Attempts are counted in memory, so a restart allows another max-attempts tries.
+ *
+ * Images are decoded with subsampling at no more than twice the largest rendition, and each
+ * level is scaled down from the previous one, so a large original is never held in memory
+ * at full resolution and is decoded only once.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RenditionService implements SmartLifecycle {
+
+    private static final int BACKFILL_PAGE_SIZE = 100;
+
+    private final UploadStorage uploadStorage;
+    private final CanvasObjectService canvasObjectService;
+    private final CanvasObjectRepository canvasObjectRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${canvas.upload.lod.sizes:64,256,1024}")
+    private List<Integer> sizes;
+
+    @Value("${canvas.upload.lod.workers:2}")
+    private int workers;
+
+    @Value("${canvas.upload.lod.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${canvas.upload.lod.max-pixels:50000000}")
+    private long maxPixels;
+
+    @Value("${canvas.upload.lod.jpeg-quality:0.8}")
+    private float jpegQuality;
+
+    @Value("${canvas.upload.lod.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${canvas.upload.lod.retry-backoff:PT1M}")
+    private Duration retryBackoff;
+
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    // Content URL -> failed attempts so far, removed once renditions are recorded
+    private final Map<String, Failure> failures = new ConcurrentHashMap<>();
+
+    private volatile ThreadPoolTaskExecutor executor;
+
+    /**
+     * Queue rendition generation for a stored image
+     *
+     * @return completion of the task, or null if the content is already queued or the queue is full
+     */
+    public CompletableFuture<Void> submit(String contentUrl) {
+        ThreadPoolTaskExecutor current = executor;
+        if (current == null || !UploadStorage.isContentAddressed(contentUrl) || !inFlight.add(contentUrl)) {
+            return null;
+        }
+        try {
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    process(contentUrl);
+                } finally {
+                    inFlight.remove(contentUrl);
+                }
+            }, current);
+        } catch (TaskRejectedException e) {
+            inFlight.remove(contentUrl);
+            log.debug("Rendition queue full, {} is left to the backfill", contentUrl);
+            return null;
+        }
+    }
+
+    public List<Integer> getSizes() {
+        return sizes;
+    }
+
+    /**
+     * Queue renditions for images that have none recorded yet, up to half of the queue so
+     * new uploads still find room. Does not wait for them: this runs on the shared scheduler
+     * thread. Whatever does not fit is queued by a later run.
+     */
+    @Scheduled(initialDelayString = "${canvas.upload.lod.backfill-initial-delay:PT1M}",
+               fixedDelayString = "${canvas.upload.lod.backfill-interval:PT1M}")
+    public void backfill() {
+        ThreadPoolTaskExecutor current = executor;
+        if (current == null) {
+            return;
+        }
+
+        int budget = queueCapacity / 2 - current.getThreadPoolExecutor().getQueue().size();
+        int queued = 0;
+        long afterId = 0L;
+        List<CanvasObject> page;
+        do {
+            page = canvasObjectRepository.findPendingRenditionsAfterId(afterId, PageRequest.of(0, BACKFILL_PAGE_SIZE));
+            for (CanvasObject object : page) {
+                if (queued >= budget) {
+                    log.debug("Rendition backfill queued {} images, continuing in the next run", queued);
+                    return;
+                }
+                if (!isBackingOff(object.getContentUrl()) && submit(object.getContentUrl()) != null) {
+                    queued++;
+                }
+            }
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == BACKFILL_PAGE_SIZE);
+
+        if (queued > 0) {
+            log.info("Rendition backfill queued {} images", queued);
+        }
+    }
+
+    @Override
+    public void start() {
+        ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+        pool.setThreadNamePrefix("rendition-");
+        pool.setCorePoolSize(workers);
+        pool.setMaxPoolSize(workers);
+        pool.setQueueCapacity(queueCapacity);
+        pool.setWaitForTasksToCompleteOnShutdown(false);
+        pool.initialize();
+        meterRegistry.gauge("canvas.rendition.queue", pool, p -> p.getThreadPoolExecutor().getQueue().size());
+        executor = pool;
+    }
+
+    @Override
+    public void stop() {
+        ThreadPoolTaskExecutor pool = executor;
+        executor = null;
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return executor != null;
+    }
+
+    private void process(String contentUrl) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String result;
+        try {
+            result = renderOrReuse(contentUrl);
+            failures.remove(contentUrl);
+        } catch (IOException | RuntimeException e) {
+            result = recordFailure(contentUrl, e);
+        }
+        sample.stop(meterRegistry.timer("canvas.rendition.duration", "result", result));
+    }
+
+    /**
+     * Schedule the next attempt after a failure, or give up on the content after maxAttempts
+     *
+     * @return result tag of the attempt
+     */
+    private String recordFailure(String contentUrl, Exception cause) {
+        Failure failure = failures.compute(contentUrl, (key, previous) -> {
+            int attempts = previous != null ? previous.attempts + 1 : 1;
+            long delayNanos = retryBackoff.toNanos() << Math.min(attempts - 1, 16);
+            return new Failure(attempts, System.nanoTime() + delayNanos);
+        });
+        if (failure.attempts < maxAttempts) {
+            // Left without lod_sizes: retried by a backfill after the backoff
+            log.warn("Failed to make renditions of {} (attempt {} of {}): {}",
+                    contentUrl, failure.attempts, maxAttempts, cause.getMessage());
+            return "failed";
+        }
+
+        log.warn("Giving up on renditions of {} after {} attempts: {}", contentUrl, failure.attempts, cause.getMessage());
+        try {
+            canvasObjectService.applyRenditions(contentUrl, Renditions.NONE.getSizes(), Renditions.NONE.getFormat());
+            failures.remove(contentUrl);
+        } catch (RuntimeException e) {
+            // Still backing off; the next failure tries to record it again
+            log.warn("Cannot record missing renditions of {}: {}", contentUrl, e.getMessage());
+        }
+        return "abandoned";
+    }
+
+    private boolean isBackingOff(String contentUrl) {
+        Failure failure = failures.get(contentUrl);
+        return failure != null && System.nanoTime() - failure.retryAtNanos < 0;
+    }
+
+    private String renderOrReuse(String contentUrl) throws IOException {
+        // Another object with the same content may already have them
+        Optional<CanvasObject> done = canvasObjectRepository.findFirstByContentUrlAndLodSizesIsNotNull(contentUrl);
+        if (done.isPresent()) {
+            canvasObjectService.applyRenditions(contentUrl, done.get().getLodSizes(), done.get().getLodFormat());
+            return "reused";
+        }
+
+        Renditions renditions;
+        try {
+            renditions = render(contentUrl);
+        } catch (IIOException | RuntimeException e) {
+            // Undecodable content does not get better on retry: record that there are none
+            log.info("Cannot decode {} for renditions: {}", contentUrl, e.getMessage());
+            renditions = Renditions.NONE;
+        }
+
+        int updated = canvasObjectService.applyRenditions(contentUrl, renditions.getSizes(), renditions.getFormat());
+        if (updated == 0 && !renditions.getLevels().isEmpty() && canvasObjectRepository.countByContentUrl(contentUrl) == 0) {
+            // The last object showing the image was deleted while rendering
+            uploadStorage.deleteRenditions(contentUrl, renditions.getLevels());
+        }
+        return renditions.getLevels().isEmpty() ? "none" : "rendered";
+    }
+
+    private Renditions render(String contentUrl) throws IOException {
+        if (!uploadStorage.exists(contentUrl)) {
+            return Renditions.NONE;
+        }
+        try (InputStream content = uploadStorage.open(contentUrl);
+             ImageInputStream input = ImageIO.createImageInputStream(content)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                // No ImageIO decoder for this format (e.g. WebP)
+                return Renditions.NONE;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    log.info("Skipping renditions of {}: {}x{} exceeds canvas.upload.lod.max-pixels", contentUrl, width, height);
+                    return Renditions.NONE;
+                }
+
+                int longest = Math.max(width, height);
+                List<Integer> levels = sizes.stream()
+                        .filter(size -> size < longest)
+                        .distinct()
+                        .sorted(Comparator.reverseOrder())
+                        .collect(Collectors.toList());
+                if (levels.isEmpty()) {
+                    return Renditions.NONE;
+                }
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, longest / (levels.get(0) * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage image = reader.read(0, param);
+
+                boolean alpha = image.getColorModel().hasAlpha();
+                String format = alpha ? "png" : "jpg";
+                for (int size : levels) {
+                    image = scale(image, size, alpha);
+                    uploadStorage.storeRendition(contentUrl, size, format, encode(image, format));
+                }
+                return new Renditions(levels, format);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scale so the longest side is size pixels, halving at most per step: a single bilinear
+     * step over a large factor skips source pixels and aliases.
+     */
+    private static BufferedImage scale(BufferedImage source, int size, boolean alpha) {
+        double factor = (double) size / Math.max(source.getWidth(), source.getHeight());
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * factor));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * factor));
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height,
+                    alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(current, 0, 0, width, height, null);
+            graphics.dispose();
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if ("png".equals(format)) {
+            ImageIO.write(image, "png", bytes);
+            return bytes.toByteArray();
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    @RequiredArgsConstructor
+    private static class Failure {
+        private final int attempts;
+        private final long retryAtNanos;
+    }
+
+    /**
+     * Rendition sizes (largest first) and their format; no levels means none can be made
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    private static class Renditions {
+
+        static final Renditions NONE = new Renditions(List.of(), null);
+
+        private final List<Integer> levels;
+        private final String format;
+
+        String getSizes() {
+            return levels.stream().sorted().map(String::valueOf).collect(Collectors.joining(","));
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.canvasearth.service;
+
+import com.canvasearth.dto.CanvasObjectResponse;
+import com.canvasearth.spatial.Bounds;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Draws canvas objects into a PNG tile with Java2D.
+ *
+ * Objects are drawn in viewport order. Images use the smallest rendition (see RenditionService)
+ * covering their size on the tile, or a placeholder until renditions exist; originals are
+ * never decoded here. Text is drawn as bars in its colour rather than glyphs: at tile zoom
+ * levels it is not legible, and the JRE image has no fonts. Decoded renditions are kept in
+ * an LRU of canvas.tiles.image-cache-size bytes, since neighbouring tiles and zoom levels
+ * draw the same images.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TileRenderer {
+
+    private static final Color IMAGE_PLACEHOLDER = new Color(0xB0, 0xBE, 0xC5);
+    private static final Color VIDEO_BACKGROUND = Color.BLACK;
+    private static final Color VIDEO_MARK = new Color(0xE5, 0x39, 0x35);
+    private static final Color DEFAULT_TEXT = new Color(0x33, 0x33, 0x33);
+    private static final float TEXT_BAR_ALPHA = 0.35f;
+    private static final double MIN_IMAGE_PIXELS = 4;
+
+    private final UploadStorage uploadStorage;
+
+    @Value("${canvas.tiles.image-cache-size:32MB}")
+    private DataSize imageCacheSize;
+
+    private volatile BoundedLruCache<String, BufferedImage> images;
+
+    /**
+     * @param bounds world area of the tile
+     * @param pixels width and height of the tile image
+     */
+    public byte[] render(Bounds bounds, int pixels, List<CanvasObjectResponse> objects) throws IOException {
+        double scale = pixels / (bounds.getMaxX() - bounds.getMinX());
+        BufferedImage tile = new BufferedImage(pixels, pixels, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = tile.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            for (CanvasObjectResponse object : objects) {
+                // Tile pixel coordinates; objects smaller than a pixel still show as one
+                Rectangle2D.Double area = new Rectangle2D.Double(
+                        (object.getPositionX() - bounds.getMinX()) * scale,
+                        (object.getPositionY() - bounds.getMinY()) * scale,
+                        Math.max(1, object.getWidth() * scale),
+                        Math.max(1, object.getHeight() * scale));
+                draw(graphics, object, area, scale);
+            }
+        } finally {
+            graphics.dispose();
+        }
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(tile, "png", png);
+        return png.toByteArray();
+    }
+
+    private void draw(Graphics2D graphics, CanvasObjectResponse object, Rectangle2D.Double area, double scale) {
+        switch (object.getObjectType()) {
+            case IMAGE -> {
+                BufferedImage image = Math.max(area.width, area.height) >= MIN_IMAGE_PIXELS
+                        ? rendition(object.getLodUrls(), Math.max(area.width, area.height))
+                        : null;
+                if (image != null) {
+                    AffineTransform transform = AffineTransform.getTranslateInstance(area.x, area.y);
+                    transform.scale(area.width / image.getWidth(), area.height / image.getHeight());
+                    graphics.drawImage(image, transform, null);
+                } else {
+                    graphics.setColor(IMAGE_PLACEHOLDER);
+                    graphics.fill(area);
+                }
+            }
+            case TEXT -> {
+                double lineHeight = (object.getFontSize() != null ? object.getFontSize() : 16) * scale;
+                graphics.setColor(parseColor(object.getTextColor()));
+                graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, TEXT_BAR_ALPHA));
+                if (lineHeight < 1) {
+                    graphics.fill(area);
+                } else {
+                    // One bar per line of text, centred vertically as the client lays it out
+                    double barHeight = Math.max(1, lineHeight * 0.6);
+                    graphics.fill(new Rectangle2D.Double(area.x, area.y + (area.height - barHeight) / 2,
+                            area.width, barHeight));
+                }
+                graphics.setComposite(AlphaComposite.SrcOver);
+            }
+            case YOUTUBE, VIDEO -> {
+                graphics.setColor(VIDEO_BACKGROUND);
+                graphics.fill(area);
+                double mark = Math.min(area.width, area.height) / 3;
+                if (mark >= 2) {
+                    graphics.setColor(VIDEO_MARK);
+                    graphics.fill(new Rectangle2D.Double(area.getCenterX() - mark / 2, area.getCenterY() - mark / 3,
+                            mark, mark * 2 / 3));
+                }
+            }
+            default -> {
+                graphics.setColor(IMAGE_PLACEHOLDER);
+                graphics.fill(area);
+            }
+        }
+    }
+
+    /**
+     * Smallest rendition at least size pixels, else the largest; null if there are none or it cannot be read
+     */
+    private BufferedImage rendition(Map<Integer, String> lodUrls, double size) {
+        if (lodUrls == null || lodUrls.isEmpty()) {
+            return null;
+        }
+        String url = lodUrls.entrySet().stream()
+                .filter(entry -> entry.getKey() >= size)
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(lodUrls.values().stream().reduce((first, second) -> second).orElse(null));
+
+        BoundedLruCache<String, BufferedImage> cache = imageCache();
+        BufferedImage image = cache.get(url);
+        if (image == null) {
+            try (InputStream in = uploadStorage.open(url)) {
+                image = ImageIO.read(in);
+            } catch (IOException | RuntimeException e) {
+                log.debug("Cannot read rendition {} for a tile: {}", url, e.getMessage());
+                return null;
+            }
+            if (image == null) {
+                return null;
+            }
+            cache.put(url, image);
+        }
+        return image;
+    }
+
+    private BoundedLruCache<String, BufferedImage> imageCache() {
+        BoundedLruCache<String, BufferedImage> cache = images;
+        if (cache == null) {
+            synchronized (this) {
+                if (images == null) {
+                    // 4 bytes per pixel once decoded
+                    images = new BoundedLruCache<>(imageCacheSize.toBytes(),
+                            image -> (long) image.getWidth() * image.getHeight() * 4);
+                }
+                cache = images;
+            }
+        }
+        return cache;
+    }
+
+    private static Color parseColor(String color) {
+        if (color != null && color.matches("#[0-9a-fA-F]{6}")) {
+            return new Color(Integer.parseInt(color.substring(1), 16));
+        }
+        return DEFAULT_TEXT;
+    }
+}
@@ -0,0 +1,249 @@
+package com.canvasearth.service;
+
+import com.canvasearth.dto.CanvasObjectResponse;
+import com.canvasearth.event.CanvasObjectChangedEvent;
+import com.canvasearth.spatial.Bounds;
+import com.canvasearth.spatial.TileSpans;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Raster tiles of the canvas for zoomed-out clients (GET /api/tiles/{z}/{x}/{y}).
+ *
+ * At zoom level z a tile of canvas.tiles.pixels pixels covers pixels * 2^z canvas units, and
+ * tile (x, y) starts at (x, y) * that span; a client at scale s uses z = ceil(log2(1 / s)).
+ * Rendered PNGs are kept in an LRU of canvas.tiles.cache-size bytes. A tile draws at most
+ * canvas.tiles.max-objects objects, the largest ones when it holds more (at low zoom the
+ * rest are a few pixels at most), and concurrent requests for a tile that is being rendered
+ * wait for that render instead of starting their own.
+ *
+ * Invalidation is incremental: a committed change bumps the version of every tile its old
+ * and new bounds touch, on every level. Versions live in a fixed array of stripes indexed by
+ * tile hash, so a change costs at most one increment per touched tile and no cache scan;
+ * a cached tile is used only while its stripe still has the version it was rendered at.
+ * ETags carry that version, so clients revalidate without a render. Changes committed by
+ * other instances are applied through CacheInvalidationService.
+ */
+@Service
+@RequiredArgsConstructor
+public class TileService {
+
+    private static final int VERSION_STRIPES = 4096;
+
+    private final CanvasObjectService canvasObjectService;
+    private final TileRenderer tileRenderer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${canvas.tiles.pixels:256}")
+    private int pixels;
+
+    @Value("${canvas.tiles.min-zoom:1}")
+    private int minZoom;
+
+    @Value("${canvas.tiles.max-zoom:12}")
+    private int maxZoom;
+
+    @Value("${canvas.tiles.max-objects:5000}")
+    private int maxObjects;
+
+    @Value("${canvas.tiles.cache-size:64MB}")
+    private DataSize cacheSize;
+
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    // ETags of a previous run never match: versions restart at 0
+    private final String epoch = Long.toHexString(System.currentTimeMillis());
+
+    private volatile BoundedLruCache<String, CachedTile> cache;
+
+    // "z/x/y@version" -> render in progress
+    private final Map<String, CompletableFuture<byte[]>> rendering = new ConcurrentHashMap<>();
+
+    /**
+     * ETag of the current content of a tile, without rendering it
+     */
+    public String etag(int z, long x, long y) {
+        checkZoom(z);
+        return etag(versions.get(stripe(z, x, y)));
+    }
+
+    public Tile getTile(int z, long x, long y) throws IOException {
+        checkZoom(z);
+        String key = z + "/" + x + "/" + y;
+        int stripe = stripe(z, x, y);
+        long version = versions.get(stripe);
+
+        CachedTile cached = cache().get(key);
+        if (cached != null && cached.version == version) {
+            meterRegistry.counter("canvas.tiles.requests", "result", "hit").increment();
+            return new Tile(cached.data, etag(version));
+        }
+
+        // Requests for the same tile at the same version wait for one render
+        String renderKey = key + "@" + version;
+        CompletableFuture<byte[]> render = new CompletableFuture<>();
+        CompletableFuture<byte[]> running = rendering.putIfAbsent(renderKey, render);
+        if (running != null) {
+            meterRegistry.counter("canvas.tiles.requests", "result", "coalesced").increment();
+            return new Tile(await(running), etag(version));
+        }
+
+        try {
+            byte[] data = render(z, x, y);
+            meterRegistry.counter("canvas.tiles.requests", "result", "miss").increment();
+
+            // A change committed while rendering may be missing from this image: serve it, don't keep it
+            if (versions.get(stripe) == version) {
+                cache().put(key, new CachedTile(version, data));
+            }
+            render.complete(data);
+            return new Tile(data, etag(version));
+        } catch (IOException | RuntimeException e) {
+            render.completeExceptionally(e);
+            throw e;
+        } finally {
+            rendering.remove(renderKey, render);
+        }
+    }
+
+    private byte[] render(int z, long x, long y) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Bounds bounds = bounds(z, x, y);
+        List<CanvasObjectResponse> objects = canvasObjectService.getObjectsForTile(bounds, maxObjects);
+        byte[] data = tileRenderer.render(bounds, pixels, objects);
+        sample.stop(meterRegistry.timer("canvas.tiles.render", "zoom", String.valueOf(z)));
+        DistributionSummary.builder("canvas.tiles.objects")
+                .description("Objects drawn per rendered tile (at most canvas.tiles.max-objects)")
+                .register(meterRegistry)
+                .record(objects.size());
+        return data;
+    }
+
+    private static byte[] await(CompletableFuture<byte[]> render) throws IOException {
+        try {
+            return render.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onObjectChanged(CanvasObjectChangedEvent event) {
+        if (event.getPreviousBounds() != null) {
+            invalidate(event.getPreviousBounds());
+        }
+        CanvasObjectResponse object = event.getObject();
+        if (object != null) {
+            invalidate(Bounds.of(object.getPositionX(), object.getPositionY(), object.getWidth(), object.getHeight()));
+        }
+    }
+
+    /**
+     * Bump the version of every tile the area touches, on every level
+     */
+    public void invalidate(Bounds bounds) {
+        for (int z = minZoom; z <= maxZoom; z++) {
+            double span = span(z);
+            long minX = (long) Math.floor(bounds.getMinX() / span);
+            long maxX = (long) Math.floor(bounds.getMaxX() / span);
+            long minY = (long) Math.floor(bounds.getMinY() / span);
+            long maxY = (long) Math.floor(bounds.getMaxY() / span);
+
+            if (TileSpans.count(minX, maxX, minY, maxY) > VERSION_STRIPES) {
+                // Touches more tiles than there are stripes: bumping them all is cheaper
+                invalidateAll();
+                return;
+            }
+            for (long x = minX; x <= maxX; x++) {
+                for (long y = minY; y <= maxY; y++) {
+                    versions.incrementAndGet(stripe(z, x, y));
+                }
+            }
+        }
+    }
+
+    /**
+     * Bump every version, e.g. after changes from other instances may have been missed
+     */
+    public void invalidateAll() {
+        for (int i = 0; i < VERSION_STRIPES; i++) {
+            versions.incrementAndGet(i);
+        }
+    }
+
+    private Bounds bounds(int z, long x, long y) {
+        double span = span(z);
+        return new Bounds(x * span, y * span, (x + 1) * span, (y + 1) * span);
+    }
+
+    private double span(int z) {
+        return pixels * Math.pow(2, z);
+    }
+
+    private void checkZoom(int z) {
+        if (z < minZoom || z > maxZoom) {
+            throw new IllegalArgumentException("Zoom level must be between " + minZoom + " and " + maxZoom);
+        }
+    }
+
+    private String etag(long version) {
+        return "\"" + epoch + "-" + version + "\"";
+    }
+
+    private static int stripe(int z, long x, long y) {
+        long hash = (z * 31L + x) * 1_000_003L + y;
+        return (int) Math.floorMod(hash ^ (hash >>> 32), (long) VERSION_STRIPES);
+    }
+
+    private BoundedLruCache<String, CachedTile> cache() {
+        BoundedLruCache<String, CachedTile> current = cache;
+        if (current == null) {
+            synchronized (this) {
+                if (cache == null) {
+                    cache = new BoundedLruCache<>(cacheSize.toBytes(), tile -> tile.data.length);
+                    Gauge.builder("canvas.tiles.cache.bytes", cache, BoundedLruCache::weight)
+                            .baseUnit("bytes")
+                            .register(meterRegistry);
+                }
+                current = cache;
+            }
+        }
+        return current;
+    }
+
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class Tile {
+        private final byte[] data;
+        private final String etag;
+    }
+
+    @RequiredArgsConstructor
+    private static class CachedTile {
+        private final long version;
+        private final byte[] data;
+    }
+}
@@ -0,0 +1,224 @@
+package com.canvasearth.service;
+
+import com.canvasearth.dto.CanvasObjectResponse;
+import com.canvasearth.dto.FileUploadRequest;
+import com.canvasearth.dto.PresignUploadRequest;
+import com.canvasearth.dto.PresignUploadResponse;
+import com.canvasearth.entity.ObjectType;
+import com.canvasearth.event.ContentReleasedEvent;
+import com.canvasearth.repository.CanvasObjectRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stores an uploaded file and creates its canvas object.
+ *
+ * Files are content-addressed (see UploadStorage): uploading content that is already stored
+ * only inserts the object row. A stored file is reference-counted by the canvas_objects rows
+ * whose content_url points to it and removed when the last of them is deleted or repointed.
+ * Committing a file plus inserting its row, and counting references plus deleting the file,
+ * each run in one transaction holding a PostgreSQL advisory lock on the content URL. The
+ * lock is shared by every replica using the same database (and so the same GCS/S3 bucket),
+ * so a file is never removed while an upload on any node is adding a reference to it.
+ *
+ * The request body is staged before the database transaction starts, so a slow client does
+ * not hold a pooled connection; only the commit (a rename locally, a server-side write to the
+ * bucket otherwise) runs while the lock is held. Large files can bypass the application: presign returns a
+ * direct-to-bucket URL and completeDirectUpload verifies the stored file before creating the object.
+ */
+@Slf4j
+@Service
+public class UploadService {
+
+    private final UploadStorage uploadStorage;
+    private final CanvasObjectService canvasObjectService;
+    private final CanvasObjectRepository canvasObjectRepository;
+    private final RenditionService renditionService;
+    private final MeterRegistry meterRegistry;
+
+    // Own transaction per locked section: the advisory lock is released when it commits,
+    // and deletes run from after-commit listeners, where the original transaction is done
+    private final TransactionTemplate contentTransaction;
+
+    public UploadService(UploadStorage uploadStorage,
+                         CanvasObjectService canvasObjectService,
+                         CanvasObjectRepository canvasObjectRepository,
+                         RenditionService renditionService,
+                         MeterRegistry meterRegistry,
+                         PlatformTransactionManager transactionManager) {
+        this.uploadStorage = uploadStorage;
+        this.canvasObjectService = canvasObjectService;
+        this.canvasObjectRepository = canvasObjectRepository;
+        this.renditionService = renditionService;
+        this.meterRegistry = meterRegistry;
+        this.contentTransaction = new TransactionTemplate(transactionManager);
+        this.contentTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Upload from a raw request body (POST /api/objects/upload with an image/* or video/* body)
+     */
+    public CanvasObjectResponse uploadStream(InputStream body, long contentLength, FileUploadRequest request) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        ObjectType type = ObjectType.valueOf(request.getObjectType());
+
+        UploadStorage.StagedUpload staged = uploadStorage.stage(type, body, contentLength);
+        return createObject(staged, request, type, sample, "stream");
+    }
+
+    /**
+     * Upload from a multipart/form-data request
+     */
+    public CanvasObjectResponse uploadFile(MultipartFile file, FileUploadRequest request) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        ObjectType type = ObjectType.valueOf(request.getObjectType());
+
+        UploadStorage.StagedUpload staged = uploadStorage.stage(type, file);
+        return createObject(staged, request, type, sample, "multipart");
+    }
+
+    /**
+     * Prepare a direct-to-storage upload, so large files do not pass through the application
+     */
+    public PresignUploadResponse presign(PresignUploadRequest request) throws IOException {
+        ObjectType type = ObjectType.valueOf(request.getObjectType());
+        String contentUrl = uploadStorage.directUploadUrl(
+                type, request.getContentType(), request.getSize(), request.getSha256());
+
+        PresignUploadResponse.PresignUploadResponseBuilder response = PresignUploadResponse.builder()
+                .contentUrl(contentUrl);
+        if (uploadStorage.exists(contentUrl)) {
+            return response.exists(true).build();
+        }
+
+        uploadStorage.presign(contentUrl, request.getContentType(), request.getSize(), request.getSha256())
+                .ifPresent(upload -> response
+                        .uploadUrl(upload.getUrl().toString())
+                        .method(upload.getMethod())
+                        .headers(upload.getHeaders())
+                        .expiresAt(upload.getExpiresAt()));
+        return response.build();
+    }
+
+    /**
+     * Create the canvas object for a file uploaded directly to storage
+     */
+    public CanvasObjectResponse completeDirectUpload(String contentUrl, FileUploadRequest request) throws IOException {
+        ObjectType type = ObjectType.valueOf(request.getObjectType());
+
+        CanvasObjectResponse response;
+        try {
+            response = withContentLock(contentUrl, () -> {
+                uploadStorage.verifyDirectUpload(type, contentUrl);
+                return canvasObjectService.createUploadedObject(request, contentUrl);
+            });
+        } catch (RuntimeException e) {
+            // A rejected file is only removed if it is not the content of existing objects
+            deleteIfUnreferenced(contentUrl);
+            throw e;
+        }
+
+        meterRegistry.counter("canvas.upload.direct", "type", type.name()).increment();
+        queueRenditions(type, contentUrl);
+        return response;
+    }
+
+    /**
+     * Remove stored files no object references any more, once the change has committed
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onContentReleased(ContentReleasedEvent event) {
+        event.getContentUrls().forEach(this::deleteIfUnreferenced);
+    }
+
+    private CanvasObjectResponse createObject(UploadStorage.StagedUpload staged, FileUploadRequest request,
+                                              ObjectType type, Timer.Sample sample, String transport) throws IOException {
+        String contentUrl = staged.getContentUrl();
+        AtomicBoolean stored = new AtomicBoolean();
+        CanvasObjectResponse response;
+
+        try {
+            response = withContentLock(contentUrl, () -> {
+                stored.set(uploadStorage.commit(staged));
+                return canvasObjectService.createUploadedObject(request, contentUrl);
+            });
+        } catch (IOException | RuntimeException e) {
+            if (stored.get()) {
+                deleteIfUnreferenced(contentUrl);
+            }
+            throw e;
+        } finally {
+            uploadStorage.discard(staged);
+        }
+
+        String result = stored.get() ? "stored" : "deduplicated";
+        sample.stop(meterRegistry.timer("canvas.upload.duration",
+                "type", type.name(), "transport", transport, "result", result));
+        DistributionSummary.builder("canvas.upload.bytes")
+                .baseUnit("bytes")
+                .tag("type", type.name())
+                .tag("transport", transport)
+                .tag("result", result)
+                .register(meterRegistry)
+                .record(staged.getSize());
+        queueRenditions(type, contentUrl);
+        return response;
+    }
+
+    private void deleteIfUnreferenced(String contentUrl) {
+        contentTransaction.executeWithoutResult(status -> {
+            canvasObjectRepository.lockContentUrl(contentUrl);
+            if (canvasObjectRepository.countByContentUrl(contentUrl) == 0) {
+                uploadStorage.delete(contentUrl);
+                uploadStorage.deleteRenditions(contentUrl, renditionService.getSizes());
+                log.debug("Deleted unreferenced upload {}", contentUrl);
+            }
+        });
+    }
+
+    /**
+     * Downscaled renditions for zoomed-out clients, made after the object is committed
+     */
+    private void queueRenditions(ObjectType type, String contentUrl) {
+        if (type == ObjectType.IMAGE) {
+            renditionService.submit(contentUrl);
+        }
+    }
+
+    /**
+     * Run a storage step and the insert of its reference in one transaction holding the
+     * advisory lock of the content URL
+     */
+    private CanvasObjectResponse withContentLock(String contentUrl, LockedUpload upload) throws IOException {
+        try {
+            return contentTransaction.execute(status -> {
+                canvasObjectRepository.lockContentUrl(contentUrl);
+                try {
+                    return upload.run();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    private interface LockedUpload {
+        CanvasObjectResponse run() throws IOException;
+    }
+}
@@ -0,0 +1,404 @@
+package com.canvasearth.service;
+
+import com.canvasearth.entity.ObjectType;
+import com.canvasearth.exception.InvalidFileException;
+import com.canvasearth.exception.InvalidFileTypeException;
+import com.canvasearth.storage.BlobStore;
+import com.canvasearth.storage.PresignedUpload;
+import com.canvasearth.validator.FileValidator;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed storage for uploaded files in the configured BlobStore.
+ *
+ * A file is stored once per SHA-256 of its content under the key sha256/{first two hex digits}/{hash}.{ext}
+ * and referenced as /uploads/{key}, so its URL never changes meaning and can be cached forever.
+ * Uploads are staged first in canvas.upload.directory/incoming (hashed and validated while
+ * streaming), then committed: a staged file whose content is already stored is discarded,
+ * otherwise it is handed to the BlobStore (a rename for local storage) so a partial or
+ * rejected upload is never visible under its URL. Callers serialize commit and delete per
+ * hash (see UploadService).
+ *
+ * Downscaled renditions of a stored image live next to it under lod/{first two hex digits}/{hash}-{size}.{jpg|png}
+ * (see RenditionService).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UploadStorage {
+
+    public static final String URL_PREFIX = "/uploads/";
+    public static final String CONTENT_URL_PREFIX = URL_PREFIX + "sha256/";
+    public static final String RENDITION_URL_PREFIX = URL_PREFIX + "lod/";
+
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "jpg", "image/jpeg",
+            "png", "image/png",
+            "gif", "image/gif",
+            "webp", "image/webp",
+            "mp4", "video/mp4",
+            "webm", "video/webm");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern STORED_NAME = Pattern.compile("([0-9a-f]{64})\\.([a-z0-9]+)");
+    private static final Pattern RENDITION_NAME = Pattern.compile("([0-9a-f]{64})-([0-9]{1,5})\\.(jpg|png)");
+    private static final List<String> RENDITION_FORMATS = List.of("jpg", "png");
+
+    private final FileValidator fileValidator;
+    private final BlobStore blobStore;
+
+    @Value("${canvas.upload.directory:uploads}")
+    private String directory;
+
+    /**
+     * Stream a raw request body to a staging file, checking its type from the first bytes and
+     * its size as it arrives; the body is not buffered in memory or spooled to another file.
+     *
+     * @param contentLength declared length, or -1 if unknown (chunked)
+     */
+    public StagedUpload stage(ObjectType type, InputStream body, long contentLength) throws IOException {
+        if (contentLength > 0) {
+            fileValidator.checkSize(type, contentLength);
+        }
+
+        MessageDigest digest = sha256();
+        Path temp = incomingFile();
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read = readAtLeast(body, buffer, FileValidator.SNIFF_LENGTH);
+            String extension = fileValidator.detectExtension(type, buffer, Math.max(read, 0));
+
+            long size = 0;
+            while (read != -1) {
+                size += read;
+                fileValidator.checkSize(type, size);
+                digest.update(buffer, 0, read);
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    out.write(chunk);
+                }
+                read = body.read(buffer);
+            }
+            return new StagedUpload(HexFormat.of().formatHex(digest.digest()), extension, size, temp, null);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Stage a multipart file Spring has already spooled. Only its hash is computed here;
+     * the spool file is moved into place on commit, and not at all if the content is already stored.
+     */
+    public StagedUpload stage(ObjectType type, MultipartFile file) throws IOException {
+        fileValidator.checkSize(type, file.getSize());
+
+        MessageDigest digest = sha256();
+        String extension;
+        try (InputStream in = file.getInputStream()) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read = readAtLeast(in, buffer, FileValidator.SNIFF_LENGTH);
+            extension = fileValidator.detectExtension(type, buffer, Math.max(read, 0));
+            while (read != -1) {
+                digest.update(buffer, 0, read);
+                read = in.read(buffer);
+            }
+        }
+        return new StagedUpload(HexFormat.of().formatHex(digest.digest()), extension, file.getSize(), null, file);
+    }
+
+    /**
+     * Make a staged upload available under its content URL.
+     *
+     * @return true if the content was new, false if an identical file was already stored
+     */
+    public boolean commit(StagedUpload upload) throws IOException {
+        String key = keyOf(upload.getHash(), upload.getExtension());
+        Path temp = upload.getTemp();
+        try {
+            if (blobStore.exists(key)) {
+                return false;
+            }
+
+            if (temp == null) {
+                // transferTo lets the container rename its spool file when on the same file system
+                temp = incomingFile();
+                upload.getMultipartFile().transferTo(temp.toAbsolutePath().toFile());
+            }
+            blobStore.put(key, temp, contentTypeOf(upload.getExtension()));
+            return true;
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Content URL of a file a client wants to upload directly, after checking its declared
+     * type and size. The client supplies the hash; BlobStore.presignUpload makes sure the
+     * uploaded bytes match it.
+     */
+    public String directUploadUrl(ObjectType type, String contentType, long size, String sha256) {
+        String extension = extensionOf(contentType);
+        fileValidator.checkAllowed(type, extension);
+        fileValidator.checkSize(type, size);
+        return contentUrl(sha256, extension);
+    }
+
+    /**
+     * @return the presigned upload, or empty if the store does not support direct uploads
+     */
+    public Optional<PresignedUpload> presign(String contentUrl, String contentType, long size, String sha256) {
+        return blobStore.presignUpload(keyOfUrl(contentUrl), contentType, size, HexFormat.of().parseHex(sha256));
+    }
+
+    public boolean exists(String contentUrl) throws IOException {
+        String key = keyOfUrl(contentUrl);
+        return key != null && blobStore.exists(key);
+    }
+
+    /**
+     * Check a file a client uploaded directly to storage: it must exist, be within the size
+     * limit and have the format its URL claims. The file is never deleted here, since the URL
+     * may be one that existing objects already reference (see UploadService.completeDirectUpload).
+     */
+    public void verifyDirectUpload(ObjectType type, String contentUrl) throws IOException {
+        String key = keyOfUrl(contentUrl);
+        long size = key == null ? -1 : blobStore.size(key);
+        if (size < 0) {
+            throw new InvalidFileException("업로드된 파일을 찾을 수 없습니다");
+        }
+
+        fileValidator.checkSize(type, size);
+        byte[] head = blobStore.readHead(key, FileValidator.SNIFF_LENGTH);
+        String extension = fileValidator.detectExtension(type, head, head.length);
+        if (!key.endsWith("." + extension)) {
+            throw new InvalidFileTypeException(type.name(), "파일 내용과 확장자가 일치하지 않습니다");
+        }
+    }
+
+    /**
+     * Read a stored file or rendition by its URL; the caller closes the stream
+     */
+    public InputStream open(String url) throws IOException {
+        String key = keyOfUrl(url);
+        if (key == null) {
+            key = keyOfRenditionUrl(url);
+        }
+        if (key == null) {
+            throw new IllegalArgumentException("Not a content-addressed upload: " + url);
+        }
+        return blobStore.open(key);
+    }
+
+    /**
+     * Store an encoded rendition of a stored file, longest side size pixels
+     */
+    public void storeRendition(String contentUrl, int size, String format, byte[] data) throws IOException {
+        Path temp = incomingFile();
+        try {
+            Files.write(temp, data, StandardOpenOption.CREATE_NEW);
+            blobStore.put(renditionKey(hashOf(contentUrl), size, format), temp, contentTypeOf(format));
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Remove the renditions of a stored file (any format; missing ones are ignored)
+     */
+    public void deleteRenditions(String contentUrl, Collection<Integer> sizes) {
+        String hash = hashOf(contentUrl);
+        if (hash == null) {
+            return;
+        }
+        for (int size : sizes) {
+            for (String format : RENDITION_FORMATS) {
+                try {
+                    blobStore.delete(renditionKey(hash, size, format));
+                } catch (IOException e) {
+                    log.warn("Failed to delete rendition {}px of {}: {}", size, contentUrl, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the staging file of an upload that is not committed
+     */
+    public void discard(StagedUpload upload) {
+        deleteQuietly(upload.getTemp());
+    }
+
+    /**
+     * Remove a stored file by its content URL (no-op for other URLs)
+     */
+    public void delete(String contentUrl) {
+        String key = keyOfUrl(contentUrl);
+        if (key == null) {
+            return;
+        }
+        try {
+            blobStore.delete(key);
+        } catch (IOException e) {
+            log.warn("Failed to delete unreferenced upload {}: {}", key, e.getMessage());
+        }
+    }
+
+    public static boolean isContentAddressed(String contentUrl) {
+        return contentUrl != null && contentUrl.startsWith(CONTENT_URL_PREFIX);
+    }
+
+    public static String contentUrl(String hash, String extension) {
+        return URL_PREFIX + keyOf(hash, extension);
+    }
+
+    public static String keyOf(String hash, String extension) {
+        return "sha256/" + hash.substring(0, 2) + "/" + hash + "." + extension;
+    }
+
+    /**
+     * Storage key of a content URL, or null if it is not a well-formed content-addressed URL
+     */
+    public static String keyOfUrl(String contentUrl) {
+        if (!isContentAddressed(contentUrl)) {
+            return null;
+        }
+        Matcher matcher = STORED_NAME.matcher(contentUrl.substring(contentUrl.lastIndexOf('/') + 1));
+        return matcher.matches() ? keyOf(matcher.group(1), matcher.group(2)) : null;
+    }
+
+    /**
+     * Rendition URLs by size for the lod_sizes/lod_format columns, or null if there are none
+     */
+    public static Map<Integer, String> renditionUrls(String contentUrl, String sizes, String format) {
+        String hash = hashOf(contentUrl);
+        if (hash == null || sizes == null || sizes.isEmpty() || format == null) {
+            return null;
+        }
+        Map<Integer, String> urls = new TreeMap<>();
+        for (String size : sizes.split(",")) {
+            int pixels = Integer.parseInt(size);
+            urls.put(pixels, URL_PREFIX + renditionKey(hash, pixels, format));
+        }
+        return urls;
+    }
+
+    public static String renditionKey(String hash, int size, String format) {
+        return "lod/" + hash.substring(0, 2) + "/" + hash + "-" + size + "." + format;
+    }
+
+    /**
+     * Storage key of a rendition URL, or null if it is not a well-formed rendition URL
+     */
+    public static String keyOfRenditionUrl(String url) {
+        if (url == null || !url.startsWith(RENDITION_URL_PREFIX)) {
+            return null;
+        }
+        Matcher matcher = RENDITION_NAME.matcher(url.substring(url.lastIndexOf('/') + 1));
+        return matcher.matches()
+                ? renditionKey(matcher.group(1), Integer.parseInt(matcher.group(2)), matcher.group(3))
+                : null;
+    }
+
+    public static String contentTypeOf(String extension) {
+        return CONTENT_TYPES.getOrDefault(extension, "application/octet-stream");
+    }
+
+    private static String hashOf(String contentUrl) {
+        String key = keyOfUrl(contentUrl);
+        return key == null ? null : key.substring(key.lastIndexOf('/') + 1, key.lastIndexOf('.'));
+    }
+
+    private static String extensionOf(String contentType) {
+        return CONTENT_TYPES.entrySet().stream()
+                .filter(entry -> entry.getValue().equalsIgnoreCase(contentType))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElseThrow(() -> new InvalidFileTypeException(contentType, "지원하지 않는 Content-Type입니다"));
+    }
+
+    private Path incomingFile() throws IOException {
+        // Same file system as the final location, so the commit is a rename
+        Path incoming = Paths.get(directory).resolve("incoming");
+        Files.createDirectories(incoming);
+        return incoming.resolve(UUID.randomUUID() + ".part");
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete upload file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Fill buffer with at least min bytes unless the stream ends first.
+     *
+     * @return bytes read, or -1 if the stream was empty
+     */
+    private static int readAtLeast(InputStream in, byte[] buffer, int min) throws IOException {
+        int total = 0;
+        while (total < min) {
+            int read = in.read(buffer, total, buffer.length - total);
+            if (read == -1) {
+                return total == 0 ? -1 : total;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class StagedUpload {
+        private final String hash;
+        private final String extension;
+        private final long size;
+
+        // Exactly one of these holds the content until commit
+        private final Path temp;
+        private final MultipartFile multipartFile;
+
+        public String getContentUrl() {
+            return contentUrl(hash, extension);
+        }
+    }
+}
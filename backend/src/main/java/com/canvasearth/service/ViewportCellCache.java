@@ -0,0 +1,252 @@
+package com.canvasearth.service;
+
+import com.canvasearth.dto.CanvasObjectResponse;
+import com.canvasearth.event.CanvasObjectChangedEvent;
+import com.canvasearth.spatial.Bounds;
+import com.canvasearth.spatial.TileSpans;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Pre-encoded JSON for viewport queries aligned to canvas.viewport.cell-cache.cell-size.
+ *
+ * The frontend snaps viewports to the same grid, so the backend sees the same cells over and
+ * over. For each cell the objects intersecting it are kept as JSON fragments, one per object;
+ * a viewport response is assembled from the fragments of the cells it covers (objects in
+ * several cells once, in viewport order) without a query or serialization.
+ *
+ * Invalidation follows TileService: a committed change bumps the version stripe of every
+ * cell its old and new bounds touch, and a cell is used only while its stripe has the version
+ * it was built at. Each cell also keeps the canvas revision read before it was built; the
+ * response carries the oldest of them, so delta sync from it re-sends rather than misses
+ * changes. Cells expire after canvas.viewport.cell-cache.expire-after-write to keep that
+ * revision recent.
+ */
+@Service
+public class ViewportCellCache {
+
+    private static final int VERSION_STRIPES = 4096;
+    private static final Comparator<Fragment> VIEWPORT_ORDER =
+            Comparator.comparing((Fragment fragment) -> fragment.zIndex)
+                    .thenComparing(fragment -> fragment.createdAt)
+                    .thenComparingLong(fragment -> fragment.id);
+
+    private final CanvasObjectService canvasObjectService;
+    private final CanvasSyncService canvasSyncService;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final double cellSize;
+    private final int maxCellsPerRequest;
+
+    private final Cache<String, Cell> cells;
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    public ViewportCellCache(
+            CanvasObjectService canvasObjectService,
+            CanvasSyncService canvasSyncService,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${canvas.viewport.cell-cache.enabled:true}") boolean enabled,
+            @Value("${canvas.viewport.cell-cache.cell-size:1000}") double cellSize,
+            @Value("${canvas.viewport.cell-cache.max-cells-per-request:256}") int maxCellsPerRequest,
+            @Value("${canvas.viewport.cell-cache.max-size:64MB}") DataSize maxSize,
+            @Value("${canvas.viewport.cell-cache.expire-after-write:PT5M}") Duration expireAfterWrite) {
+        this.canvasObjectService = canvasObjectService;
+        this.canvasSyncService = canvasSyncService;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.cellSize = cellSize;
+        this.maxCellsPerRequest = maxCellsPerRequest;
+        this.cells = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String key, Cell cell) -> cell.bytes)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cells, "canvas.viewport.cells");
+    }
+
+    /**
+     * JSON array of the objects in the viewport, or null if the viewport is not aligned to
+     * the cell grid or covers too many cells (the caller queries as usual)
+     */
+    public Viewport getViewport(double minX, double minY, double maxX, double maxY) {
+        if (!enabled || !aligned(minX) || !aligned(minY) || !aligned(maxX) || !aligned(maxY)
+                || maxX <= minX || maxY <= minY) {
+            return null;
+        }
+        long minCx = cellCoord(minX);
+        long minCy = cellCoord(minY);
+        long maxCx = cellCoord(maxX) - 1;
+        long maxCy = cellCoord(maxY) - 1;
+        if (TileSpans.count(minCx, maxCx, minCy, maxCy) > maxCellsPerRequest) {
+            return null;
+        }
+
+        // Read once, before any cell missing from the cache is built
+        Long currentRevision = null;
+        long revision = Long.MAX_VALUE;
+        List<Fragment> fragments = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (long cx = minCx; cx <= maxCx; cx++) {
+            for (long cy = minCy; cy <= maxCy; cy++) {
+                int stripe = stripe(cx, cy);
+                long version = versions.get(stripe);
+                String key = cx + ":" + cy;
+                Cell cell = cells.getIfPresent(key);
+                if (cell == null || cell.version != version) {
+                    if (currentRevision == null) {
+                        currentRevision = canvasSyncService.currentRevision();
+                    }
+                    cell = build(cx, cy, version, currentRevision);
+                    // A change committed while building may be missing: use the cell, don't keep it
+                    if (versions.get(stripe) == version) {
+                        cells.put(key, cell);
+                    }
+                }
+                revision = Math.min(revision, cell.revision);
+                for (Fragment fragment : cell.fragments) {
+                    if (seen.add(fragment.id)) {
+                        fragments.add(fragment);
+                    }
+                }
+            }
+        }
+
+        fragments.sort(VIEWPORT_ORDER);
+        int length = 2 + fragments.size();
+        for (Fragment fragment : fragments) {
+            length += fragment.json.length;
+        }
+        ByteArrayOutputStream json = new ByteArrayOutputStream(length);
+        json.write('[');
+        for (int i = 0; i < fragments.size(); i++) {
+            if (i > 0) {
+                json.write(',');
+            }
+            json.writeBytes(fragments.get(i).json);
+        }
+        json.write(']');
+        return new Viewport(json.toByteArray(), revision);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onObjectChanged(CanvasObjectChangedEvent event) {
+        if (event.getPreviousBounds() != null) {
+            invalidate(event.getPreviousBounds());
+        }
+        CanvasObjectResponse object = event.getObject();
+        if (object != null) {
+            invalidate(Bounds.of(object.getPositionX(), object.getPositionY(), object.getWidth(), object.getHeight()));
+        }
+    }
+
+    /**
+     * Drop the cells touched by an area (also used for changes made by other instances)
+     */
+    public void invalidate(Bounds bounds) {
+        long minCx = cellCoord(bounds.getMinX());
+        long maxCx = cellCoord(bounds.getMaxX());
+        long minCy = cellCoord(bounds.getMinY());
+        long maxCy = cellCoord(bounds.getMaxY());
+        // Edges are inclusive: a box ending on a grid line also touches the cell before it
+        if (aligned(bounds.getMinX()) && minCx > Long.MIN_VALUE) {
+            minCx--;
+        }
+        if (aligned(bounds.getMinY()) && minCy > Long.MIN_VALUE) {
+            minCy--;
+        }
+
+        if (TileSpans.count(minCx, maxCx, minCy, maxCy) > VERSION_STRIPES) {
+            invalidateAll();
+            return;
+        }
+        for (long cx = minCx; cx <= maxCx; cx++) {
+            for (long cy = minCy; cy <= maxCy; cy++) {
+                versions.incrementAndGet(stripe(cx, cy));
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < VERSION_STRIPES; i++) {
+            versions.incrementAndGet(i);
+        }
+    }
+
+    private Cell build(long cx, long cy, long version, long revision) {
+        List<CanvasObjectResponse> objects = canvasObjectService.getObjectsInViewport(
+                cx * cellSize, cy * cellSize, (cx + 1) * cellSize, (cy + 1) * cellSize);
+        List<Fragment> fragments = new ArrayList<>(objects.size());
+        int bytes = 0;
+        for (CanvasObjectResponse object : objects) {
+            byte[] json;
+            try {
+                json = objectMapper.writeValueAsBytes(object);
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+            fragments.add(new Fragment(object.getId(), object.getZIndex(), object.getCreatedAt(), json));
+            bytes += json.length;
+        }
+        return new Cell(version, revision, fragments, bytes);
+    }
+
+    private boolean aligned(double value) {
+        return value % cellSize == 0;
+    }
+
+    private long cellCoord(double value) {
+        return (long) Math.floor(value / cellSize);
+    }
+
+    private static int stripe(long cx, long cy) {
+        long hash = cx * 1_000_003L + cy;
+        return (int) Math.floorMod(hash ^ (hash >>> 32), (long) VERSION_STRIPES);
+    }
+
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class Viewport {
+        private final byte[] json;
+        private final long revision;
+    }
+
+    @RequiredArgsConstructor
+    private static class Cell {
+        private final long version;
+        private final long revision;
+        private final List<Fragment> fragments;
+        private final int bytes;
+    }
+
+    @RequiredArgsConstructor
+    private static class Fragment {
+        private final long id;
+        private final int zIndex;
+        private final LocalDateTime createdAt;
+        private final byte[] json;
+    }
+}
@@ -0,0 +1,171 @@
+package com.canvasearth.service;
+
+import com.canvasearth.dto.CanvasObjectResponse;
+import com.canvasearth.dto.CanvasObjectUpdateRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory buffer of position/size changes that have been broadcast but not yet persisted.
+ *
+ * High-frequency drag updates are merged per object id here and written to the database
+ * in one batch by WriteBehindFlusher, so only the latest geometry of each object is persisted.
+ * Reads overlay pending changes (see overlay) so callers never observe an older position
+ * than the one that was broadcast.
+ */
+@Component
+public class WriteBehindBuffer {
+
+    private final ConcurrentHashMap<Long, CanvasObjectUpdateRequest> pending = new ConcurrentHashMap<>();
+
+    // Drained by a flush whose transaction has not completed yet; still overlaid on reads
+    private final ConcurrentHashMap<Long, CanvasObjectUpdateRequest> inFlight = new ConcurrentHashMap<>();
+
+    @Value("${canvas.write-behind.enabled:true}")
+    private boolean enabled;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Only geometry changes are buffered; anything else is written through immediately.
+     */
+    public static boolean isBufferable(CanvasObjectUpdateRequest request) {
+        return request.getZIndex() == null
+                && request.getContentUrl() == null
+                && request.getFontSize() == null
+                && request.getFontWeight() == null
+                && request.getTextColor() == null;
+    }
+
+    /**
+     * Merge a change into the pending entry for the object (newer non-null fields win).
+     *
+     * @return the merged pending change
+     */
+    public CanvasObjectUpdateRequest add(Long id, CanvasObjectUpdateRequest request) {
+        return pending.merge(id, copy(request), WriteBehindBuffer::merge);
+    }
+
+    /**
+     * Remove and return the buffered change for one object (null if none), for a direct write
+     * that persists it underneath its own change. This includes a change drained by a flush
+     * that has not completed: the flush no longer writes or restores it (see isFlushing), so
+     * an older drag cannot land on top of the direct write.
+     */
+    public CanvasObjectUpdateRequest drain(Long id) {
+        CanvasObjectUpdateRequest flushing = inFlight.remove(id);
+        CanvasObjectUpdateRequest buffered = pending.remove(id);
+        if (flushing == null) {
+            return buffered;
+        }
+        return buffered == null ? flushing : merge(flushing, buffered);
+    }
+
+    /**
+     * Remove and return all pending changes for a flush.
+     * They stay visible to overlay() until completeFlush() or restore() is called.
+     */
+    public Map<Long, CanvasObjectUpdateRequest> drainAll() {
+        Map<Long, CanvasObjectUpdateRequest> drained = new HashMap<>();
+        for (Long id : pending.keySet()) {
+            CanvasObjectUpdateRequest request = pending.remove(id);
+            if (request != null) {
+                inFlight.put(id, request);
+                drained.put(id, request);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Whether a change returned by drainAll() is still owned by the flush, i.e. was not
+     * taken over by drain(id) for a direct write.
+     */
+    public boolean isFlushing(Long id, CanvasObjectUpdateRequest request) {
+        return inFlight.get(id) == request;
+    }
+
+    /**
+     * The flush of these changes has committed; reads can rely on the database again.
+     */
+    public void completeFlush(Map<Long, CanvasObjectUpdateRequest> drained) {
+        drained.forEach(inFlight::remove);
+    }
+
+    /**
+     * The flush of these changes failed: put back the ones it still owns.
+     */
+    public void abortFlush(Map<Long, CanvasObjectUpdateRequest> drained) {
+        drained.forEach((id, request) -> {
+            if (inFlight.remove(id, request)) {
+                pending.merge(id, request, (newer, older) -> merge(older, newer));
+            }
+        });
+    }
+
+    /**
+     * Put back changes taken by drain(id) whose direct write failed.
+     * Changes buffered since the drain are newer and win.
+     */
+    public void restore(Map<Long, CanvasObjectUpdateRequest> drained) {
+        drained.forEach((id, request) -> pending.merge(id, request, (newer, older) -> merge(older, newer)));
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * Response with the pending change for the object applied (the same instance if none).
+     */
+    public CanvasObjectResponse overlay(CanvasObjectResponse object) {
+        CanvasObjectUpdateRequest flushing = inFlight.get(object.getId());
+        CanvasObjectUpdateRequest buffered = pending.get(object.getId());
+        if (flushing == null && buffered == null) {
+            return object;
+        }
+
+        CanvasObjectUpdateRequest request = flushing == null ? buffered
+                : buffered == null ? flushing
+                : merge(flushing, buffered);
+
+        return object.toBuilder()
+                .positionX(request.getPositionX() != null ? request.getPositionX() : object.getPositionX())
+                .positionY(request.getPositionY() != null ? request.getPositionY() : object.getPositionY())
+                .width(request.getWidth() != null ? request.getWidth() : object.getWidth())
+                .height(request.getHeight() != null ? request.getHeight() : object.getHeight())
+                .build();
+    }
+
+    private static CanvasObjectUpdateRequest merge(CanvasObjectUpdateRequest older, CanvasObjectUpdateRequest newer) {
+        CanvasObjectUpdateRequest merged = copy(older);
+        if (newer.getPositionX() != null) {
+            merged.setPositionX(newer.getPositionX());
+        }
+        if (newer.getPositionY() != null) {
+            merged.setPositionY(newer.getPositionY());
+        }
+        if (newer.getWidth() != null) {
+            merged.setWidth(newer.getWidth());
+        }
+        if (newer.getHeight() != null) {
+            merged.setHeight(newer.getHeight());
+        }
+        return merged;
+    }
+
+    private static CanvasObjectUpdateRequest copy(CanvasObjectUpdateRequest request) {
+        return CanvasObjectUpdateRequest.builder()
+                .positionX(request.getPositionX())
+                .positionY(request.getPositionY())
+                .width(request.getWidth())
+                .height(request.getHeight())
+                .build();
+    }
+}
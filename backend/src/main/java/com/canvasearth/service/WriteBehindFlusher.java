@@ -0,0 +1,73 @@
+package com.canvasearth.service;
+
+import com.canvasearth.dto.CanvasObjectUpdateRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Periodically persists buffered drag updates, and once more on shutdown.
+ *
+ * Implemented as a SmartLifecycle in a phase below the web server's: lifecycles stop in
+ * descending phase order, so stop() runs after graceful shutdown has let in-flight requests
+ * finish (and buffer their last updates) and the server has stopped, but before the
+ * DataSource and EntityManagerFactory are destroyed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WriteBehindFlusher implements SmartLifecycle {
+
+    private final CanvasObjectService canvasObjectService;
+    private final WriteBehindBuffer writeBehindBuffer;
+
+    private volatile boolean running;
+
+    @Scheduled(fixedDelayString = "${canvas.write-behind.flush-interval:PT0.5S}")
+    public void flush() {
+        if (writeBehindBuffer.size() == 0) {
+            return;
+        }
+
+        Map<Long, CanvasObjectUpdateRequest> drained = writeBehindBuffer.drainAll();
+        try {
+            canvasObjectService.applyBufferedUpdates(drained);
+            writeBehindBuffer.completeFlush(drained);
+        } catch (RuntimeException e) {
+            // Keep the changes for the next attempt
+            writeBehindBuffer.abortFlush(drained);
+            throw e;
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Failed to flush {} buffered updates on shutdown", writeBehindBuffer.size(), e);
+        }
+        running = false;
+    }
+
+    @Override
+    public int getPhase() {
+        // Graceful shutdown stops at SMART_LIFECYCLE_PHASE, the web server 1024 below it
+        return WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE - 2048;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
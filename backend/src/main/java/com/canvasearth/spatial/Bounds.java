@@ -0,0 +1,33 @@
+package com.canvasearth.spatial;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Axis-aligned bounding box in canvas coordinates.
+ * Edges are inclusive, matching the viewport query semantics.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class Bounds {
+
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+
+    public static Bounds of(Double positionX, Double positionY, Double width, Double height) {
+        return new Bounds(positionX, positionY, positionX + width, positionY + height);
+    }
+
+    public boolean intersects(double otherMinX, double otherMinY, double otherMaxX, double otherMaxY) {
+        return maxX >= otherMinX && minX <= otherMaxX
+                && maxY >= otherMinY && minY <= otherMaxY;
+    }
+
+    public boolean intersects(Bounds other) {
+        return intersects(other.minX, other.minY, other.maxX, other.maxY);
+    }
+}
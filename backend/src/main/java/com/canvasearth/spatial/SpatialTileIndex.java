@@ -0,0 +1,312 @@
+package com.canvasearth.spatial;
+
+import com.canvasearth.dto.CanvasObjectResponse;
+import com.canvasearth.event.CanvasObjectChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Resident spatial index of canvas objects backed by a fixed-size tile grid.
+ *
+ * Each object is registered in every tile its bounding box touches, so a viewport
+ * lookup only visits the tiles it covers instead of scanning the table.
+ * Objects spanning more than maxTilesPerObject tiles are kept in a separate list
+ * and checked linearly, which keeps huge objects from flooding the grid.
+ *
+ * The index is rebuilt from the database at startup (see CanvasObjectService)
+ * and kept current from committed CanvasObjectChangedEvents. Events can arrive out of
+ * order (deferred updates are published outside any transaction), so a put older than
+ * the indexed revision, or of a recently deleted id, is ignored.
+ */
+@Slf4j
+@Component
+public class SpatialTileIndex {
+
+    public static final Comparator<CanvasObjectResponse> VIEWPORT_ORDER =
+            Comparator.comparing(CanvasObjectResponse::getZIndex)
+                    .thenComparing(CanvasObjectResponse::getCreatedAt)
+                    .thenComparing(CanvasObjectResponse::getId);
+
+    // Deleted ids remembered to reject late puts; ids are never reused
+    private static final int MAX_TOMBSTONES = 10_000;
+
+    private final double tileSize;
+    private final int maxTilesPerObject;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, CanvasObjectResponse> objects = new HashMap<>();
+    private final Map<Long, Set<Long>> tiles = new HashMap<>();
+    private final Set<Long> oversized = new HashSet<>();
+    private final Set<Long> tombstones = Collections.newSetFromMap(new LinkedHashMap<Long, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > MAX_TOMBSTONES;
+        }
+    });
+
+    // Ids changed by events while a rebuild is in progress; the rebuild must not overwrite them
+    private final Set<Long> touchedDuringRebuild = new HashSet<>();
+    private boolean rebuilding;
+    private volatile boolean ready;
+
+    public SpatialTileIndex(
+            @Value("${canvas.viewport.index.tile-size:1000}") double tileSize,
+            @Value("${canvas.viewport.index.max-tiles-per-object:256}") int maxTilesPerObject) {
+        this.tileSize = tileSize;
+        this.maxTilesPerObject = maxTilesPerObject;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return objects.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find all objects whose bounding box intersects the viewport,
+     * ordered by z-index and creation time (same order as the database query).
+     */
+    public List<CanvasObjectResponse> query(double minX, double minY, double maxX, double maxY) {
+        List<CanvasObjectResponse> result = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            long minTx = tileCoord(minX);
+            long maxTx = tileCoord(maxX);
+            long minTy = tileCoord(minY);
+            long maxTy = tileCoord(maxY);
+            double tileCount = TileSpans.count(minTx, maxTx, minTy, maxTy);
+
+            if (tileCount > Math.max(tiles.size(), 1)) {
+                // Viewport covers more tiles than are populated: a linear scan is cheaper
+                for (CanvasObjectResponse object : objects.values()) {
+                    if (intersects(object, minX, minY, maxX, maxY)) {
+                        result.add(object);
+                    }
+                }
+            } else {
+                Set<Long> seen = new HashSet<>();
+                for (long tx = minTx; tx <= maxTx; tx++) {
+                    for (long ty = minTy; ty <= maxTy; ty++) {
+                        Set<Long> ids = tiles.get(tileKey(tx, ty));
+                        if (ids == null) {
+                            continue;
+                        }
+                        for (Long id : ids) {
+                            if (seen.add(id)) {
+                                CanvasObjectResponse object = objects.get(id);
+                                if (intersects(object, minX, minY, maxX, maxY)) {
+                                    result.add(object);
+                                }
+                            }
+                        }
+                    }
+                }
+                for (Long id : oversized) {
+                    CanvasObjectResponse object = objects.get(id);
+                    if (intersects(object, minX, minY, maxX, maxY)) {
+                        result.add(object);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        result.sort(VIEWPORT_ORDER);
+        return result;
+    }
+
+    public CanvasObjectResponse get(Long id) {
+        lock.readLock().lock();
+        try {
+            return objects.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Index the object, unless the index already holds a newer revision of it or it was deleted
+     */
+    public void put(CanvasObjectResponse object) {
+        lock.writeLock().lock();
+        try {
+            if (isStale(object)) {
+                return;
+            }
+            if (rebuilding) {
+                touchedDuringRebuild.add(object.getId());
+            }
+            putInternal(object);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            if (rebuilding) {
+                touchedDuringRebuild.add(id);
+            }
+            tombstones.add(id);
+            removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Start a rebuild. Lookups keep being served from the database until finishRebuild().
+     */
+    public void beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            rebuilding = true;
+            touchedDuringRebuild.clear();
+            objects.clear();
+            tiles.clear();
+            oversized.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Load a page of objects read from the database during a rebuild.
+     * Objects changed by events since the rebuild started are skipped, since their
+     * in-memory state is newer than the page.
+     */
+    public void load(Collection<CanvasObjectResponse> page) {
+        lock.writeLock().lock();
+        try {
+            for (CanvasObjectResponse object : page) {
+                if (!touchedDuringRebuild.contains(object.getId())) {
+                    putInternal(object);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void finishRebuild() {
+        lock.writeLock().lock();
+        try {
+            rebuilding = false;
+            touchedDuringRebuild.clear();
+            ready = true;
+            log.info("Spatial tile index ready: {} objects in {} tiles ({} oversized)",
+                    objects.size(), tiles.size(), oversized.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Before listeners that read the index for the change (TileService)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onObjectChanged(CanvasObjectChangedEvent event) {
+        if (event.getType() == CanvasObjectChangedEvent.Type.DELETE) {
+            remove(event.getObjectId());
+        } else {
+            put(event.getObject());
+        }
+    }
+
+    private boolean isStale(CanvasObjectResponse object) {
+        if (tombstones.contains(object.getId())) {
+            return true;
+        }
+        CanvasObjectResponse existing = objects.get(object.getId());
+        return existing != null && existing.getRevision() != null && object.getRevision() != null
+                && object.getRevision() < existing.getRevision();
+    }
+
+    private void putInternal(CanvasObjectResponse object) {
+        removeInternal(object.getId());
+        objects.put(object.getId(), object);
+
+        long minTx = tileCoord(object.getPositionX());
+        long maxTx = tileCoord(object.getPositionX() + object.getWidth());
+        long minTy = tileCoord(object.getPositionY());
+        long maxTy = tileCoord(object.getPositionY() + object.getHeight());
+
+        if (TileSpans.count(minTx, maxTx, minTy, maxTy) > maxTilesPerObject) {
+            oversized.add(object.getId());
+            return;
+        }
+        for (long tx = minTx; tx <= maxTx; tx++) {
+            for (long ty = minTy; ty <= maxTy; ty++) {
+                tiles.computeIfAbsent(tileKey(tx, ty), key -> new HashSet<>()).add(object.getId());
+            }
+        }
+    }
+
+    private void removeInternal(Long id) {
+        CanvasObjectResponse existing = objects.remove(id);
+        if (existing == null || oversized.remove(id)) {
+            return;
+        }
+
+        long minTx = tileCoord(existing.getPositionX());
+        long maxTx = tileCoord(existing.getPositionX() + existing.getWidth());
+        long minTy = tileCoord(existing.getPositionY());
+        long maxTy = tileCoord(existing.getPositionY() + existing.getHeight());
+
+        for (long tx = minTx; tx <= maxTx; tx++) {
+            for (long ty = minTy; ty <= maxTy; ty++) {
+                long key = tileKey(tx, ty);
+                Set<Long> ids = tiles.get(key);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        tiles.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private long tileCoord(double value) {
+        return (long) Math.floor(value / tileSize);
+    }
+
+    private static long tileKey(long tx, long ty) {
+        return (tx << 32) | (ty & 0xffffffffL);
+    }
+
+    private static boolean intersects(CanvasObjectResponse object,
+                                      double minX, double minY, double maxX, double maxY) {
+        return object.getPositionX() + object.getWidth() >= minX
+                && object.getPositionX() <= maxX
+                && object.getPositionY() + object.getHeight() >= minY
+                && object.getPositionY() <= maxY;
+    }
+}
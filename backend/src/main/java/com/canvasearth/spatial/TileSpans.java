@@ -0,0 +1,22 @@
+package com.canvasearth.spatial;
+
+/**
+ * Tile-count arithmetic shared by the tile grids (spatial index, broadcast topics,
+ * tile versions, viewport cells).
+ *
+ * Tile coordinates come from (long) Math.floor(value / size), which saturates to
+ * Long.MIN_VALUE / Long.MAX_VALUE for huge or infinite coordinates. The span product
+ * is computed in double so it cannot wrap into a small or negative count.
+ */
+public final class TileSpans {
+
+    private TileSpans() {
+    }
+
+    /**
+     * Number of tiles in the inclusive range [minTx, maxTx] x [minTy, maxTy]
+     */
+    public static double count(long minTx, long maxTx, long minTy, long maxTy) {
+        return ((double) maxTx - minTx + 1) * ((double) maxTy - minTy + 1);
+    }
+}
@@ -0,0 +1,21 @@
+package com.canvasearth.spatial;
+
+/**
+ * Where viewport queries are answered from (canvas.viewport.source).
+ */
+public enum ViewportSource {
+    /**
+     * Range query on position columns (CanvasObjectRepository.findObjectsInViewport)
+     */
+    DATABASE,
+
+    /**
+     * Bounding-box intersection on the GiST-indexed bbox column (CanvasObjectRepository.findObjectsInViewportPostgis)
+     */
+    POSTGIS,
+
+    /**
+     * Resident tile grid (SpatialTileIndex), falls back to DATABASE until the index is loaded
+     */
+    MEMORY_INDEX
+}
@@ -0,0 +1,56 @@
+package com.canvasearth.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Storage for uploaded files, addressed by key (e.g. sha256/ab/{hash}.png).
+ * Selected by canvas.storage.type (see StorageConfig).
+ *
+ * Implementations never overwrite a key with different content: keys are content hashes,
+ * so concurrent puts of the same key store the same bytes.
+ */
+public interface BlobStore {
+
+    boolean exists(String key) throws IOException;
+
+    /**
+     * Size of a stored blob in bytes, or -1 if there is none
+     */
+    long size(String key) throws IOException;
+
+    /**
+     * Store a local file under key. The file may be moved rather than copied,
+     * so callers must not use it afterwards.
+     */
+    void put(String key, Path file, String contentType) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    /**
+     * Read a stored blob; the caller closes the stream
+     */
+    InputStream open(String key) throws IOException;
+
+    /**
+     * First bytes of a stored blob (at most length), to check the type of a direct upload
+     */
+    byte[] readHead(String key, int length) throws IOException;
+
+    /**
+     * Where clients read the blob from, if not from this application (public bucket URL,
+     * CDN or presigned GET). Empty for local storage, served under /uploads/.
+     */
+    Optional<URI> readUrl(String key);
+
+    /**
+     * A URL the client can upload the blob to directly, bypassing the application.
+     * Empty if the store cannot guarantee the uploaded content matches the key's hash.
+     *
+     * @param sha256 SHA-256 of the content the client will send
+     */
+    Optional<PresignedUpload> presignUpload(String key, String contentType, long size, byte[] sha256);
+}
@@ -0,0 +1,130 @@
+package com.canvasearth.storage;
+
+import com.google.cloud.ReadChannel;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blobs in a Google Cloud Storage bucket (gcp.storage.*).
+ *
+ * Files are sent as resumable uploads in chunks of chunkSize bytes. Direct uploads are not
+ * offered: GCS signed URLs can only enforce MD5/CRC32C of the body, not the SHA-256 the key
+ * is derived from, so clients always upload through the application.
+ */
+public class GcsBlobStore implements BlobStore {
+
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final int PRECONDITION_FAILED = 412;
+
+    private final Storage storage;
+    private final String bucket;
+    private final String publicBaseUrl;
+    private final Duration presignTtl;
+    private final int chunkSize;
+
+    public GcsBlobStore(Storage storage, String bucket, String publicBaseUrl, Duration presignTtl, int chunkSize) {
+        this.storage = storage;
+        this.bucket = bucket;
+        this.publicBaseUrl = publicBaseUrl;
+        this.presignTtl = presignTtl;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        return size(key) >= 0;
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        try {
+            Blob blob = storage.get(BlobId.of(bucket, key));
+            return blob == null ? -1 : blob.getSize();
+        } catch (StorageException e) {
+            throw new IOException("Failed to read " + key + " from bucket " + bucket, e);
+        }
+    }
+
+    @Override
+    public void put(String key, Path file, String contentType) throws IOException {
+        BlobInfo info = BlobInfo.newBuilder(bucket, key)
+                .setContentType(contentType)
+                .setCacheControl(CACHE_CONTROL)
+                .build();
+        try {
+            storage.createFrom(info, file, chunkSize, Storage.BlobWriteOption.doesNotExist());
+        } catch (StorageException e) {
+            // Stored concurrently by another upload of the same content
+            if (e.getCode() != PRECONDITION_FAILED) {
+                throw new IOException("Failed to store " + key + " in bucket " + bucket, e);
+            }
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            storage.delete(BlobId.of(bucket, key));
+        } catch (StorageException e) {
+            throw new IOException("Failed to delete " + key + " from bucket " + bucket, e);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        try {
+            ReadChannel reader = storage.reader(BlobId.of(bucket, key));
+            reader.setChunkSize(chunkSize);
+            return Channels.newInputStream(reader);
+        } catch (StorageException e) {
+            throw new IOException("Failed to read " + key + " from bucket " + bucket, e);
+        }
+    }
+
+    @Override
+    public byte[] readHead(String key, int length) throws IOException {
+        try (ReadChannel reader = storage.reader(BlobId.of(bucket, key))) {
+            reader.limit(length);
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining() && reader.read(buffer) > 0) {
+                // keep reading until the limit or the end of the blob
+            }
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        } catch (StorageException e) {
+            throw new IOException("Failed to read " + key + " from bucket " + bucket, e);
+        }
+    }
+
+    @Override
+    public Optional<URI> readUrl(String key) {
+        if (!publicBaseUrl.isEmpty()) {
+            return Optional.of(URI.create(publicBaseUrl + "/" + key));
+        }
+        try {
+            return Optional.of(storage.signUrl(BlobInfo.newBuilder(bucket, key).build(),
+                    presignTtl.toSeconds(), TimeUnit.SECONDS, Storage.SignUrlOption.withV4Signature()).toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Invalid signed URL for " + key, e);
+        }
+    }
+
+    @Override
+    public Optional<PresignedUpload> presignUpload(String key, String contentType, long size, byte[] sha256) {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,79 @@
+package com.canvasearth.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * Blobs as files under a local directory, served by the /uploads/** resource handler.
+ * put is a rename, so staging files must be on the same file system (see UploadStorage).
+ */
+public class LocalBlobStore implements BlobStore {
+
+    private final Path root;
+
+    public LocalBlobStore(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(pathOf(key));
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        try {
+            return Files.size(pathOf(key));
+        } catch (NoSuchFileException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void put(String key, Path file, String contentType) throws IOException {
+        Path target = pathOf(key);
+        Files.createDirectories(target.getParent());
+        Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(pathOf(key));
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(pathOf(key));
+    }
+
+    @Override
+    public byte[] readHead(String key, int length) throws IOException {
+        try (InputStream in = Files.newInputStream(pathOf(key))) {
+            return in.readNBytes(length);
+        }
+    }
+
+    @Override
+    public Optional<URI> readUrl(String key) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<PresignedUpload> presignUpload(String key, String contentType, long size, byte[] sha256) {
+        return Optional.empty();
+    }
+
+    private Path pathOf(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,29 @@
+package com.canvasearth.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * A direct-to-storage upload: the client sends the file with the given method and headers.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class PresignedUpload {
+
+    private final URI url;
+
+    private final String method;
+
+    /**
+     * Headers that are part of the signature and must be sent unchanged
+     */
+    private final Map<String, String> headers;
+
+    private final Instant expiresAt;
+}
@@ -0,0 +1,278 @@
+package com.canvasearth.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Blobs in an S3-compatible bucket (AWS S3, MinIO, ...).
+ *
+ * Files above the multipart threshold are uploaded as parts in parallel. Direct uploads are
+ * presigned PUTs carrying x-amz-checksum-sha256, so the bucket rejects content that does not
+ * match the hash in the key.
+ */
+@Slf4j
+public class S3BlobStore implements BlobStore, Closeable {
+
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private final S3Client client;
+    private final S3Presigner presigner;
+    private final String bucket;
+    private final String publicBaseUrl;
+    private final Duration presignTtl;
+    private final long multipartThreshold;
+    private final int partSize;
+    private final ExecutorService partExecutor;
+
+    public S3BlobStore(S3Client client, S3Presigner presigner, String bucket, String publicBaseUrl,
+                       Duration presignTtl, long multipartThreshold, int partSize, int uploadConcurrency) {
+        this.client = client;
+        this.presigner = presigner;
+        this.bucket = bucket;
+        this.publicBaseUrl = publicBaseUrl;
+        this.presignTtl = presignTtl;
+        this.multipartThreshold = multipartThreshold;
+        this.partSize = partSize;
+        this.partExecutor = Executors.newFixedThreadPool(uploadConcurrency);
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        return size(key) >= 0;
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        try {
+            return client.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build()).contentLength();
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return -1;
+            }
+            throw new IOException("Failed to read " + key + " from bucket " + bucket, e);
+        }
+    }
+
+    @Override
+    public void put(String key, Path file, String contentType) throws IOException {
+        long size = Files.size(file);
+        try {
+            if (size < multipartThreshold) {
+                client.putObject(PutObjectRequest.builder()
+                                .bucket(bucket)
+                                .key(key)
+                                .contentType(contentType)
+                                .cacheControl(CACHE_CONTROL)
+                                .build(),
+                        RequestBody.fromFile(file));
+            } else {
+                putMultipart(key, file, size, contentType);
+            }
+        } catch (S3Exception e) {
+            throw new IOException("Failed to store " + key + " in bucket " + bucket, e);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            client.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(key).build());
+        } catch (S3Exception e) {
+            throw new IOException("Failed to delete " + key + " from bucket " + bucket, e);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        try {
+            return client.getObject(GetObjectRequest.builder().bucket(bucket).key(key).build());
+        } catch (S3Exception e) {
+            throw new IOException("Failed to read " + key + " from bucket " + bucket, e);
+        }
+    }
+
+    @Override
+    public byte[] readHead(String key, int length) throws IOException {
+        try {
+            return client.getObjectAsBytes(GetObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(key)
+                            .range("bytes=0-" + (length - 1))
+                            .build())
+                    .asByteArray();
+        } catch (S3Exception e) {
+            throw new IOException("Failed to read " + key + " from bucket " + bucket, e);
+        }
+    }
+
+    @Override
+    public Optional<URI> readUrl(String key) {
+        if (!publicBaseUrl.isEmpty()) {
+            return Optional.of(URI.create(publicBaseUrl + "/" + key));
+        }
+        GetObjectPresignRequest request = GetObjectPresignRequest.builder()
+                .signatureDuration(presignTtl)
+                .getObjectRequest(GetObjectRequest.builder().bucket(bucket).key(key).build())
+                .build();
+        return Optional.of(toUri(presigner.presignGetObject(request).url()));
+    }
+
+    @Override
+    public Optional<PresignedUpload> presignUpload(String key, String contentType, long size, byte[] sha256) {
+        PutObjectPresignRequest request = PutObjectPresignRequest.builder()
+                .signatureDuration(presignTtl)
+                .putObjectRequest(PutObjectRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .contentType(contentType)
+                        .contentLength(size)
+                        .cacheControl(CACHE_CONTROL)
+                        .checksumSHA256(Base64.getEncoder().encodeToString(sha256))
+                        .build())
+                .build();
+        PresignedPutObjectRequest presigned = presigner.presignPutObject(request);
+
+        // Host and Content-Length are set by the HTTP client itself (browsers refuse to set them)
+        Map<String, String> headers = new LinkedHashMap<>();
+        presigned.signedHeaders().forEach((name, values) -> {
+            if (!"host".equalsIgnoreCase(name) && !"content-length".equalsIgnoreCase(name)) {
+                headers.put(name, String.join(",", values));
+            }
+        });
+        return Optional.of(new PresignedUpload(toUri(presigned.url()), "PUT", headers, presigned.expiration()));
+    }
+
+    @Override
+    public void close() {
+        partExecutor.shutdown();
+        presigner.close();
+        client.close();
+    }
+
+    /**
+     * Upload parts of partSize bytes concurrently; the upload is aborted if any part fails
+     * so the bucket keeps no orphaned parts.
+     */
+    private void putMultipart(String key, Path file, long size, String contentType) throws IOException {
+        String uploadId = client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .contentType(contentType)
+                        .cacheControl(CACHE_CONTROL)
+                        .build())
+                .uploadId();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+            int partNumber = 1;
+            for (long offset = 0; offset < size; offset += partSize, partNumber++) {
+                long position = offset;
+                int length = (int) Math.min(partSize, size - offset);
+                int number = partNumber;
+                parts.add(CompletableFuture.supplyAsync(
+                        () -> uploadPart(channel, key, uploadId, number, position, length), partExecutor));
+            }
+
+            List<CompletedPart> completed = new ArrayList<>();
+            for (CompletableFuture<CompletedPart> part : parts) {
+                completed.add(part.join());
+            }
+            client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completed).build())
+                    .build());
+        } catch (CompletionException | S3Exception | IOException e) {
+            abort(key, uploadId);
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            throw new IOException("Multipart upload of " + key + " failed", cause);
+        }
+    }
+
+    private CompletedPart uploadPart(FileChannel channel, String key, String uploadId,
+                                     int partNumber, long position, int length) {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of file at part " + partNumber);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.flip();
+
+        String eTag = client.uploadPart(UploadPartRequest.builder()
+                                .bucket(bucket)
+                                .key(key)
+                                .uploadId(uploadId)
+                                .partNumber(partNumber)
+                                .contentLength((long) length)
+                                .build(),
+                        RequestBody.fromByteBuffer(buffer))
+                .eTag();
+        return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+    }
+
+    private void abort(String key, String uploadId) {
+        try {
+            client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (S3Exception e) {
+            log.warn("Failed to abort multipart upload {} of {}: {}", uploadId, key, e.getMessage());
+        }
+    }
+
+    private static URI toUri(URL url) {
+        try {
+            return url.toURI();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Invalid presigned URL: " + url, e);
+        }
+    }
+}
@@ -1,16 +1,23 @@
 package com.canvasearth.validator;
 
+import com.canvasearth.entity.ObjectType;
+import com.canvasearth.exception.FileSizeExceededException;
 import com.canvasearth.exception.InvalidFileException;
+import com.canvasearth.exception.InvalidFileTypeException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.List;
 
 @Component
 public class FileValidator {
 
+    /**
+     * Bytes needed at the start of a file to recognise its format (see detectExtension)
+     */
+    public static final int SNIFF_LENGTH = 12;
+
     @Value("${canvas.upload.image.max-size}")
     private long imageMaxSize;
 
@@ -23,77 +30,114 @@ public class FileValidator {
     @Value("${canvas.upload.video.allowed-types}")
     private String videoAllowedTypes;
 
-    public void validateImageFile(MultipartFile file) {
-        if (file == null || file.isEmpty()) {
-            throw new InvalidFileException("파일이 비어있습니다");
-        }
-
-        // 파일 크기 검증
-        if (file.getSize() > imageMaxSize) {
-            throw new InvalidFileException(
-                String.format("이미지 파일 크기는 %dMB를 초과할 수 없습니다", imageMaxSize / 1024 / 1024)
-            );
-        }
-
-        // 파일 확장자 검증
-        String originalFilename = file.getOriginalFilename();
-        if (originalFilename == null || !isValidImageExtension(originalFilename)) {
-            throw new InvalidFileException(
-                String.format("허용되지 않는 이미지 형식입니다. 허용 형식: %s", imageAllowedTypes)
-            );
-        }
+    /**
+     * Maximum size of an uploaded file of the given type
+     */
+    public long maxSize(ObjectType type) {
+        return switch (type) {
+            case IMAGE -> imageMaxSize;
+            case VIDEO -> videoMaxSize;
+            default -> throw unsupportedType(type);
+        };
+    }
 
-        // MIME 타입 검증
-        String contentType = file.getContentType();
-        if (contentType == null || !contentType.startsWith("image/")) {
-            throw new InvalidFileException("이미지 파일만 업로드 가능합니다");
+    /**
+     * Fail as soon as the bytes received so far exceed the limit, before the rest is read
+     */
+    public void checkSize(ObjectType type, long bytes) {
+        long maxSize = maxSize(type);
+        if (bytes > maxSize) {
+            throw new FileSizeExceededException(bytes, maxSize);
         }
     }
 
-    public void validateVideoFile(MultipartFile file) {
-        if (file == null || file.isEmpty()) {
+    /**
+     * Recognise the file format from its first bytes (magic numbers) rather than the
+     * client-supplied name or Content-Type.
+     *
+     * @param head   first bytes of the file
+     * @param length number of valid bytes in head (at least SNIFF_LENGTH unless the file is shorter)
+     * @return extension for the stored file, one of the allowed types of the object type
+     */
+    public String detectExtension(ObjectType type, byte[] head, int length) {
+        if (length == 0) {
             throw new InvalidFileException("파일이 비어있습니다");
         }
 
-        // 파일 크기 검증
-        if (file.getSize() > videoMaxSize) {
-            throw new InvalidFileException(
-                String.format("비디오 파일 크기는 %dMB를 초과할 수 없습니다", videoMaxSize / 1024 / 1024)
-            );
+        String extension = sniff(head, length);
+        if (extension == null) {
+            throw new InvalidFileTypeException(type.name(),
+                    String.format("파일 내용이 허용된 형식이 아닙니다. 허용 형식: %s", allowedTypes(type)));
         }
+        checkAllowed(type, extension);
+        return extension;
+    }
 
-        // 파일 확장자 검증
-        String originalFilename = file.getOriginalFilename();
-        if (originalFilename == null || !isValidVideoExtension(originalFilename)) {
-            throw new InvalidFileException(
-                String.format("허용되지 않는 비디오 형식입니다. 허용 형식: %s", videoAllowedTypes)
-            );
+    /**
+     * Check that files with this extension may be uploaded as the object type
+     */
+    public void checkAllowed(ObjectType type, String extension) {
+        String allowedTypes = allowedTypes(type);
+        if (!Arrays.asList(allowedTypes.split(",")).contains(extension)) {
+            throw new InvalidFileTypeException(type.name(),
+                    String.format("파일 내용이 허용된 형식이 아닙니다. 허용 형식: %s", allowedTypes));
         }
+    }
 
-        // MIME 타입 검증
-        String contentType = file.getContentType();
-        if (contentType == null || !contentType.startsWith("video/")) {
-            throw new InvalidFileException("비디오 파일만 업로드 가능합니다");
-        }
+    private String allowedTypes(ObjectType type) {
+        return switch (type) {
+            case IMAGE -> imageAllowedTypes;
+            case VIDEO -> videoAllowedTypes;
+            default -> throw unsupportedType(type);
+        };
     }
 
-    private boolean isValidImageExtension(String filename) {
-        String extension = getFileExtension(filename);
-        List<String> allowedExtensions = Arrays.asList(imageAllowedTypes.split(","));
-        return allowedExtensions.contains(extension.toLowerCase());
+    private static InvalidFileTypeException unsupportedType(ObjectType type) {
+        return new InvalidFileTypeException(type.name(), "파일 업로드를 지원하지 않는 오브젝트 타입입니다");
     }
 
-    private boolean isValidVideoExtension(String filename) {
-        String extension = getFileExtension(filename);
-        List<String> allowedExtensions = Arrays.asList(videoAllowedTypes.split(","));
-        return allowedExtensions.contains(extension.toLowerCase());
+    private String sniff(byte[] head, int length) {
+        if (startsWith(head, length, 0, 0xFF, 0xD8, 0xFF)) {
+            return "jpg";
+        }
+        if (startsWith(head, length, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "png";
+        }
+        if (startsWith(head, length, 0, "GIF87a") || startsWith(head, length, 0, "GIF89a")) {
+            return "gif";
+        }
+        if (startsWith(head, length, 0, "RIFF") && startsWith(head, length, 8, "WEBP")) {
+            return "webp";
+        }
+        // ISO base media (MP4): box size, then "ftyp"
+        if (startsWith(head, length, 4, "ftyp")) {
+            return "mp4";
+        }
+        // Matroska/WebM: EBML header
+        if (startsWith(head, length, 0, 0x1A, 0x45, 0xDF, 0xA3)) {
+            return "webm";
+        }
+        return null;
     }
 
-    private String getFileExtension(String filename) {
-        int lastDotIndex = filename.lastIndexOf('.');
-        if (lastDotIndex == -1 || lastDotIndex == filename.length() - 1) {
-            return "";
+    private static boolean startsWith(byte[] head, int length, int offset, String magic) {
+        byte[] bytes = magic.getBytes(StandardCharsets.US_ASCII);
+        int[] values = new int[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            values[i] = bytes[i];
+        }
+        return startsWith(head, length, offset, values);
+    }
+
+    private static boolean startsWith(byte[] head, int length, int offset, int... magic) {
+        if (length < offset + magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((head[offset + i] & 0xFF) != magic[i]) {
+                return false;
+            }
         }
-        return filename.substring(lastDotIndex + 1);
+        return true;
     }
 }
@@ -0,0 +1,64 @@
+-- Schema additions JPA annotations cannot express: PostGIS column and index, revision sequence
+-- Runs on every startup via spring.sql.init, so every statement must be idempotent.
+
+CREATE EXTENSION IF NOT EXISTS postgis;
+
+ALTER TABLE canvas_objects ADD COLUMN IF NOT EXISTS bbox geometry(Polygon, 0);
+
+-- Backfill rows written before the column existed
+UPDATE canvas_objects
+SET bbox = ST_MakeEnvelope(position_x, position_y, position_x + width, position_y + height, 0)
+WHERE bbox IS NULL;
+
+CREATE INDEX IF NOT EXISTS idx_canvas_objects_bbox ON canvas_objects USING GIST (bbox);
+
+-- Canvas-wide revision counter for delta sync (see CanvasSyncService)
+CREATE SEQUENCE IF NOT EXISTS canvas_revision_seq;
+
+ALTER TABLE canvas_objects ADD COLUMN IF NOT EXISTS revision BIGINT;
+
+UPDATE canvas_objects
+SET revision = nextval('canvas_revision_seq')
+WHERE revision IS NULL;
+
+CREATE SEQUENCE IF NOT EXISTS canvas_object_tombstones_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS canvas_object_tombstones (
+    id BIGINT PRIMARY KEY,
+    object_id BIGINT NOT NULL,
+    revision BIGINT NOT NULL,
+    deleted BOOLEAN NOT NULL,
+    min_x FLOAT(53) NOT NULL,
+    min_y FLOAT(53) NOT NULL,
+    max_x FLOAT(53) NOT NULL,
+    max_y FLOAT(53) NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL
+);
+
+-- Purge horizon of the tombstones: clients asking for older revisions get a full resync.
+-- Initialized once, conservatively: below the oldest tombstone left, or the current revision if there is none.
+CREATE TABLE IF NOT EXISTS canvas_sync_state (
+    id INT PRIMARY KEY,
+    purged_revision BIGINT NOT NULL
+);
+
+INSERT INTO canvas_sync_state (id, purged_revision)
+SELECT 1, COALESCE(
+        (SELECT MIN(revision) - 1 FROM canvas_object_tombstones),
+        (SELECT CASE WHEN is_called THEN last_value ELSE last_value - 1 END FROM canvas_revision_seq))
+ON CONFLICT (id) DO NOTHING;
+
+CREATE INDEX IF NOT EXISTS idx_revision ON canvas_objects (revision);
+CREATE INDEX IF NOT EXISTS idx_tombstone_revision ON canvas_object_tombstones (revision);
+CREATE INDEX IF NOT EXISTS idx_tombstone_created_at ON canvas_object_tombstones (created_at);
+
+-- Reference counting of content-addressed uploads (see UploadService)
+CREATE INDEX IF NOT EXISTS idx_canvas_objects_content_url ON canvas_objects (content_url);
+
+-- Downscaled image renditions (see RenditionService); NULL until processed
+ALTER TABLE canvas_objects ADD COLUMN IF NOT EXISTS lod_sizes VARCHAR(64);
+ALTER TABLE canvas_objects ADD COLUMN IF NOT EXISTS lod_format VARCHAR(8);
+
+-- Backfill scans only the images still waiting for renditions
+CREATE INDEX IF NOT EXISTS idx_canvas_objects_lod_pending ON canvas_objects (id)
+    WHERE object_type = 'IMAGE' AND lod_sizes IS NULL;
@@ -0,0 +1,74 @@
+package com.canvasearth.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Byte ranges, including positions too large for a long
+ */
+class LocalMediaControllerTest {
+
+    private static final String URL = "/uploads/plain.txt";
+    private static final String TOO_LARGE = "99999999999999999999999";
+
+    @TempDir
+    Path uploadDirectory;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.write(uploadDirectory.resolve("plain.txt"), "0123456789".getBytes(StandardCharsets.US_ASCII));
+
+        LocalMediaController controller = new LocalMediaController(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(controller, "uploadDirectory", uploadDirectory.toString());
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void servesSingleRange() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=2-4"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-4/10"))
+                .andExpect(content().string("234"));
+    }
+
+    @Test
+    void tooLargeLastPositionCoversRestOfFile() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=3-" + TOO_LARGE))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 3-9/10"))
+                .andExpect(content().string("3456789"));
+    }
+
+    @Test
+    void tooLargeSuffixCoversWholeFile() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=-" + TOO_LARGE))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-9/10"))
+                .andExpect(content().string("0123456789"));
+    }
+
+    @Test
+    void tooLargeFirstPositionIsNotSatisfiable() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=" + TOO_LARGE + "-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+    }
+}
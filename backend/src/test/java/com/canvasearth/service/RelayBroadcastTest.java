@@ -0,0 +1,142 @@
+package com.canvasearth.service;
+
+import com.canvasearth.CanvasEarthApplication;
+import com.canvasearth.dto.CanvasObjectRequest;
+import com.canvasearth.dto.CanvasObjectResponse;
+import com.canvasearth.entity.ObjectType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two instances in relay mode share one RabbitMQ: a change made on one instance reaches a
+ * client subscribed on the other.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class RelayBroadcastTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+            DockerImageName.parse("postgis/postgis:15-3.3").asCompatibleSubstituteFor("postgres"));
+
+    // Same image and plugin as docker-compose.yml
+    @Container
+    static GenericContainer<?> rabbitmq = new GenericContainer<>(DockerImageName.parse("rabbitmq:3-management-alpine"))
+            .withCommand("sh", "-c", "rabbitmq-plugins enable rabbitmq_stomp && rabbitmq-server")
+            .withExposedPorts(61613)
+            .waitingFor(Wait.forLogMessage(".*Server startup complete.*", 1));
+
+    private static ConfigurableApplicationContext sender;
+    private static ConfigurableApplicationContext receiver;
+
+    @BeforeAll
+    static void startInstances() {
+        // One after the other: both update the schema of the shared database at startup
+        sender = startInstance();
+        receiver = startInstance();
+    }
+
+    @AfterAll
+    static void stopInstances() {
+        if (receiver != null) {
+            receiver.close();
+        }
+        if (sender != null) {
+            sender.close();
+        }
+    }
+
+    @Test
+    void changeOnOneInstanceReachesClientsOfTheOther() throws Exception {
+        WebSocketStompClient stompClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+
+        int port = ((WebServerApplicationContext) receiver).getWebServer().getPort();
+        StompSession session = stompClient
+                .connectAsync("ws://localhost:" + port + "/ws", new StompSessionHandlerAdapter() {
+                })
+                .get(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+        try {
+            BlockingQueue<Map<?, ?>> received = new LinkedBlockingQueue<>();
+            CountDownLatch subscribed = new CountDownLatch(1);
+            session.setAutoReceipt(true);
+            session.subscribe(CanvasBroadcastService.TILE_TOPIC_PREFIX + "0.0", new StompFrameHandler() {
+
+                @Override
+                public Type getPayloadType(StompHeaders headers) {
+                    return Map.class;
+                }
+
+                @Override
+                public void handleFrame(StompHeaders headers, Object payload) {
+                    received.add((Map<?, ?>) payload);
+                }
+            }).addReceiptTask(subscribed::countDown);
+            assertThat(subscribed.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS)).isTrue();
+
+            CanvasObjectResponse created = sender.getBean(CanvasObjectService.class)
+                    .createObject(CanvasObjectRequest.builder()
+                            .objectType(ObjectType.TEXT)
+                            .positionX(100.0)
+                            .positionY(100.0)
+                            .width(50.0)
+                            .height(50.0)
+                            .build());
+
+            Map<?, ?> message = received.poll(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+            assertThat(message).isNotNull();
+            assertThat(message.get("type")).isEqualTo("CREATE");
+            assertThat(((Map<?, ?>) message.get("object")).get("id"))
+                    .isEqualTo(created.getId().intValue());
+        } finally {
+            session.disconnect();
+            stompClient.stop();
+        }
+    }
+
+    private static ConfigurableApplicationContext startInstance() {
+        return new SpringApplicationBuilder(CanvasEarthApplication.class)
+                .profiles("test")
+                // Arguments rather than default properties, which application-test.yml would override
+                .run("--server.port=0",
+                        "--spring.datasource.url=" + postgres.getJdbcUrl(),
+                        "--spring.datasource.username=" + postgres.getUsername(),
+                        "--spring.datasource.password=" + postgres.getPassword(),
+                        "--canvas.websocket.broker=relay",
+                        "--canvas.websocket.relay.host=" + rabbitmq.getHost(),
+                        "--canvas.websocket.relay.port=" + rabbitmq.getMappedPort(61613),
+                        "--canvas.websocket.relay.fallback-to-simple=false");
+    }
+}
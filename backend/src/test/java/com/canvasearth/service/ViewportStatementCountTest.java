@@ -0,0 +1,113 @@
+package com.canvasearth.service;
+
+import com.canvasearth.dto.CanvasObjectRequest;
+import com.canvasearth.dto.CanvasObjectResponse;
+import com.canvasearth.entity.ObjectType;
+import com.canvasearth.entity.User;
+import com.canvasearth.metrics.SqlStatementCounter;
+import com.canvasearth.repository.UserRepository;
+import com.canvasearth.spatial.ViewportSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A viewport read issues the same number of SQL statements whether it returns one object or
+ * many objects of different owners (no lazy load per row).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("test")
+@Testcontainers(disabledWithoutDocker = true)
+class ViewportStatementCountTest {
+
+    private static final int MANY = 50;
+    private static final double REGION_SIZE = 100000;
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+            DockerImageName.parse("postgis/postgis:15-3.3").asCompatibleSubstituteFor("postgres"));
+
+    // Each invocation writes into its own region, so the data of other runs is never in the viewport
+    private static final AtomicInteger REGIONS = new AtomicInteger();
+
+    @Autowired
+    private CanvasObjectService canvasObjectService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SqlStatementCounter sqlStatementCounter;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @ParameterizedTest
+    @EnumSource(value = ViewportSource.class, names = {"DATABASE", "POSTGIS"})
+    void statementCountDoesNotGrowWithObjects(ViewportSource source) {
+        ReflectionTestUtils.setField(AopTestUtils.getTargetObject(canvasObjectService), "viewportSource", source);
+
+        double single = nextRegion();
+        createObjects(single, 1);
+        double many = nextRegion();
+        createObjects(many, MANY);
+
+        int singleStatements = countStatements(single, 1);
+        int manyStatements = countStatements(many, MANY);
+
+        assertThat(manyStatements).isEqualTo(singleStatements);
+        // Objects, then their owners in one query
+        assertThat(singleStatements).isEqualTo(2);
+    }
+
+    private int countStatements(double region, int expectedObjects) {
+        // Owners would otherwise come from the second-level cache
+        entityManagerFactory.getCache().evictAll();
+
+        sqlStatementCounter.reset();
+        List<CanvasObjectResponse> objects = canvasObjectService.getObjectsInViewport(
+                region, region, region + REGION_SIZE / 2, region + REGION_SIZE / 2);
+        int statements = sqlStatementCounter.get();
+
+        assertThat(objects).hasSize(expectedObjects);
+        assertThat(objects).allSatisfy(object -> assertThat(object.getUsername()).isNotNull());
+        return statements;
+    }
+
+    private void createObjects(double region, int count) {
+        for (int i = 0; i < count; i++) {
+            User owner = userRepository.save(User.builder()
+                    .username("user-" + UUID.randomUUID())
+                    .build());
+            canvasObjectService.createObject(CanvasObjectRequest.builder()
+                    .objectType(ObjectType.TEXT)
+                    .positionX(region + i * 100)
+                    .positionY(region + i * 100)
+                    .width(50.0)
+                    .height(50.0)
+                    .userId(owner.getId())
+                    .build());
+        }
+    }
+
+    private static double nextRegion() {
+        return REGIONS.incrementAndGet() * REGION_SIZE;
+    }
+}
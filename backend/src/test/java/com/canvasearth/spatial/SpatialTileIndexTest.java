@@ -0,0 +1,113 @@
+package com.canvasearth.spatial;
+
+import com.canvasearth.dto.CanvasObjectResponse;
+import com.canvasearth.entity.ObjectType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Saturating tile coordinates take the scan / oversized path; late or older puts are ignored
+ */
+class SpatialTileIndexTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private SpatialTileIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new SpatialTileIndex(1000, 256);
+        index.beginRebuild();
+        index.finishRebuild();
+        index.put(object(1L, 0, 0, 100, 100));
+        index.put(object(2L, 5000, 5000, 100, 100));
+    }
+
+    @Test
+    void hugeViewportReturnsEveryObject() {
+        List<CanvasObjectResponse> result = assertTimeoutPreemptively(TIMEOUT,
+                () -> index.query(-1e300, 0, 1e300, 0));
+
+        assertThat(ids(result)).containsExactly(1L);
+
+        result = assertTimeoutPreemptively(TIMEOUT,
+                () -> index.query(-1e300, -1e300, 1e300, 1e300));
+
+        assertThat(ids(result)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void saturatingViewportReturnsEveryObject() {
+        List<CanvasObjectResponse> result = assertTimeoutPreemptively(TIMEOUT,
+                () -> index.query(-Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE));
+
+        assertThat(ids(result)).containsExactly(1L, 2L);
+
+        result = assertTimeoutPreemptively(TIMEOUT,
+                () -> index.query(Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                        Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY));
+
+        assertThat(ids(result)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void hugeObjectIsKeptOutOfTheGrid() {
+        assertTimeoutPreemptively(TIMEOUT, () -> index.put(object(3L, 0, 0, 1e300, 1e300)));
+
+        assertThat(ids(index.query(10000, 10000, 11000, 11000))).containsExactly(3L);
+        assertThat(ids(index.query(0, 0, 1000, 1000))).containsExactly(1L, 3L);
+
+        assertTimeoutPreemptively(TIMEOUT, () -> index.remove(3L));
+
+        assertThat(ids(index.query(0, 0, 1000, 1000))).containsExactly(1L);
+    }
+
+    @Test
+    void putAfterDeleteDoesNotResurrect() {
+        index.remove(1L);
+        index.put(object(1L, 0, 0, 100, 100));
+
+        assertThat(index.get(1L)).isNull();
+        assertThat(ids(index.query(0, 0, 1000, 1000))).isEmpty();
+    }
+
+    @Test
+    void olderRevisionDoesNotOverrideNewer() {
+        index.put(object(1L, 3000, 0, 100, 100).toBuilder().revision(10L).build());
+        index.put(object(1L, 0, 0, 100, 100).toBuilder().revision(9L).build());
+
+        assertThat(index.get(1L).getPositionX()).isEqualTo(3000.0);
+        assertThat(ids(index.query(0, 0, 1000, 1000))).isEmpty();
+
+        // Deferred moves keep the revision of the object they were applied to
+        index.put(object(1L, 4000, 0, 100, 100).toBuilder().revision(10L).build());
+
+        assertThat(index.get(1L).getPositionX()).isEqualTo(4000.0);
+    }
+
+    private static CanvasObjectResponse object(Long id, double x, double y, double width, double height) {
+        return CanvasObjectResponse.builder()
+                .id(id)
+                .objectType(ObjectType.IMAGE)
+                .positionX(x)
+                .positionY(y)
+                .width(width)
+                .height(height)
+                .zIndex(0)
+                .createdAt(LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(id))
+                .revision(id)
+                .build();
+    }
+
+    private static List<Long> ids(List<CanvasObjectResponse> objects) {
+        return objects.stream().map(CanvasObjectResponse::getId).collect(Collectors.toList());
+    }
+}
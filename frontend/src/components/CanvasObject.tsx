@@ -7,19 +7,40 @@ import Konva from 'konva';
 
 interface CanvasObjectProps {
   object: CanvasObjectType;
+  scale: number;
   isSelected: boolean;
   onSelect: () => void;
   onDragEnd: (x: number, y: number) => void;
   onTransformEnd: (width: number, height: number) => void;
+  // Position and size while dragging or resizing, before onDragEnd/onTransformEnd (presence preview)
+  onMove?: (x: number, y: number, width: number, height: number) => void;
   onDoubleClick?: () => void;
 }
 
+// Smallest image rendition that still covers the object's size on screen, or the original
+const pickImageUrl = (object: CanvasObjectType, scale: number): string => {
+  if (!object.lodUrls) {
+    return object.contentUrl;
+  }
+  const screenSize = Math.max(object.width, object.height) * scale * (window.devicePixelRatio || 1);
+  const size = Object.keys(object.lodUrls)
+    .map(Number)
+    .sort((a, b) => a - b)
+    .find((s) => s >= screenSize);
+  return size !== undefined ? object.lodUrls[size] : object.contentUrl;
+};
+
 // Image component wrapper with image loading
 const ImageObject = ({ url, width, height }: { url: string; width: number; height: number }) => {
   // Convert relative URL to absolute URL using API_BASE_URL
   const fullUrl = url.startsWith('http') ? url : `${API_BASE_URL}${url}`;
   const [image] = useImage(fullUrl);
-  return <Image image={image} width={width} height={height} />;
+  // Keep showing the previous rendition while another one loads after a zoom
+  const shownImage = useRef<HTMLImageElement | undefined>(undefined);
+  if (image) {
+    shownImage.current = image;
+  }
+  return <Image image={image ?? shownImage.current} width={width} height={height} />;
 };
 
 // Text component for text objects
@@ -123,10 +144,12 @@ const YouTubeObject = ({ url, width, height }: { url: string; width: number; hei
 
 const CanvasObjectComponentBase = ({
   object,
+  scale,
   isSelected,
   onSelect,
   onDragEnd,
   onTransformEnd,
+  onMove,
   onDoubleClick: _onDoubleClick,
 }: CanvasObjectProps) => {
   const shapeRef = useRef<Konva.Group>(null);
@@ -146,6 +169,13 @@ const CanvasObjectComponentBase = ({
     setIsDragging(true);
   };
 
+  const handleMove = () => {
+    const node = shapeRef.current;
+    if (node && onMove) {
+      onMove(node.x(), node.y(), node.width() * node.scaleX(), node.height() * node.scaleY());
+    }
+  };
+
   const handleDragEnd = (e: Konva.KonvaEventObject<DragEvent>) => {
     e.cancelBubble = true; // Stop event propagation to stage
     setIsDragging(false);
@@ -187,7 +217,7 @@ const CanvasObjectComponentBase = ({
       case ObjectType.IMAGE:
         return (
           <ImageObject
-            url={object.contentUrl}
+            url={pickImageUrl(object, scale)}
             width={object.width}
             height={object.height}
           />
@@ -230,7 +260,9 @@ const CanvasObjectComponentBase = ({
         onClick={onSelect}
         onTap={onSelect}
         onDragStart={handleDragStart}
+        onDragMove={handleMove}
         onDragEnd={handleDragEnd}
+        onTransform={handleMove}
         onTransformEnd={handleTransformEnd}
         onDblClick={handleDoubleClick}
         onDblTap={handleDoubleClick}
@@ -289,6 +321,9 @@ export const CanvasObjectComponent = memo(
       prevProps.object.width === nextProps.object.width &&
       prevProps.object.height === nextProps.object.height &&
       prevProps.object.contentUrl === nextProps.object.contentUrl &&
+      // Zooming only re-renders images that switch to another rendition
+      (prevProps.object.objectType !== ObjectType.IMAGE ||
+        pickImageUrl(prevProps.object, prevProps.scale) === pickImageUrl(nextProps.object, nextProps.scale)) &&
       prevProps.object.fontSize === nextProps.object.fontSize &&
       prevProps.object.fontWeight === nextProps.object.fontWeight &&
       prevProps.object.textColor === nextProps.object.textColor &&
@@ -8,8 +8,10 @@ import { Toolbar } from './Toolbar';
 import { YouTubeOverlay } from './YouTubeOverlay';
 import { DropZone } from './DropZone';
 import { TextEditor } from './TextEditor';
+import { TileLayer } from './TileLayer';
+import { PresenceLayer } from './PresenceLayer';
 import { ViewportBounds, CanvasObject } from '../types';
-import { useWebSocket } from '../hooks/useWebSocket';
+import { useWebSocket, WebSocketMessage } from '../hooks/useWebSocket';
 import { useCanvasObjects, canvasQueryKeys } from '../hooks/useCanvasObjects';
 import { useCanvasInteraction } from '../hooks/useCanvasInteraction';
 import { useKeyboardShortcuts } from '../hooks/useKeyboardShortcuts';
@@ -17,10 +19,13 @@ import { useGridRenderer } from '../hooks/useGridRenderer';
 import { useObjectOperations } from '../hooks/useObjectOperations';
 import { useTextEditor } from '../hooks/useTextEditor';
 import { useYouTubePlayer } from '../hooks/useYouTubePlayer';
+import { usePresence } from '../hooks/usePresence';
 
 const STAGE_WIDTH = window.innerWidth;
 const STAGE_HEIGHT = window.innerHeight;
-const MIN_SCALE = 0.1;
+const MIN_SCALE = 0.005;
+// Below this scale the canvas is drawn from server-rendered tiles instead of objects
+const TILE_MODE_SCALE = 0.25;
 const MAX_SCALE = 5;
 const GRID_SIZE = 50; // Grid cell size in pixels
 
@@ -50,9 +55,6 @@ export const InfiniteCanvas = () => {
     maxY: dimensions.height,
   });
 
-  // Fetch objects from React Query (Single Source of Truth)
-  const { data: objects = [] } = useCanvasObjects(viewportBounds);
-
   // Custom hooks for separated concerns
   const { canvasState, handleWheel, handleDragEnd } = useCanvasInteraction({
     stageRef,
@@ -60,11 +62,24 @@ export const InfiniteCanvas = () => {
     maxScale: MAX_SCALE,
   });
 
+  const tileMode = canvasState.scale < TILE_MODE_SCALE;
+
+  // Fetch objects from React Query (Single Source of Truth); not needed in tile mode
+  const { data: viewportObjects = [] } = useCanvasObjects(viewportBounds, !tileMode);
+  const objects = tileMode ? [] : viewportObjects;
+
+  // Cached viewports missed live updates while in tile mode: catch up with a delta sync
+  useEffect(() => {
+    if (!tileMode) {
+      queryClient.invalidateQueries({ queryKey: canvasQueryKeys.all });
+    }
+  }, [tileMode, queryClient]);
+
   const { gridLines } = useGridRenderer({
     stageRef,
     gridSize: GRID_SIZE,
     dimensions,
-    enabled: showGrid,
+    enabled: showGrid && !tileMode,
   });
 
   const {
@@ -88,11 +103,7 @@ export const InfiniteCanvas = () => {
 
   // WebSocket message handler - Updates React Query cache directly
   const handleWebSocketMessage = useCallback(
-    (message: {
-      type: 'CREATE' | 'UPDATE' | 'DELETE';
-      object?: CanvasObject;
-      objectId?: number;
-    }) => {
+    (message: WebSocketMessage) => {
       console.log('[InfiniteCanvas] Processing WebSocket message:', message);
 
       // Update React Query cache (Single Source of Truth)
@@ -110,7 +121,10 @@ export const InfiniteCanvas = () => {
           }
 
           if (message.type === 'UPDATE' && message.object) {
-            // Update existing object
+            // Update existing object, or add one that moved in from a neighbouring tile
+            if (!old.find((obj) => obj.id === message.object!.id)) {
+              return [...old, message.object];
+            }
             return old.map((obj) =>
               obj.id === message.object!.id ? message.object! : obj
             );
@@ -121,6 +135,27 @@ export const InfiniteCanvas = () => {
             return old.filter((obj) => obj.id !== message.objectId);
           }
 
+          if (message.type === 'BATCH') {
+            // Apply a batch of changes in one cache update
+            const deleted = new Set(message.deletedIds ?? []);
+            const changed = new Map(
+              [...(message.created ?? []), ...(message.updated ?? [])].map((obj) => [obj.id, obj])
+            );
+            const next = old
+              .filter((obj) => !deleted.has(obj.id))
+              .map((obj) => {
+                const updated = changed.get(obj.id);
+                changed.delete(obj.id);
+                return updated ?? obj;
+              });
+            (message.created ?? []).forEach((obj) => {
+              if (changed.has(obj.id)) {
+                next.push(obj);
+              }
+            });
+            return next;
+          }
+
           return old;
         }
       );
@@ -129,16 +164,41 @@ export const InfiniteCanvas = () => {
       if (message.type === 'DELETE' && message.objectId === selectedObjectId) {
         setSelectedObjectId(null);
       }
+      if (message.type === 'BATCH' && selectedObjectId !== null
+          && message.deletedIds?.includes(selectedObjectId)) {
+        setSelectedObjectId(null);
+      }
     },
     [queryClient, selectedObjectId, setSelectedObjectId]
   );
 
-  // Connect to WebSocket
+  // Collaborators' cursors, selections and drag previews (not shown in tile mode)
+  const presence = usePresence({ viewport: tileMode ? null : viewportBounds });
+
+  // Connect to WebSocket (tiles are revalidated instead of following changes)
   useWebSocket({
     onMessage: handleWebSocketMessage,
+    viewport: tileMode ? null : viewportBounds,
     enabled: true,
+    presence: presence.handlers,
   });
 
+  const { updateCursor, updateSelection, updateDrag } = presence;
+
+  useEffect(() => {
+    updateSelection(selectedObjectId);
+  }, [selectedObjectId, updateSelection]);
+
+  // Cursor in canvas coordinates
+  const handleMouseMove = useCallback(() => {
+    const stage = stageRef.current;
+    const pointer = stage?.getPointerPosition();
+    if (!stage || !pointer) return;
+
+    const scale = stage.scaleX();
+    updateCursor((pointer.x - stage.x()) / scale, (pointer.y - stage.y()) / scale);
+  }, [updateCursor]);
+
   // Handle window resize
   useEffect(() => {
     const handleResize = () => {
@@ -280,6 +340,7 @@ export const InfiniteCanvas = () => {
         onDragEnd={handleDragEnd}
         onClick={handleStageClick}
         onTap={handleStageClick}
+        onMouseMove={handleMouseMove}
       >
         {/* Grid Layer (Background) */}
         {showGrid && (
@@ -290,19 +351,41 @@ export const InfiniteCanvas = () => {
           </Layer>
         )}
 
+        {/* Tile Layer (zoomed out) */}
+        {tileMode && <TileLayer viewport={viewportBounds} width={dimensions.width} />}
+
         {/* Objects Layer */}
         <Layer>
           {objects.map((obj) => (
             <CanvasObjectComponent
               key={obj.id}
               object={obj}
+              scale={canvasState.scale}
               isSelected={obj.id === selectedObjectId}
               onSelect={() => handleObjectSelect(obj.id)}
-              onDragEnd={(x, y) => handleObjectDragEnd(obj.id, x, y)}
-              onTransformEnd={(w, h) => handleObjectTransformEnd(obj.id, w, h)}
+              onDragEnd={(x, y) => {
+                updateDrag(null);
+                handleObjectDragEnd(obj.id, x, y);
+              }}
+              onTransformEnd={(w, h) => {
+                updateDrag(null);
+                handleObjectTransformEnd(obj.id, w, h);
+              }}
+              onMove={(x, y, width, height) => updateDrag({
+                objectId: obj.id,
+                positionX: x,
+                positionY: y,
+                width,
+                height,
+              })}
             />
           ))}
         </Layer>
+
+        {/* Presence Layer (collaborators) */}
+        {!tileMode && (
+          <PresenceLayer frames={presence.remoteFrames} objects={objects} scale={canvasState.scale} />
+        )}
       </Stage>
       {isLoading && (
         <div
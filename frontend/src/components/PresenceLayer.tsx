@@ -0,0 +1,74 @@
+import { Layer, Group, Label, Line, Rect, Tag, Text } from 'react-konva';
+import { CanvasObject, PresenceFrame } from '../types';
+
+interface PresenceLayerProps {
+  frames: PresenceFrame[];
+  objects: CanvasObject[];
+  // Stage scale: cursors and outlines keep their screen size at every zoom level
+  scale: number;
+}
+
+const DEFAULT_COLOR = '#1E88E5';
+const CURSOR_POINTS = [0, 0, 0, 16, 4.5, 12, 8, 19, 10.5, 18, 7, 11.5, 12, 11.5];
+
+/**
+ * Collaborators' cursors, selections and drag previews (see usePresence).
+ * Drawn above the objects and never hit-tested.
+ */
+export const PresenceLayer = ({ frames, objects, scale }: PresenceLayerProps) => {
+  const objectsById = new Map(objects.map((obj) => [obj.id, obj]));
+  const stroke = 2 / scale;
+
+  return (
+    <Layer listening={false}>
+      {frames.map((frame) => {
+        const color = frame.color ?? DEFAULT_COLOR;
+        return (
+          <Group key={frame.id}>
+            {/* Selected objects, where they are saved */}
+            {frame.selection?.map((id) => {
+              const obj = objectsById.get(id);
+              if (!obj || frame.drag?.objectId === id) return null;
+              return (
+                <Rect
+                  key={id}
+                  x={obj.positionX}
+                  y={obj.positionY}
+                  width={obj.width}
+                  height={obj.height}
+                  stroke={color}
+                  strokeWidth={stroke}
+                />
+              );
+            })}
+
+            {/* Where the collaborator is dragging or resizing an object to */}
+            {frame.drag && (
+              <Rect
+                x={frame.drag.positionX}
+                y={frame.drag.positionY}
+                width={frame.drag.width}
+                height={frame.drag.height}
+                stroke={color}
+                strokeWidth={stroke}
+                dash={[6 / scale, 4 / scale]}
+                fill={color}
+                opacity={0.25}
+              />
+            )}
+
+            <Group x={frame.x} y={frame.y} scaleX={1 / scale} scaleY={1 / scale}>
+              <Line points={CURSOR_POINTS} closed fill={color} stroke="white" strokeWidth={1} />
+              {frame.name && (
+                <Label x={14} y={18}>
+                  <Tag fill={color} cornerRadius={3} />
+                  <Text text={frame.name} fontSize={12} fill="white" padding={3} />
+                </Label>
+              )}
+            </Group>
+          </Group>
+        );
+      })}
+    </Layer>
+  );
+};
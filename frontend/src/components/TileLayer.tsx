@@ -0,0 +1,115 @@
+import { useEffect, useRef, useState } from 'react';
+import { Layer, Image } from 'react-konva';
+import { API_BASE_URL } from '../services/api';
+import { ViewportBounds } from '../types';
+
+// Must match canvas.tiles.* on the server
+const TILE_PIXELS = 256;
+const MIN_TILE_ZOOM = 1;
+const MAX_TILE_ZOOM = 12;
+// Visible tiles are revalidated this often; unchanged tiles answer 304
+const TILE_REFRESH_MS = 10000;
+
+interface LoadedTile {
+  z: number;
+  x: number;
+  y: number;
+  etag: string | null;
+  image: ImageBitmap;
+}
+
+interface TileLayerProps {
+  viewport: ViewportBounds;
+  // Stage width in screen pixels, to derive the zoom level from the viewport
+  width: number;
+}
+
+// Zoom level whose tiles are drawn at no less than their own resolution
+const tileZoom = (scale: number): number =>
+  Math.min(MAX_TILE_ZOOM, Math.max(MIN_TILE_ZOOM, Math.ceil(Math.log2(1 / scale))));
+
+/**
+ * Server-rendered tiles of the viewport (GET /api/tiles/{z}/{x}/{y}), shown instead of
+ * individual objects when zoomed far out. Tiles of the previous zoom level stay on screen
+ * until the new ones have loaded.
+ */
+export const TileLayer = ({ viewport, width }: TileLayerProps) => {
+  const z = tileZoom(width / (viewport.maxX - viewport.minX));
+  const span = TILE_PIXELS * 2 ** z;
+  const minTx = Math.floor(viewport.minX / span);
+  const maxTx = Math.floor(viewport.maxX / span);
+  const minTy = Math.floor(viewport.minY / span);
+  const maxTy = Math.floor(viewport.maxY / span);
+
+  const tilesRef = useRef<Map<string, LoadedTile>>(new Map());
+  const [tiles, setTiles] = useState<LoadedTile[]>([]);
+
+  useEffect(() => {
+    let cancelled = false;
+
+    const loadTile = async (x: number, y: number) => {
+      const key = `${z}/${x}/${y}`;
+      // Revalidates with If-None-Match against the browser cache
+      const response = await fetch(`${API_BASE_URL}/api/tiles/${key}`, { cache: 'no-cache' });
+      if (!response.ok) return;
+
+      const etag = response.headers.get('ETag');
+      const current = tilesRef.current.get(key);
+      if (current && etag !== null && current.etag === etag) return;
+
+      const image = await createImageBitmap(await response.blob());
+      if (cancelled) {
+        image.close();
+        return;
+      }
+      tilesRef.current.set(key, { z, x, y, etag, image });
+    };
+
+    const load = async () => {
+      const loads: Promise<void>[] = [];
+      for (let x = minTx; x <= maxTx; x++) {
+        for (let y = minTy; y <= maxTy; y++) {
+          loads.push(loadTile(x, y).catch((error) => {
+            console.error('[TileLayer] Failed to load tile:', error);
+          }));
+        }
+      }
+      await Promise.all(loads);
+      if (cancelled) return;
+
+      // Drop tiles that are no longer visible now that the current ones are loaded
+      tilesRef.current.forEach((tile, key) => {
+        if (tile.z !== z || tile.x < minTx || tile.x > maxTx || tile.y < minTy || tile.y > maxTy) {
+          tilesRef.current.delete(key);
+        }
+      });
+      setTiles(Array.from(tilesRef.current.values()));
+    };
+
+    load();
+    const timer = setInterval(load, TILE_REFRESH_MS);
+    return () => {
+      cancelled = true;
+      clearInterval(timer);
+    };
+  }, [z, minTx, maxTx, minTy, maxTy]);
+
+  return (
+    <Layer listening={false}>
+      {/* Coarser levels first, so finer tiles are drawn over them */}
+      {[...tiles].sort((a, b) => b.z - a.z).map((tile) => {
+        const tileSpan = TILE_PIXELS * 2 ** tile.z;
+        return (
+          <Image
+            key={`${tile.z}/${tile.x}/${tile.y}`}
+            image={tile.image}
+            x={tile.x * tileSpan}
+            y={tile.y * tileSpan}
+            width={tileSpan}
+            height={tileSpan}
+          />
+        );
+      })}
+    </Layer>
+  );
+};
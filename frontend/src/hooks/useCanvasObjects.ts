@@ -6,6 +6,7 @@ import {
   CreateObjectRequest,
   UpdateObjectRequest,
   CanvasObject,
+  CanvasChangesResponse,
 } from '../types';
 
 // Round viewport bounds to reduce cache misses
@@ -16,6 +17,26 @@ const roundBounds = (bounds: ViewportBounds, gridSize = 500): ViewportBounds =>
   maxY: Math.ceil(bounds.maxY / gridSize) * gridSize,
 });
 
+// Last canvas revision seen per viewport query (keyed by query hash), for delta sync
+const viewportRevisions = new Map<string, number>();
+
+// Viewport ordering used by the backend (z-index, then creation time)
+const compareObjects = (a: CanvasObject, b: CanvasObject) =>
+  a.zIndex - b.zIndex || a.createdAt.localeCompare(b.createdAt) || a.id - b.id;
+
+// Apply a delta sync response to cached objects: remove first, then upsert
+const applyChanges = (
+  objects: CanvasObject[],
+  changes: CanvasChangesResponse
+): CanvasObject[] => {
+  const removed = new Set(changes.removedIds);
+  const byId = new Map(
+    objects.filter((obj) => !removed.has(obj.id)).map((obj) => [obj.id, obj])
+  );
+  changes.objects.forEach((obj) => byId.set(obj.id, obj));
+  return Array.from(byId.values()).sort(compareObjects);
+};
+
 // Query keys
 export const canvasQueryKeys = {
   all: ['canvas-objects'] as const,
@@ -49,11 +70,33 @@ export const useCanvasObjects = (bounds: ViewportBounds, enabled: boolean = true
   console.log('[useCanvasObjects] Query key:', queryKey);
   console.log('[useCanvasObjects] Query key hash:', hashKey(queryKey));
 
+  const queryClient = useQueryClient();
+
   return useQuery({
     queryKey,
-    queryFn: () => {
+    queryFn: async () => {
+      const revisionKey = hashKey(queryKey);
+      const cached = queryClient.getQueryData<CanvasObject[]>(queryKey);
+      const since = viewportRevisions.get(revisionKey);
+
+      // Refetch of a region we already have: only download what changed
+      if (cached && since !== undefined) {
+        console.log('[useCanvasObjects] ⚡ DELTA SYNC since revision:', since);
+        const changes = await canvasApi.getChanges(since, roundedBounds);
+        if (!changes.fullResync) {
+          viewportRevisions.set(revisionKey, changes.revision);
+          return applyChanges(cached, changes);
+        }
+      }
+
       console.log('[useCanvasObjects] ⚡ FETCHING with bounds:', roundedBounds);
-      return canvasApi.getObjectsInViewport(roundedBounds);
+      const { objects, revision } = await canvasApi.getObjectsInViewport(roundedBounds);
+      if (revision !== null) {
+        viewportRevisions.set(revisionKey, revision);
+      } else {
+        viewportRevisions.delete(revisionKey);
+      }
+      return objects;
     },
     enabled,
     staleTime: 30000, // 30 seconds - increased since queries change less frequently with rounding
@@ -84,10 +127,12 @@ export const useUpdateObject = () => {
     mutationFn: ({
       id,
       request,
+      deferred,
     }: {
       id: number;
       request: UpdateObjectRequest;
-    }) => canvasApi.updateObject(id, request),
+      deferred?: boolean;
+    }) => canvasApi.updateObject(id, request, deferred),
     onSuccess: (updatedObject) => {
       // Update the object in all relevant queries
       queryClient.setQueriesData<CanvasObject[]>(
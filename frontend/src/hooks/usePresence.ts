@@ -0,0 +1,100 @@
+import { useCallback, useEffect, useMemo, useRef, useState } from 'react';
+import { PresenceDrag, PresenceFrame, PresenceMessage, PresenceUpdate, ViewportBounds } from '../types';
+import { PresenceHandlers } from './useWebSocket';
+
+const CURSOR_COLORS = ['#E53935', '#8E24AA', '#1E88E5', '#00897B', '#43A047', '#F4511E', '#6D4C41', '#3949AB'];
+
+interface UsePresenceProps {
+  // Frames outside this area are dropped: their tiles are no longer subscribed, so no "gone" arrives
+  viewport: ViewportBounds | null;
+}
+
+/**
+ * Presence of this client and its collaborators (see useWebSocket)
+ *
+ * Responsibilities:
+ * - Keep the latest local cursor, selection and drag preview until useWebSocket sends it
+ * - Track the frames of other sessions, without this session's own
+ */
+export const usePresence = ({ viewport }: UsePresenceProps) => {
+  const [remoteFrames, setRemoteFrames] = useState<Map<string, PresenceFrame>>(new Map());
+  const sessionIdRef = useRef<string | null>(null);
+  const localRef = useRef<Partial<PresenceUpdate>>({});
+  const dirtyRef = useRef(false);
+  const colorRef = useRef(CURSOR_COLORS[Math.floor(Math.random() * CURSOR_COLORS.length)]);
+
+  const update = useCallback((change: Partial<PresenceUpdate>) => {
+    localRef.current = { ...localRef.current, ...change, color: colorRef.current };
+    dirtyRef.current = true;
+  }, []);
+
+  const updateCursor = useCallback((x: number, y: number) => update({ x, y }), [update]);
+
+  const updateSelection = useCallback(
+    (id: number | null) => update({ selection: id !== null ? [id] : [] }),
+    [update]
+  );
+
+  const updateDrag = useCallback((drag: PresenceDrag | null) => update({ drag }), [update]);
+
+  const handleMessage = useCallback((message: PresenceMessage) => {
+    setRemoteFrames((old) => {
+      const next = new Map(old);
+      message.gone?.forEach((id) => next.delete(id));
+      message.frames?.forEach((frame) => {
+        if (frame.id !== sessionIdRef.current) {
+          next.set(frame.id, frame);
+        }
+      });
+      return next;
+    });
+  }, []);
+
+  const handleSession = useCallback((id: string) => {
+    sessionIdRef.current = id;
+    setRemoteFrames((old) => {
+      if (!old.has(id)) return old;
+      const next = new Map(old);
+      next.delete(id);
+      return next;
+    });
+  }, []);
+
+  const takeFrame = useCallback((): PresenceUpdate | null => {
+    const { x, y } = localRef.current;
+    // Nothing to show until the cursor has been on the canvas
+    if (!dirtyRef.current || x === undefined || y === undefined) return null;
+    dirtyRef.current = false;
+    return { ...localRef.current, x, y };
+  }, []);
+
+  const handlers: PresenceHandlers = useMemo(
+    () => ({ onMessage: handleMessage, onSession: handleSession, takeFrame }),
+    [handleMessage, handleSession, takeFrame]
+  );
+
+  // Sessions that left while their tile was not subscribed would otherwise stay forever
+  useEffect(() => {
+    if (!viewport) {
+      setRemoteFrames(new Map());
+      return;
+    }
+    setRemoteFrames((old) => {
+      const next = new Map(
+        [...old].filter(([, frame]) => frame.x >= viewport.minX && frame.x <= viewport.maxX
+          && frame.y >= viewport.minY && frame.y <= viewport.maxY)
+      );
+      return next.size === old.size ? old : next;
+    });
+  }, [viewport]);
+
+  const frames = useMemo(() => [...remoteFrames.values()], [remoteFrames]);
+
+  return {
+    handlers,
+    remoteFrames: frames,
+    updateCursor,
+    updateSelection,
+    updateDrag,
+  };
+};
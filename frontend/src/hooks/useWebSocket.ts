@@ -1,20 +1,64 @@
 import { useEffect, useRef, useCallback } from 'react';
-import { Client } from '@stomp/stompjs';
+import { Client, IMessage, StompSubscription } from '@stomp/stompjs';
 import SockJS from 'sockjs-client';
-import { CanvasObject } from '../types';
+import { CanvasObject, PresenceMessage, PresenceUpdate, ViewportBounds } from '../types';
 
-interface WebSocketMessage {
-  type: 'CREATE' | 'UPDATE' | 'DELETE';
+export interface WebSocketMessage {
+  type: 'CREATE' | 'UPDATE' | 'DELETE' | 'BATCH';
   object?: CanvasObject;
   objectId?: number;
+  // BATCH only
+  created?: CanvasObject[];
+  updated?: CanvasObject[];
+  deletedIds?: number[];
+}
+
+export interface PresenceHandlers {
+  // Cursors, selections and drag previews of the sessions in the viewport tiles
+  onMessage: (message: PresenceMessage) => void;
+  // Id this session's own frames carry, so they can be left out
+  onSession: (id: string) => void;
+  // Latest local frame not sent yet (taken, so it is sent once), or null
+  takeFrame: () => PresenceUpdate | null;
 }
 
 interface UseWebSocketProps {
   onMessage: (message: WebSocketMessage) => void;
+  // Only changes touching the tiles of this area are received; null receives none
+  viewport: ViewportBounds | null;
   enabled?: boolean;
+  presence?: PresenceHandlers;
 }
 
-const CANVAS_TOPIC = '/topic/canvas';
+// Changes are published per tile (see CanvasBroadcastService);
+// must match canvas.websocket.tile-size on the server
+const BROADCAST_TILE_SIZE = 2000;
+const TILE_TOPIC_PREFIX = '/topic/canvas.tile.';
+const LARGE_OBJECT_TOPIC = '/topic/canvas.large';
+// Presence uses the same tiles (see PresenceService)
+const PRESENCE_TOPIC_PREFIX = '/topic/canvas.presence.';
+const PRESENCE_DESTINATION = '/app/presence';
+const PRESENCE_SESSION_QUEUE = '/user/queue/presence';
+// The server sends presence every canvas.presence.interval; sending more often only replaces frames
+const PRESENCE_SEND_INTERVAL_MS = 50;
+
+const getTopicsForViewport = (viewport: ViewportBounds | null, presence: boolean): string[] => {
+  if (!viewport) return [];
+  const topics = [LARGE_OBJECT_TOPIC];
+  const minTx = Math.floor(viewport.minX / BROADCAST_TILE_SIZE);
+  const maxTx = Math.floor(viewport.maxX / BROADCAST_TILE_SIZE);
+  const minTy = Math.floor(viewport.minY / BROADCAST_TILE_SIZE);
+  const maxTy = Math.floor(viewport.maxY / BROADCAST_TILE_SIZE);
+  for (let tx = minTx; tx <= maxTx; tx++) {
+    for (let ty = minTy; ty <= maxTy; ty++) {
+      topics.push(`${TILE_TOPIC_PREFIX}${tx}.${ty}`);
+      if (presence) {
+        topics.push(`${PRESENCE_TOPIC_PREFIX}${tx}.${ty}`);
+      }
+    }
+  }
+  return topics;
+};
 
 // Exponential backoff configuration
 const INITIAL_RECONNECT_DELAY = 1000; // 1 second
@@ -22,12 +66,56 @@ const MAX_RECONNECT_DELAY = 30000; // 30 seconds
 const MAX_RECONNECT_ATTEMPTS = 10; // Maximum reconnection attempts
 const BACKOFF_MULTIPLIER = 2; // Double the delay each time
 
-export const useWebSocket = ({ onMessage, enabled = true }: UseWebSocketProps) => {
+export const useWebSocket = ({ onMessage, viewport, enabled = true, presence }: UseWebSocketProps) => {
   const clientRef = useRef<Client | null>(null);
+  const subscriptionsRef = useRef<Map<string, StompSubscription>>(new Map());
+  const viewportRef = useRef<ViewportBounds | null>(viewport);
+  const onMessageRef = useRef(onMessage);
+  onMessageRef.current = onMessage;
+  const presenceRef = useRef(presence);
+  presenceRef.current = presence;
   const reconnectTimeoutRef = useRef<number>();
   const reconnectAttemptsRef = useRef<number>(0);
   const reconnectDelayRef = useRef<number>(INITIAL_RECONNECT_DELAY);
 
+  const handleMessage = useCallback((message: IMessage) => {
+    try {
+      const data: WebSocketMessage = JSON.parse(message.body);
+      console.log('[WebSocket] Received message:', data);
+      onMessageRef.current(data);
+    } catch (error) {
+      console.error('[WebSocket] Failed to parse message:', error);
+    }
+  }, []);
+
+  const handlePresenceMessage = useCallback((message: IMessage) => {
+    try {
+      presenceRef.current?.onMessage(JSON.parse(message.body));
+    } catch (error) {
+      console.error('[WebSocket] Failed to parse presence message:', error);
+    }
+  }, []);
+
+  // Subscribe to the tiles of the current viewport and drop the ones left behind
+  const syncSubscriptions = useCallback(() => {
+    const client = clientRef.current;
+    if (!client?.connected) return;
+
+    const topics = new Set(getTopicsForViewport(viewportRef.current, presenceRef.current !== undefined));
+    subscriptionsRef.current.forEach((subscription, topic) => {
+      if (!topics.has(topic)) {
+        subscription.unsubscribe();
+        subscriptionsRef.current.delete(topic);
+      }
+    });
+    topics.forEach((topic) => {
+      if (!subscriptionsRef.current.has(topic)) {
+        const handler = topic.startsWith(PRESENCE_TOPIC_PREFIX) ? handlePresenceMessage : handleMessage;
+        subscriptionsRef.current.set(topic, client.subscribe(topic, handler));
+      }
+    });
+  }, [handleMessage, handlePresenceMessage]);
+
   const connect = useCallback(() => {
     if (!enabled) return;
 
@@ -59,16 +147,16 @@ export const useWebSocket = ({ onMessage, enabled = true }: UseWebSocketProps) =
         reconnectAttemptsRef.current = 0;
         reconnectDelayRef.current = INITIAL_RECONNECT_DELAY;
 
-        // Subscribe to canvas updates
-        client.subscribe(CANVAS_TOPIC, (message) => {
-          try {
-            const data: WebSocketMessage = JSON.parse(message.body);
-            console.log('[WebSocket] Received message:', data);
-            onMessage(data);
-          } catch (error) {
-            console.error('[WebSocket] Failed to parse message:', error);
-          }
-        });
+        // Subscribe to canvas updates for the viewport (subscriptions do not survive a reconnect)
+        subscriptionsRef.current.clear();
+        syncSubscriptions();
+
+        // A new session gets a new presence id with its first frame
+        if (presenceRef.current) {
+          client.subscribe(PRESENCE_SESSION_QUEUE, (message) => {
+            presenceRef.current?.onSession(JSON.parse(message.body).id);
+          });
+        }
       },
 
       onStompError: (frame) => {
@@ -119,7 +207,7 @@ export const useWebSocket = ({ onMessage, enabled = true }: UseWebSocketProps) =
 
     client.activate();
     clientRef.current = client;
-  }, [enabled, onMessage]);
+  }, [enabled, syncSubscriptions]);
 
   const disconnect = useCallback(() => {
     // Clear any pending reconnection attempts
@@ -138,6 +226,27 @@ export const useWebSocket = ({ onMessage, enabled = true }: UseWebSocketProps) =
     }
   }, []);
 
+  useEffect(() => {
+    viewportRef.current = viewport;
+    syncSubscriptions();
+  }, [viewport, syncSubscriptions]);
+
+  // Send the latest local presence frame, if it changed, at the server's presence interval
+  const presenceEnabled = presence !== undefined;
+  useEffect(() => {
+    if (!enabled || !presenceEnabled) return;
+
+    const timer = setInterval(() => {
+      const client = clientRef.current;
+      if (!client?.connected) return;
+      const frame = presenceRef.current?.takeFrame();
+      if (frame) {
+        client.publish({ destination: PRESENCE_DESTINATION, body: JSON.stringify(frame) });
+      }
+    }, PRESENCE_SEND_INTERVAL_MS);
+    return () => clearInterval(timer);
+  }, [enabled, presenceEnabled]);
+
   useEffect(() => {
     connect();
 
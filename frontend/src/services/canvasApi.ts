@@ -1,16 +1,31 @@
 import api from './api';
 import {
+  BatchOperation,
+  BatchResponse,
   CanvasObject,
+  CanvasChangesResponse,
   CreateObjectRequest,
+  PresignUploadResponse,
   UpdateObjectRequest,
   ViewportBounds,
+  ViewportResponse,
 } from '../types';
 
+// Files at least this large are uploaded straight to the storage bucket when the server offers it
+const DIRECT_UPLOAD_THRESHOLD = 8 * 1024 * 1024;
+
+const sha256Hex = async (file: File): Promise<string> => {
+  const digest = await crypto.subtle.digest('SHA-256', await file.arrayBuffer());
+  return Array.from(new Uint8Array(digest))
+    .map((b) => b.toString(16).padStart(2, '0'))
+    .join('');
+};
+
 export const canvasApi = {
-  // Get objects within viewport
+  // Get objects within viewport (with the canvas revision they reflect)
   getObjectsInViewport: async (
     bounds: ViewportBounds
-  ): Promise<CanvasObject[]> => {
+  ): Promise<ViewportResponse> => {
     const response = await api.get<CanvasObject[]>('/objects', {
       params: {
         minX: bounds.minX,
@@ -19,6 +34,27 @@ export const canvasApi = {
         maxY: bounds.maxY,
       },
     });
+    const revision = response.headers['x-canvas-revision'];
+    return {
+      objects: response.data,
+      revision: revision !== undefined ? Number(revision) : null,
+    };
+  },
+
+  // Get changes within viewport since a revision (delta sync)
+  getChanges: async (
+    since: number,
+    bounds: ViewportBounds
+  ): Promise<CanvasChangesResponse> => {
+    const response = await api.get<CanvasChangesResponse>('/objects/changes', {
+      params: {
+        since,
+        minX: bounds.minX,
+        minY: bounds.minY,
+        maxX: bounds.maxX,
+        maxY: bounds.maxY,
+      },
+    });
     return response.data;
   },
 
@@ -37,11 +73,16 @@ export const canvasApi = {
   },
 
   // Update object
+  // deferred: position/size changes are broadcast immediately and persisted by the
+  // server's write-behind flush (for intermediate drag updates)
   updateObject: async (
     id: number,
-    request: UpdateObjectRequest
+    request: UpdateObjectRequest,
+    deferred = false
   ): Promise<CanvasObject> => {
-    const response = await api.put<CanvasObject>(`/objects/${id}`, request);
+    const response = await api.put<CanvasObject>(`/objects/${id}`, request, {
+      params: deferred ? { deferred: true } : undefined,
+    });
     return response.data;
   },
 
@@ -50,7 +91,16 @@ export const canvasApi = {
     await api.delete(`/objects/${id}`);
   },
 
+  // Create, update and delete many objects in one request
+  applyBatch: async (operations: BatchOperation[]): Promise<BatchResponse> => {
+    const response = await api.post<BatchResponse>('/objects/batch', { operations });
+    return response.data;
+  },
+
   // Upload file (image or video)
+  // Large files go directly to the bucket (presign -> PUT -> complete) when the server's
+  // storage supports it; otherwise the file is sent as the raw request body and streamed
+  // to storage by the server
   uploadFile: async (
     file: File,
     objectType: string,
@@ -61,20 +111,39 @@ export const canvasApi = {
     zIndex: number,
     userId: number
   ): Promise<CanvasObject> => {
-    const formData = new FormData();
-    formData.append('file', file);
-    formData.append('objectType', objectType);
-    formData.append('positionX', positionX.toString());
-    formData.append('positionY', positionY.toString());
-    formData.append('width', width.toString());
-    formData.append('height', height.toString());
-    formData.append('zIndex', zIndex.toString());
-    formData.append('userId', userId.toString());
+    const params = { objectType, positionX, positionY, width, height, zIndex, userId };
+
+    if (file.size >= DIRECT_UPLOAD_THRESHOLD && file.type && window.crypto?.subtle) {
+      const presign = await api.post<PresignUploadResponse>('/objects/upload/presign', {
+        objectType,
+        contentType: file.type,
+        size: file.size,
+        sha256: await sha256Hex(file),
+      });
+      const { contentUrl, exists, uploadUrl, method, headers } = presign.data;
+
+      if (exists || uploadUrl) {
+        if (!exists && uploadUrl) {
+          const put = await fetch(uploadUrl, {
+            method: method || 'PUT',
+            headers: headers || { 'Content-Type': file.type },
+            body: file,
+          });
+          if (!put.ok) {
+            throw new Error(`Direct upload failed: ${put.status}`);
+          }
+        }
+        const response = await api.post<CanvasObject>('/objects/upload/complete', null, {
+          params: { ...params, contentUrl },
+        });
+        return response.data;
+      }
+    }
 
-    // Override Content-Type header for multipart/form-data
-    const response = await api.post<CanvasObject>('/objects/upload', formData, {
+    const response = await api.post<CanvasObject>('/objects/upload', file, {
+      params,
       headers: {
-        'Content-Type': 'multipart/form-data',
+        'Content-Type': file.type || 'application/octet-stream',
       },
     });
     return response.data;
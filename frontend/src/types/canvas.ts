@@ -17,11 +17,30 @@ export interface CanvasObject {
   height: number;
   zIndex: number;
   userId: number;
+  username?: string;
   createdAt: string;
+  // Canvas-wide revision of the last change (used for delta sync)
+  revision?: number;
   // Text styling properties
   fontSize?: number;
   fontWeight?: string;
   textColor?: string;
+  // Downscaled image renditions by longest side in pixels (absent until generated)
+  lodUrls?: Record<string, string> | null;
+}
+
+// Viewport objects together with the canvas revision they reflect
+export interface ViewportResponse {
+  objects: CanvasObject[];
+  revision: number | null;
+}
+
+// Delta sync response (GET /api/objects/changes)
+export interface CanvasChangesResponse {
+  revision: number;
+  fullResync: boolean;
+  objects: CanvasObject[];
+  removedIds: number[];
 }
 
 // Request DTO for creating new objects
@@ -54,6 +73,20 @@ export interface UpdateObjectRequest {
   textColor?: string;
 }
 
+// Batch request (POST /api/objects/batch)
+export interface BatchOperation {
+  type: 'CREATE' | 'UPDATE' | 'DELETE';
+  id?: number;
+  create?: CreateObjectRequest;
+  update?: UpdateObjectRequest;
+}
+
+export interface BatchResponse {
+  created: CanvasObject[];
+  updated: CanvasObject[];
+  deletedIds: number[];
+}
+
 // Viewport bounds for fetching visible objects
 export interface ViewportBounds {
   minX: number;
@@ -68,3 +101,44 @@ export interface CanvasState {
   x: number;
   y: number;
 }
+
+// Direct-to-storage upload (POST /api/objects/upload/presign)
+export interface PresignUploadResponse {
+  contentUrl: string;
+  exists: boolean;
+  uploadUrl?: string | null;
+  method?: string | null;
+  headers?: Record<string, string> | null;
+  expiresAt?: string | null;
+}
+
+// Object being dragged or resized by a collaborator, before the change is saved
+export interface PresenceDrag {
+  objectId: number;
+  positionX: number;
+  positionY: number;
+  width: number;
+  height: number;
+}
+
+// Presence frame sent to /app/presence (cursor in canvas coordinates)
+export interface PresenceUpdate {
+  x: number;
+  y: number;
+  selection?: number[];
+  drag?: PresenceDrag | null;
+  name?: string;
+  color?: string;
+}
+
+// A session's latest frame, as received on /topic/canvas.presence.{tx}.{ty}
+export interface PresenceFrame extends PresenceUpdate {
+  id: string;
+}
+
+export interface PresenceMessage {
+  type: 'PRESENCE';
+  frames: PresenceFrame[];
+  // Sessions that left the tile, disconnected or went idle
+  gone: string[];
+}